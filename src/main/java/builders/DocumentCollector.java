@@ -0,0 +1,96 @@
+package builders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eAdapter.Document;
+import eAdapter.SpillPolicy;
+import eAdapter.SpillingDocumentList;
+
+/**
+ * Purpose: Collects built documents in file order and finds them by key. A document with a key
+ * that was already collected takes the place of the earlier one. Only the position of each key
+ * is held, so a document that was spilled is looked up through its stand in.
+ */
+class DocumentCollector {
+
+    private final Map<String, Integer> ordinals = new HashMap<>(); // maps key to position
+    private final List<Document> documents;
+
+    /**
+     * Creates a collector
+     * @param spillPolicy the spill policy or null to keep every document on the heap
+     */
+    DocumentCollector(SpillPolicy spillPolicy) {
+        this.documents = (isSpilling(spillPolicy)) ? new SpillingDocumentList(spillPolicy) : new ArrayList<>();
+    }
+
+    /**
+     * Adds a document or replaces the document that has the same key
+     * @param key the document key
+     * @param doc the document
+     * @return returns the ordinal of the document, which is its position in the collected documents
+     */
+    int put(String key, Document doc) {
+        Integer ordinal = ordinals.get(key);
+
+        if (ordinal == null) {
+            ordinal = documents.size();
+            ordinals.put(key, ordinal);
+            documents.add(doc);
+        }
+        else {
+            documents.set(ordinal, doc);
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * Gets the ordinal of a collected document
+     * @param key the document key
+     * @return returns the ordinal or -1 if no document has the key
+     */
+    int getOrdinal(String key) {
+        Integer ordinal = ordinals.get(key);
+        return (ordinal != null) ? ordinal : -1;
+    }
+
+    /**
+     * Gets a collected document by its ordinal
+     * @param ordinal the ordinal
+     * @return returns the document
+     */
+    Document get(int ordinal) {
+        return documents.get(ordinal);
+    }
+
+    /**
+     * Gets a collected document
+     * @param key the document key
+     * @return returns the document or null if no document has the key
+     */
+    Document get(String key) {
+        Integer ordinal = ordinals.get(key);
+        return (ordinal != null) ? documents.get(ordinal) : null;
+    }
+
+    /**
+     * Gets the collected documents
+     * @return returns the documents in the order their keys were first seen
+     */
+    List<Document> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Checks if a spill policy asks for a heap budget
+     * @param spillPolicy the spill policy or null
+     * @return returns true if documents will be spilled once they cross the budget
+     */
+    static boolean isSpilling(SpillPolicy spillPolicy) {
+        return spillPolicy != null && spillPolicy.getHeapBudget() > 0;
+    }
+}
@@ -0,0 +1,273 @@
+package builders;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import eAdapter.Document;
+
+/**
+ * Purpose: Hands back text delimited documents as soon as their families are complete, so a file
+ * can be read in about the memory of its largest family. A family is complete once every parent and
+ * child key its documents name has been read and a later document starts outside of it, which
+ * means the documents of a family have to be next to each other in the file. The documents come
+ * back in file order with their parents and children linked, and are checked the same way as
+ * {@link FamilyIndex} checks them. A family that is still open once too many documents are waiting
+ * is reported instead of held onto.
+ */
+class FamilyBuffer implements Iterator<Document> {
+
+    private final Iterator<Document> documents;
+    private final String parentColumnName;
+    private final String childColumnName;
+    private final String childSeparator;
+    private final int capacity;
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>(); // read but not released, in file order
+    private final ArrayDeque<Document> released = new ArrayDeque<>();
+    private final Map<String, Entry> keys = new HashMap<>(); // key >> pending document
+    private final Map<String, List<Entry>> waitingChildren = new HashMap<>(); // parentKey >> children that named it
+    private final Map<String, Entry> waitingListings = new HashMap<>(); // childKey >> parent that listed it
+    private Entry latest = null;
+    private long sequence = 0;
+
+    /**
+     * Creates a buffer over built documents
+     * @param documents the documents in file order
+     * @param parentColumnName the name of the column that contains the parent key or blank if none
+     * @param childColumnName the name of the column that contains the child keys or blank if none
+     * @param childSeparator the delimiter between the child keys, it is matched as plain text
+     * @param capacity the number of documents that can wait for their families to be complete
+     */
+    FamilyBuffer(Iterator<Document> documents, String parentColumnName, String childColumnName, String childSeparator, int capacity) {
+        this.documents = documents;
+        this.parentColumnName = StringUtils.isNotBlank(parentColumnName) ? parentColumnName : null;
+        this.childColumnName = StringUtils.isNotBlank(childColumnName) ? childColumnName : null;
+        this.childSeparator = childSeparator;
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (released.isEmpty()) {
+            if (documents.hasNext()) {
+                add(documents.next());
+                release(false);
+            }
+            else if (!pending.isEmpty()) {
+                // every family is complete at the end of the file, or it never will be
+                if (!waitingChildren.isEmpty()) {
+                    throw new RuntimeException("Broken families, the parent is missing.");
+                }
+                if (!waitingListings.isEmpty()) {
+                    throw new RuntimeException("Broken families, children have disowned their parent.");
+                }
+                release(true);
+            }
+            else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return released.poll();
+    }
+
+    private void add(Document doc) {
+        if (pending.size() >= capacity) {
+            throw new RuntimeException("The family of " + pending.peek().doc.getKey() + " is not complete after " + capacity + " documents.");
+        }
+        Entry entry = new Entry(doc, sequence++);
+        String key = doc.getKey();
+        pending.add(entry);
+        keys.put(key, entry);
+        latest = entry;
+        // settle the references to this document that were made before it was read
+        List<Entry> children = waitingChildren.remove(key);
+        if (children != null) {
+            for (Entry child : children) {
+                child.namedParent = entry;
+                find(child).openReferences--;
+                union(child, entry);
+            }
+        }
+        Entry listingParent = waitingListings.remove(key);
+        if (listingParent != null) {
+            entry.listingParent = listingParent;
+            find(listingParent).openReferences--;
+            union(entry, listingParent);
+        }
+        // the parent named by this document, a parent that refers to itself means there is none
+        if (parentColumnName != null) {
+            String parentKey = doc.getMetadata().get(parentColumnName);
+            if (StringUtils.isNotBlank(parentKey) && !parentKey.equals(key)) {
+                Entry parent = keys.get(parentKey);
+                if (parent != null) {
+                    entry.namedParent = parent;
+                    union(entry, parent);
+                }
+                else {
+                    waitingChildren.computeIfAbsent(parentKey, k -> new ArrayList<>()).add(entry);
+                    find(entry).openReferences++;
+                }
+            }
+        }
+        // the children listed by this document
+        if (childColumnName != null) {
+            String childrenLine = doc.getMetadata().get(childColumnName);
+            if (StringUtils.isNotBlank(childrenLine)) {
+                int start = 0;
+                while (start <= childrenLine.length()) {
+                    int end = childrenLine.indexOf(childSeparator, start);
+                    end = (end < 0) ? childrenLine.length() : end;
+                    String childKey = childrenLine.substring(start, end).trim();
+                    if (!childKey.isEmpty() && !childKey.equals(key)) {
+                        addChild(entry, childKey);
+                    }
+                    start = end + childSeparator.length();
+                }
+            }
+        }
+    }
+
+    private void addChild(Entry entry, String childKey) {
+        Entry child = keys.get(childKey);
+        if (child != null) {
+            child.listingParent = entry;
+            union(child, entry);
+        }
+        else {
+            // the last parent to list a child wins
+            Entry previous = waitingListings.put(childKey, entry);
+            if (previous != null) {
+                find(previous).openReferences--;
+            }
+            find(entry).openReferences++;
+        }
+    }
+
+    private void release(boolean finished) {
+        // documents are released in file order, so a complete family waits for the ones in front of it
+        while (!pending.isEmpty()) {
+            Entry head = pending.peek();
+            Entry family = find(head);
+            if (!family.linked) {
+                // the family of the last document read can still grow until the end of the file
+                if (!finished && (family.openReferences > 0 || family == find(latest))) {
+                    break;
+                }
+                link(family);
+            }
+            pending.poll();
+            released.add(head.doc);
+        }
+    }
+
+    private void link(Entry family) {
+        // link in file order, so the children of a parent are listed in file order
+        List<Entry> members = family.members;
+        members.sort(Comparator.comparingLong(member -> member.sequence));
+        int roots = 0;
+        for (Entry member : members) {
+            // check for relationships that are not reciprocal
+            if (parentColumnName != null && childColumnName != null) {
+                if (member.namedParent != null && member.listingParent != member.namedParent) {
+                    throw new RuntimeException("Broken families, the parent disowns a child document.");
+                }
+                if (member.listingParent != null && member.namedParent != member.listingParent) {
+                    throw new RuntimeException("Broken families, children have disowned their parent.");
+                }
+            }
+            // a complete family can't grow, so later documents can't refer to it anymore
+            keys.remove(member.doc.getKey(), member);
+            Entry parent = (parentColumnName != null) ? member.namedParent : member.listingParent;
+            if (parent != null) {
+                setRelationships(member.doc, parent.doc);
+            }
+            else {
+                roots++;
+            }
+        }
+        // every document of a family has a parent only if they go around in a circle
+        if (roots == 0) {
+            throw new RuntimeException("Broken families, a document is its own ancestor.");
+        }
+        family.linked = true;
+        family.members = null;
+    }
+
+    private Entry find(Entry entry) {
+        Entry root = entry;
+        while (root.family != root) {
+            root = root.family;
+        }
+        // point the entries on the way straight at the root
+        while (entry.family != root) {
+            Entry next = entry.family;
+            entry.family = root;
+            entry = next;
+        }
+        return root;
+    }
+
+    private void union(Entry first, Entry second) {
+        Entry a = find(first);
+        Entry b = find(second);
+        if (a == b) {
+            return;
+        }
+        // the smaller family joins the larger one
+        if (a.members.size() < b.members.size()) {
+            Entry swap = a;
+            a = b;
+            b = swap;
+        }
+        b.family = a;
+        a.members.addAll(b.members);
+        a.openReferences += b.openReferences;
+        b.members = null;
+    }
+
+    private void setRelationships(Document doc, Document parent) {
+        doc.setParent(parent);
+        // now add this document as a child to the parent
+        List<Document> children = parent.getChildren();
+        children.add(doc);
+        parent.setChildren(children);
+    }
+
+    /**
+     * A document that is waiting for its family to be complete. One document of each family
+     * keeps track of the whole family.
+     */
+    private static class Entry {
+        private final Document doc;
+        private final long sequence;
+        private Entry namedParent = null;
+        private Entry listingParent = null;
+        private Entry family = this;
+        private List<Entry> members = new ArrayList<>(1);
+        private int openReferences = 0; // keys named by the family that haven't been read
+        private boolean linked = false;
+
+        Entry(Document doc, long sequence) {
+            this.doc = doc;
+            this.sequence = sequence;
+            this.members.add(this);
+        }
+    }
+}
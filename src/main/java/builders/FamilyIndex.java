@@ -0,0 +1,184 @@
+package builders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import eAdapter.Document;
+
+/**
+ * Purpose: Works out the families of text delimited documents by their ordinals in a {@link DocumentCollector}.
+ * A child can name its parent in a parent column and a parent can list its children in a child column.
+ * A key that is named before its document is read is kept aside until the document shows up, so
+ * families are settled in one pass no matter which comes first. When both columns are used each
+ * side has to agree with the other, which is checked once per document after the last one is read.
+ */
+class FamilyIndex {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String parentColumnName;
+    private final String childColumnName;
+    private final String childSeparator;
+    private int[] namedParents = new int[INITIAL_CAPACITY]; // the parent named in the parent column
+    private int[] listingParents = new int[INITIAL_CAPACITY]; // the parent that lists the document in its child column
+    private int[] parents = null;
+    private int size = 0;
+    private final Map<String, List<Integer>> waitingChildren = new HashMap<>(); // parentKey >> children that named it
+    private final Map<String, Integer> waitingListings = new HashMap<>(); // childKey >> parent that listed it
+
+    /**
+     * Creates an index over the family columns of a file
+     * @param parentColumnName the name of the column that contains the parent key or blank if none
+     * @param childColumnName the name of the column that contains the child keys or blank if none
+     * @param childSeparator the delimiter between the child keys, it is matched as plain text
+     */
+    FamilyIndex(String parentColumnName, String childColumnName, String childSeparator) {
+        this.parentColumnName = StringUtils.isNotBlank(parentColumnName) ? parentColumnName : null;
+        this.childColumnName = StringUtils.isNotBlank(childColumnName) ? childColumnName : null;
+        this.childSeparator = childSeparator;
+        Arrays.fill(namedParents, NONE);
+        Arrays.fill(listingParents, NONE);
+    }
+
+    /**
+     * Reads the family fields of a document that was just collected
+     * @param ordinal the ordinal of the document
+     * @param doc the document
+     * @param docs the collector that knows the ordinals of the documents read so far
+     */
+    void add(int ordinal, Document doc, DocumentCollector docs) {
+        ensureCapacity(ordinal + 1);
+        String key = doc.getKey();
+        // settle the references to this document that were made before it was read
+        List<Integer> children = waitingChildren.remove(key);
+        if (children != null) {
+            for (int child : children) {
+                namedParents[child] = ordinal;
+            }
+        }
+        Integer listingParent = waitingListings.remove(key);
+        if (listingParent != null) {
+            listingParents[ordinal] = listingParent;
+        }
+        // the parent named by this document, a parent that refers to itself means there is none
+        namedParents[ordinal] = NONE;
+        if (parentColumnName != null) {
+            String parentKey = doc.getMetadata().get(parentColumnName);
+            if (StringUtils.isNotBlank(parentKey) && !parentKey.equals(key)) {
+                int parent = docs.getOrdinal(parentKey);
+                if (parent != NONE) {
+                    namedParents[ordinal] = parent;
+                }
+                else {
+                    waitingChildren.computeIfAbsent(parentKey, k -> new ArrayList<>()).add(ordinal);
+                }
+            }
+        }
+        // the children listed by this document
+        if (childColumnName != null) {
+            String childrenLine = doc.getMetadata().get(childColumnName);
+            if (StringUtils.isNotBlank(childrenLine)) {
+                int start = 0;
+                while (start <= childrenLine.length()) {
+                    int end = childrenLine.indexOf(childSeparator, start);
+                    end = (end < 0) ? childrenLine.length() : end;
+                    String childKey = childrenLine.substring(start, end).trim();
+                    if (!childKey.isEmpty() && !childKey.equals(key)) {
+                        int child = docs.getOrdinal(childKey);
+                        if (child != NONE) {
+                            listingParents[child] = ordinal;
+                        }
+                        else {
+                            waitingListings.put(childKey, ordinal);
+                        }
+                    }
+                    start = end + childSeparator.length();
+                }
+            }
+        }
+        size = Math.max(size, ordinal + 1);
+        parents = null;
+    }
+
+    /**
+     * Checks the families once every document has been read
+     */
+    void resolve() {
+        // a key that was never read can't be part of a family
+        if (!waitingChildren.isEmpty()) {
+            throw new RuntimeException("Broken families, the parent is missing.");
+        }
+        if (!waitingListings.isEmpty()) {
+            throw new RuntimeException("Broken families, children have disowned their parent.");
+        }
+        // check for relationships that are not reciprocal
+        parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (parentColumnName != null && childColumnName != null) {
+                if (namedParents[i] != NONE && listingParents[i] != namedParents[i]) {
+                    throw new RuntimeException("Broken families, the parent disowns a child document.");
+                }
+                if (listingParents[i] != NONE && namedParents[i] != listingParents[i]) {
+                    throw new RuntimeException("Broken families, children have disowned their parent.");
+                }
+            }
+            parents[i] = (parentColumnName != null) ? namedParents[i] : listingParents[i];
+        }
+        checkForCycles();
+    }
+
+    /**
+     * Gets the parent of a document, {@link #resolve()} has to be called first
+     * @param ordinal the ordinal of the document
+     * @return returns the ordinal of the parent or -1 if the document has none
+     */
+    int getParent(int ordinal) {
+        return parents[ordinal];
+    }
+
+    /**
+     * Gets the number of documents in the index
+     * @return returns one past the largest ordinal that was added
+     */
+    int size() {
+        return size;
+    }
+
+    private void checkForCycles() {
+        // each document is walked up to an ancestor that is already known to be fine, so this is linear
+        final byte unchecked = 0;
+        final byte checking = 1;
+        final byte checked = 2;
+        byte[] states = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int current = i;
+            while (current != NONE && states[current] == unchecked) {
+                states[current] = checking;
+                current = parents[current];
+            }
+            if (current != NONE && states[current] == checking) {
+                throw new RuntimeException("Broken families, a document is its own ancestor.");
+            }
+            for (current = i; current != NONE && states[current] == checking; current = parents[current]) {
+                states[current] = checked;
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > namedParents.length) {
+            int oldLength = namedParents.length;
+            int newLength = Math.max(capacity, oldLength * 2);
+            namedParents = Arrays.copyOf(namedParents, newLength);
+            listingParents = Arrays.copyOf(listingParents, newLength);
+            Arrays.fill(namedParents, oldLength, newLength, NONE);
+            Arrays.fill(listingParents, oldLength, newLength, NONE);
+        }
+    }
+}
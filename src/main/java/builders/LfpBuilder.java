@@ -1,16 +1,27 @@
 package builders;
 
+import java.io.File;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
+import com.google.common.collect.Iterators;
+import eAdapter.ColumnStore;
+import eAdapter.ColumnType;
 import eAdapter.Document;
+import eAdapter.ImagePages;
+import eAdapter.PathSet;
+import eAdapter.PathStore;
 import eAdapter.Representative;
+import eAdapter.SpillPolicy;
 
 /**
  * 
@@ -20,16 +31,13 @@ import eAdapter.Representative;
  * Purpose: Builds documents from lfp records
  */
 public class LfpBuilder {
-    private final String PAGE_REGEX_SPLITTER = ",|;";
     private final int TOKEN_INDEX = 0;
     private final int KEY_INDEX = 1;
     private final int IMAGE_BOUNDARY_FLAG_INDEX = 2;
-    @SuppressWarnings("unused")
     private final int IMAGE_OFFSET_INDEX = 3;
     private final int IMAGE_VOLUME_NAME_INDEX = 4;
     private final int IMAGE_FILE_PATH_INDEX = 5;
     private final int IMAGE_FILE_NAME_INDEX = 6;
-    @SuppressWarnings("unused")
     /**
      * TIF = 2
      * JPG = 4
@@ -47,11 +55,50 @@ public class LfpBuilder {
     private final String VOLUME_NAME_FIELD = "Volume Name";
     private final String PAGE_COUNT_FIELD = "Page Count";
     private final String EMPTY_STRING = "";
-    private final String VOLUME_TRIM_REGEX = "^@";
+    private final String VOLUME_PREFIX = "@";
     private final String DEFAULT_IMAGE_REP_NAME = "default";
     private final String DEFAULT_TEXT_REP_NAME = "default";
     private final String DEFAULT_NATIVE_REP_NAME = "default";
-    
+    private static final int NONE = -1;
+    private static final byte PAGE_RECORD = 0;
+    private static final byte PARENT_RECORD = 1;
+    private static final byte CHILD_RECORD = 2;
+    private static final byte NATIVE_RECORD = 3;
+
+    private SpillPolicy spillPolicy = null;
+    private ForkJoinPool pool = null;
+
+    public SpillPolicy getSpillPolicy() {
+        return this.spillPolicy;
+    }
+
+    /**
+     * Sets a heap budget for the built documents, once it is crossed the oldest documents are written
+     * to a spill file. Spilled documents keep their metadata in plain maps instead of a column store,
+     * and the returned list has to be closed to delete the spill file. The budget only covers the
+     * documents, {@link #buildDocuments(List)} still needs every line of the file on the heap to find
+     * the document boundaries, so large files should be built from a line iterator with
+     * {@link #buildDocuments(Iterator, String, String, String, StructuredRepresentativeSetting)}.
+     * @param spillPolicy the spill policy or null to keep every document on the heap
+     */
+    public void setSpillPolicy(SpillPolicy spillPolicy) {
+        this.spillPolicy = spillPolicy;
+    }
+
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Sets a pool to build documents on. The document boundaries are found first and then batches
+     * of documents are built in parallel, children are linked to their parents afterwards in file order.
+     * Each batch of documents gets a column store of its own.
+     * @param pool the pool to build on or null to build on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * LFP record type
      */
@@ -110,82 +157,242 @@ public class LfpBuilder {
      */
     public List<Document> buildDocuments(List<String> lines, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
         // setup for building
-        Map<String, Document> docs = new LinkedHashMap<>(); // maps key to document
-        List<String[]> docPages = new ArrayList<>(); // all page records for a single document
-        String[] nativeLine = null; // native record
-        Document lastParent = null;
-        // build the documents
-        for(String line : lines) {
-            String[] lineSegments = line.split(PAGE_REGEX_SPLITTER);
-            Token token = Token.valueOf(lineSegments[TOKEN_INDEX]);
-            // determine if the line is an image or native
-            switch(token) {
-                case IM:
-                    // check for a doc break
-                    if (StringUtils.isNotBlank(lineSegments[IMAGE_BOUNDARY_FLAG_INDEX])) {
-                        // send data to make a document if there is data to send
-                        // this is a guard against the first line in the list
-                        if (docPages.size() > 0) {
-                            Document doc = buildDocument(docPages, imagesName, nativeName, nativeLine, textName, textSetting);
-                            String key = doc.getMetadata().get(KEY_FIELD);
-                            BoundaryFlag docBreak = BoundaryFlag.valueOf(lineSegments[IMAGE_BOUNDARY_FLAG_INDEX]);
-                            // check if document is a child
-                            if (docBreak.equals(BoundaryFlag.C)) {
-                                setRelationships(doc, lastParent);
-                            }
-                            else {
-                                // document is a parent
-                                lastParent = doc;
-                            }
-                                
-                            docs.put(key, doc);
-                        }
-                        // clear docPages and add new first page
-                        docPages = new ArrayList<>();                        
-                        docPages.add(lineSegments);
-                        // check if native belongs to this doc
-                        // this is a guard against the native appearing before the first image
-                        if (nativeLine != null && !nativeLine[KEY_INDEX].equals(lineSegments[KEY_INDEX])) {
-                            nativeLine = null;
-                        }                        
-                    }
-                    else {
-                        // add page to document pages
-                        docPages.add(lineSegments);
+        DocumentCollector docs = new DocumentCollector(spillPolicy); // maps key to document
+        String lastParentKey = null; // the parent is looked up by key in case it was spilled
+        // the lines of a document are found by index so they can be built in any order
+        List<String> records = (lines instanceof RandomAccess) ? lines : new ArrayList<>(lines);
+        List<DocumentLines> bounds = findDocuments(records);
+        Iterator<Document> documents;
+        if (pool != null) {
+            documents = new ParallelDocumentIterator<>(bounds.iterator(), () -> {
+                ColumnStore store = createStore();
+                LfpTokenizer tokenizer = new LfpTokenizer();
+                return bound -> buildDocument(records, bound, tokenizer, imagesName, nativeName, textName, textSetting, store);
+            }, pool);
+        }
+        else {
+            ColumnStore store = createStore();
+            LfpTokenizer tokenizer = new LfpTokenizer();
+            documents = Iterators.transform(bounds.iterator(), bound -> buildDocument(records, bound, tokenizer, imagesName, nativeName, textName, textSetting, store));
+        }
+        // collect the documents in file order, so a child always finds the parent before it
+        for (DocumentLines bound : bounds) {
+            Document doc = documents.next();
+            String key = doc.getMetadata().get(KEY_FIELD);
+            if (bound.child) {
+                if (lastParentKey == null) {
+                    throw new RuntimeException("Broken families, the parent is missing.");
+                }
+                setRelationships(doc, docs.get(lastParentKey));
+            }
+            else if (bound.firstPage != NONE) {
+                // document is a parent, a native only document can't have children
+                lastParentKey = key;
+            }
+            docs.put(key, doc);
+        }
+        // return documents
+        return docs.getDocuments();
+    }
+
+    /**
+     * Builds a list of documents from the lines of a LFP file that are read one at a time
+     * @param lines the lines from a LFP file
+     * @return returns a list of documents
+     */
+    public List<Document> buildDocuments(Iterator<String> lines) {
+        return buildDocuments(lines, DEFAULT_IMAGE_REP_NAME, DEFAULT_NATIVE_REP_NAME, DEFAULT_TEXT_REP_NAME, null);
+    }
+
+    /**
+     * Builds a list of documents from the lines of a LFP file that are read one at a time
+     * @param lines the lines from a LFP file
+     * @param textSetting the text representative settings
+     * @return returns a list of documents
+     */
+    public List<Document> buildDocuments(Iterator<String> lines, StructuredRepresentativeSetting textSetting) {
+        return buildDocuments(lines, DEFAULT_IMAGE_REP_NAME, DEFAULT_NATIVE_REP_NAME, DEFAULT_TEXT_REP_NAME, textSetting);
+    }
+
+    /**
+     * Builds a list of documents from the lines of a LFP file that are read one at a time, so with a
+     * spill policy only the documents under the heap budget and the family being read are held.
+     * The documents are collected from {@link #streamDocuments(Iterator, String, String, String, StructuredRepresentativeSetting)},
+     * so they keep their metadata in plain maps and the pool is not used.
+     * @param lines the lines from a LFP file
+     * @param imagesName the name of the image representative
+     * @param nativeName the name of the native representative
+     * @param textName the name of the text representative
+     * @param textSetting the text representative settings
+     * @return returns a list of documents
+     */
+    public List<Document> buildDocuments(Iterator<String> lines, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
+        DocumentCollector docs = new DocumentCollector(spillPolicy);
+        // families are linked before they are handed back and a spilled document is swapped for its proxy
+        streamDocuments(lines, imagesName, nativeName, textName, textSetting).forEachRemaining(doc -> docs.put(doc.getKey(), doc));
+        return docs.getDocuments();
+    }
+
+    /**
+     * Streams documents from a LFP file using the default representative names and with no text representative
+     * @param lines the lines from a LFP file
+     * @return returns the documents in file order
+     */
+    public Iterator<Document> streamDocuments(Iterator<String> lines) {
+        return streamDocuments(lines, DEFAULT_IMAGE_REP_NAME, DEFAULT_NATIVE_REP_NAME, DEFAULT_TEXT_REP_NAME, null);
+    }
+
+    /**
+     * Streams documents from a LFP file, the lines are read one at a time and a family is handed
+     * back once the next document that isn't its child starts, so memory grows with the largest
+     * family instead of the file. The documents are the same as {@link #buildDocuments(List)} builds,
+     * except that they keep their metadata in plain maps and a repeated key is not merged.
+     * @param lines the lines from a LFP file
+     * @param imagesName the name of the image representative
+     * @param nativeName the name of the native representative
+     * @param textName the name of the text representative
+     * @param textSetting the text representative settings
+     * @return returns the documents in file order
+     */
+    public Iterator<Document> streamDocuments(Iterator<String> lines, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
+        return new DocumentStream(lines, imagesName, nativeName, textName, textSetting);
+    }
+
+    /**
+     * Finds the lines of each document. A document starts at an image record with a boundary flag
+     * and takes the image records up to the next one. A native record goes to the document with the
+     * same key that is being read or that starts right after it, otherwise it is a document of its own.
+     * @param lines the lines from a LFP file
+     * @return returns the lines of each document in file order
+     */
+    private List<DocumentLines> findDocuments(List<String> lines) {
+        // reading the record types is most of the work, so it is split up when there is a pool
+        byte[] types = new byte[lines.size()];
+        int batchSize = ParallelDocumentIterator.BATCH_SIZE;
+        IntStream batches = IntStream.range(0, (types.length + batchSize - 1) / batchSize);
+        if (pool != null) {
+            pool.submit(() -> batches.parallel().forEach(batch -> readRecordTypes(lines, types, batch * batchSize, batchSize))).join();
+        }
+        else {
+            batches.forEach(batch -> readRecordTypes(lines, types, batch * batchSize, batchSize));
+        }
+        // walk the record types in order
+        LfpTokenizer tokenizer = new LfpTokenizer();
+        List<DocumentLines> documents = new ArrayList<>();
+        DocumentLines current = null;
+        int waitingNative = NONE;
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == NATIVE_RECORD) {
+                if (current != null && current.nativeLine == NONE && getKey(lines, i, tokenizer).equals(getKey(lines, current.firstPage, tokenizer))) {
+                    current.nativeLine = i;
+                }
+                else {
+                    // a native that is still waiting when the next one shows up has no images
+                    if (waitingNative != NONE) {
+                        documents.add(new DocumentLines(NONE, waitingNative, false));
                     }
-                    break;
-                case OF:
-                    // check if native line is blank
-                    // it should be blank after an image line with a doc break is read that doesn't match the key
-                    if (nativeLine == null) {
-                        nativeLine = lineSegments;
+                    waitingNative = i;
+                }
+            }
+            else if (current == null || types[i] != PAGE_RECORD) {
+                // the pages in front of the first boundary flag belong to the first document
+                if (current != null) {
+                    current.end = i;
+                }
+                int nativeLine = NONE;
+                if (waitingNative != NONE) {
+                    if (getKey(lines, waitingNative, tokenizer).equals(getKey(lines, i, tokenizer))) {
+                        nativeLine = waitingNative;
                     }
                     else {
-                        // this is a guard against a native with no corresponding images
-                        // send data to make a document
-                        Document doc = buildDocument(docPages, imagesName, nativeName, nativeLine, textName, textSetting);
-                        String key = doc.getMetadata().get(KEY_FIELD);
-                        docs.put(key,  doc);
-                        // add the current line to native line
-                        nativeLine = lineSegments;
+                        documents.add(new DocumentLines(NONE, waitingNative, false));
                     }
-                    break;
-                default:
-                    throw new RuntimeException("Invalid LFP token encountered.");
+                    waitingNative = NONE;
+                }
+                current = new DocumentLines(i, nativeLine, types[i] == CHILD_RECORD);
+                documents.add(current);
             }
         }
-        // add last doc to the collection
-        Document doc = buildDocument(docPages, imagesName, nativeName, nativeLine, textName, textSetting);
-        String key = doc.getMetadata().get(KEY_FIELD);
-        // check if a relationship needs to be set
-        if (docPages.get(0)[TOKEN_INDEX].equals(Token.IM.toString()) && docPages.get(0)[IMAGE_BOUNDARY_FLAG_INDEX].equals(BoundaryFlag.C.toString())) {
-            setRelationships(doc, lastParent);
+        if (current != null) {
+            current.end = types.length;
         }
-        docs.put(key, doc);        
-        // return documents
-        return new ArrayList<>(docs.values());
+        if (waitingNative != NONE) {
+            documents.add(new DocumentLines(NONE, waitingNative, false));
+        }
+        // an empty file still builds one document so it fails the same way
+        if (documents.isEmpty()) {
+            documents.add(new DocumentLines(NONE, NONE, false));
+        }
+
+        return documents;
     }
-    
+
+    private Document buildDocument(List<String> lines, DocumentLines bounds, LfpTokenizer tokenizer, String imagesName,
+            String nativeName, String textName, StructuredRepresentativeSetting textSetting, ColumnStore store) {
+        List<String[]> docPages = new ArrayList<>(); // all page records for a single document
+        if (bounds.firstPage != NONE) {
+            for (int i = bounds.firstPage; i < bounds.end; i++) {
+                tokenizer.tokenize(lines.get(i));
+                // natives that are read between the pages belong to their own documents
+                if (tokenizer.matches(TOKEN_INDEX, Token.IM.name())) {
+                    docPages.add(tokenizer.toArray());
+                }
+            }
+        }
+        String[] nativeLine = null; // native record
+        if (bounds.nativeLine != NONE) {
+            tokenizer.tokenize(lines.get(bounds.nativeLine));
+            nativeLine = tokenizer.toArray();
+        }
+        return buildDocument(docPages, imagesName, nativeName, nativeLine, textName, textSetting, store);
+    }
+
+    private void readRecordTypes(List<String> lines, byte[] types, int start, int count) {
+        LfpTokenizer tokenizer = new LfpTokenizer();
+        int end = Math.min(start + count, types.length);
+        for (int i = start; i < end; i++) {
+            tokenizer.tokenize(lines.get(i));
+            types[i] = getRecordType(tokenizer);
+        }
+    }
+
+    private byte getRecordType(LfpTokenizer record) {
+        // the tokens and flags are compared in place, without copying them out of the line
+        if (record.matches(TOKEN_INDEX, Token.IM.name())) {
+            // check for a doc break
+            if (record.isBlank(IMAGE_BOUNDARY_FLAG_INDEX)) {
+                return PAGE_RECORD;
+            }
+            else if (record.matches(IMAGE_BOUNDARY_FLAG_INDEX, BoundaryFlag.D.name())) {
+                return PARENT_RECORD;
+            }
+            else if (record.matches(IMAGE_BOUNDARY_FLAG_INDEX, BoundaryFlag.C.name())) {
+                return CHILD_RECORD;
+            }
+            throw new RuntimeException("Invalid LFP boundary flag encountered.");
+        }
+        else if (record.matches(TOKEN_INDEX, Token.OF.name())) {
+            return NATIVE_RECORD;
+        }
+        throw new RuntimeException("Invalid LFP token encountered.");
+    }
+
+    private String getKey(List<String> lines, int index, LfpTokenizer tokenizer) {
+        tokenizer.tokenize(lines.get(index));
+        return tokenizer.get(KEY_INDEX);
+    }
+
+    private ColumnStore createStore() {
+        // documents that may be spilled need to let go of their values, so they don't share a store
+        if (DocumentCollector.isSpilling(spillPolicy)) {
+            return null;
+        }
+
+        ColumnStore store = new ColumnStore(new String[] { KEY_FIELD, VOLUME_NAME_FIELD, PAGE_COUNT_FIELD });
+        store.setColumnType(PAGE_COUNT_FIELD, ColumnType.INTEGER);
+        return store;
+    }
+
     /**
      * Build a single document using the default representative name and with an image representative only
      * @param docPages a list of LFP page records split on a comma or a semicolon
@@ -261,8 +468,24 @@ public class LfpBuilder {
      */
     public Document buildDocument(List<String[]> docPages, String imagesName, String nativeName, String[] nativeLine, 
             String textName, StructuredRepresentativeSetting textSetting) {
+        return buildDocument(docPages, imagesName, nativeName, nativeLine, textName, textSetting, null);
+    }
+
+    /**
+     * Builds a single document 
+     * @param docPages a list of LFP page records split on a comma or a semicolon
+     * @param imagesName the name of the image representative
+     * @param nativeName the name of the native representative
+     * @param nativeLine the LFP native record split on a comma or a semicolon
+     * @param textName the name of the text representative
+     * @param textSetting the text representative settings
+     * @param store the column store that holds the metadata or null to use a plain map
+     * @return returns a document
+     */
+    public Document buildDocument(List<String[]> docPages, String imagesName, String nativeName, String[] nativeLine, 
+            String textName, StructuredRepresentativeSetting textSetting, ColumnStore store) {
         // setup for building
-        Document doc = new Document();
+        Document doc = (store != null) ? new Document(store) : new Document();
         Representative imageRep = null;
         Representative textRep = null;
         Representative nativeRep = null;
@@ -270,7 +493,7 @@ public class LfpBuilder {
         // check if this doc has images or is native only then get document properties
         String key = (docPages.size() > 0) ? docPages.get(0)[KEY_INDEX] : nativeLine[KEY_INDEX];
         String vol = (docPages.size() > 0) ? docPages.get(0)[IMAGE_VOLUME_NAME_INDEX] : nativeLine[NATIVE_VOLUME_NAME_INDEX];
-        vol = vol.replaceAll(VOLUME_TRIM_REGEX, EMPTY_STRING);
+        vol = (vol.startsWith(VOLUME_PREFIX)) ? vol.substring(VOLUME_PREFIX.length()) : vol;
         int pages = docPages.size(); // this could be zero
         String pagesValue = (pages > 0) ? Integer.toString(pages) : EMPTY_STRING;
         // set document properties
@@ -278,30 +501,49 @@ public class LfpBuilder {
         doc.addField(KEY_FIELD, key);
         doc.addField(VOLUME_NAME_FIELD, vol);
         doc.addField(PAGE_COUNT_FIELD, pagesValue);
+        // documents from the same file share their folders
+        PathStore paths = (store != null) ? store.getPathStore() : new PathStore();
         // get image representative
         if (docPages.size() > 0) {
-            Set<String> imageFiles = new LinkedHashSet<>();
-            // note: in the case of a multi-page reference duplicates aren't inserted due to the linked hash set
-            docPages.forEach(page -> imageFiles.add(Paths.get(page[IMAGE_FILE_PATH_INDEX], page[IMAGE_FILE_NAME_INDEX]).toString())); 
+            PathSet imageFiles = new PathSet(paths);
+            ImagePages imagePages = new ImagePages(paths);
+            String boundary = docPages.get(0)[IMAGE_BOUNDARY_FLAG_INDEX];
+            imagePages.setVolume(paths.addVolume(vol));
+            imagePages.setBoundary((boundary.isEmpty()) ? ImagePages.NO_BOUNDARY : boundary.charAt(0));
+            int file = -1;
+            for (String[] page : docPages) {
+                int folder = paths.addFolder(page[IMAGE_FILE_PATH_INDEX], this::getFolderPath);
+                String leaf = page[IMAGE_FILE_NAME_INDEX];
+                // the pages of a multi-page image share one file
+                if (file < 0 || paths.getFolder(file) != folder || !paths.getLeaf(file).equals(leaf)) {
+                    file = paths.addFile(folder, leaf);
+                }
+                imagePages.addPage(file, getOffset(page), getImageType(page, leaf));
+                // note: in the case of a multi-page reference duplicates aren't inserted due to the path set
+                imageFiles.addFile(file);
+            }
             imageRep = new Representative();
             imageRep.setName(imagesName);
             imageRep.setType(Representative.Type.IMAGE);
             imageRep.setFiles(imageFiles);
+            imageRep.setPages(imagePages);
         }
         // get text representative
         if (!textLevel.equals(StructuredRepresentativeSetting.TextLevel.None)) {
-            Set<String> textFiles = new LinkedHashSet<>();
+            Set<String> textFiles = new PathSet(paths);
             // add textFiles
             if (textLevel.equals(StructuredRepresentativeSetting.TextLevel.Page)) {
+                List<String> imagePaths = new ArrayList<>(docPages.size());
                 docPages.forEach(page -> {
-                    String imagePath = Paths.get(page[IMAGE_FILE_PATH_INDEX], page[IMAGE_FILE_NAME_INDEX]).toString();
-                    String textFile = textSetting.getTextPathFromImagePath(imagePath); 
-                    textFiles.add(textFile);
-                });                
+                    int folder = paths.addFolder(page[IMAGE_FILE_PATH_INDEX], this::getFolderPath);
+                    imagePaths.add(paths.getFolderPath(folder).concat(page[IMAGE_FILE_NAME_INDEX]));
+                });
+                textFiles.addAll(textSetting.getTextPathsFromImagePaths(imagePaths));
             }
             else if (textLevel.equals(StructuredRepresentativeSetting.TextLevel.Doc)) {
                 String[] firstPageInfo = docPages.get(0);
-                String imagePath = Paths.get(firstPageInfo[IMAGE_FILE_PATH_INDEX], firstPageInfo[IMAGE_FILE_NAME_INDEX]).toString();
+                int folder = paths.addFolder(firstPageInfo[IMAGE_FILE_PATH_INDEX], this::getFolderPath);
+                String imagePath = paths.getFolderPath(folder).concat(firstPageInfo[IMAGE_FILE_NAME_INDEX]);
                 String textFile = textSetting.getTextPathFromImagePath(imagePath);
                 textFiles.add(textFile);
             }
@@ -313,9 +555,8 @@ public class LfpBuilder {
         }
         // get native representative
         if (nativeLine != null) {
-            Set<String> nativeFiles = new LinkedHashSet<>();
-            String nativeFile = Paths.get(nativeLine[NATIVE_FILE_PATH_INDEX], nativeLine[NATIVE_FILE_NAME_INDEX]).toString();
-            nativeFiles.add(nativeFile);
+            PathSet nativeFiles = new PathSet(paths);
+            nativeFiles.add(paths.addFolder(nativeLine[NATIVE_FILE_PATH_INDEX], this::getFolderPath), nativeLine[NATIVE_FILE_NAME_INDEX]);
             nativeRep = new Representative();            
             nativeRep.setName(nativeName);
             nativeRep.setType(Representative.Type.NATIVE);
@@ -341,6 +582,27 @@ public class LfpBuilder {
         return doc;
     }
     
+    private int getOffset(String[] page) {
+        String offset = page[IMAGE_OFFSET_INDEX];
+        return (StringUtils.isBlank(offset)) ? 0 : Integer.parseInt(offset.trim());
+    }
+
+    private int getImageType(String[] page, String leaf) {
+        // fall back on the extension when the record leaves the type out
+        String imageType = (page.length > IMAGE_TYPE_INDEX) ? page[IMAGE_TYPE_INDEX] : EMPTY_STRING;
+        return (StringUtils.isBlank(imageType)) ? ImagePages.getImageType(leaf) : Integer.parseInt(imageType.trim());
+    }
+
+    /**
+     * Gets the folder path that Paths.get would put in front of a file name in this folder
+     * @param folder the folder value of a LFP record
+     * @return returns the normalized folder with a trailing separator, or blank if there is no folder
+     */
+    private String getFolderPath(String folder) {
+        String folderPath = Paths.get(folder).toString();
+        return (folderPath.isEmpty() || folderPath.endsWith(File.separator)) ? folderPath : folderPath + File.separator;
+    }
+
     private void setRelationships(Document doc, Document parent) {
         doc.setParent(parent);
         // now add this document as a child to the parent
@@ -348,4 +610,158 @@ public class LfpBuilder {
         children.add(doc);
         parent.setChildren(children);
     }
+
+    /**
+     * Finds the documents with the same rules as findDocuments, but one line at a time
+     */
+    private class DocumentStream implements Iterator<Document> {
+        private final Iterator<String> lines;
+        private final String imagesName;
+        private final String nativeName;
+        private final String textName;
+        private final StructuredRepresentativeSetting textSetting;
+        private final LfpTokenizer tokenizer = new LfpTokenizer();
+        private final ArrayDeque<Document> released = new ArrayDeque<>();
+        private final List<Document> family = new ArrayList<>(); // built documents that can still get children
+        private List<String[]> docPages = null; // the pages of the document being read or null if there is none
+        private String docKey = null;
+        private boolean docChild = false;
+        private String[] docNative = null;
+        private final List<String[]> nativesOnly = new ArrayList<>(); // natives without images that follow the document being read
+        private String[] waitingNative = null;
+        private String waitingNativeKey = null;
+        private Document lastParent = null;
+
+        DocumentStream(Iterator<String> lines, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
+            this.lines = lines;
+            this.imagesName = imagesName;
+            this.nativeName = nativeName;
+            this.textName = textName;
+            this.textSetting = textSetting;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (released.isEmpty() && lines.hasNext()) {
+                read(lines.next());
+            }
+            if (released.isEmpty() && (docPages != null || waitingNative != null || !family.isEmpty())) {
+                // the end of the file finishes the last family
+                finishDocument();
+                if (waitingNative != null) {
+                    addNativeOnly(waitingNative);
+                    waitingNative = null;
+                }
+                released.addAll(family);
+                family.clear();
+            }
+
+            return !released.isEmpty();
+        }
+
+        @Override
+        public Document next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return released.poll();
+        }
+
+        private void read(String line) {
+            tokenizer.tokenize(line);
+            byte type = getRecordType(tokenizer);
+            if (type == NATIVE_RECORD) {
+                if (docPages != null && docNative == null && tokenizer.matches(KEY_INDEX, docKey)) {
+                    docNative = tokenizer.toArray();
+                }
+                else {
+                    // a native that is still waiting when the next one shows up has no images
+                    if (waitingNative != null) {
+                        addNativeOnly(waitingNative);
+                    }
+                    waitingNative = tokenizer.toArray();
+                    waitingNativeKey = tokenizer.get(KEY_INDEX);
+                }
+            }
+            else if (docPages == null || type != PAGE_RECORD) {
+                // the pages in front of the first boundary flag belong to the first document
+                finishDocument();
+                String[] firstPage = tokenizer.toArray();
+                String key = tokenizer.get(KEY_INDEX);
+                String[] nativeLine = null;
+                if (waitingNative != null) {
+                    if (waitingNativeKey.equals(key)) {
+                        nativeLine = waitingNative;
+                    }
+                    else {
+                        addNativeOnly(waitingNative);
+                    }
+                    waitingNative = null;
+                }
+                // a document that isn't a child starts a new family, so the one before it is done
+                boolean child = type == CHILD_RECORD;
+                if (!child) {
+                    released.addAll(family);
+                    family.clear();
+                }
+                docPages = new ArrayList<>();
+                docPages.add(firstPage);
+                docKey = key;
+                docChild = child;
+                docNative = nativeLine;
+            }
+            else {
+                // add page to document pages
+                docPages.add(tokenizer.toArray());
+            }
+        }
+
+        private void finishDocument() {
+            if (docPages != null) {
+                Document doc = buildDocument(docPages, imagesName, nativeName, docNative, textName, textSetting, null);
+                // check if document is a child
+                if (docChild) {
+                    if (lastParent == null) {
+                        throw new RuntimeException("Broken families, the parent is missing.");
+                    }
+                    setRelationships(doc, lastParent);
+                }
+                else {
+                    lastParent = doc;
+                }
+                family.add(doc);
+                docPages = null;
+            }
+            // natives without images come after the document they were read in
+            for (String[] nativeLine : nativesOnly) {
+                family.add(buildDocument(new ArrayList<>(), imagesName, nativeName, nativeLine, textName, textSetting, null));
+            }
+            nativesOnly.clear();
+        }
+
+        private void addNativeOnly(String[] nativeLine) {
+            nativesOnly.add(nativeLine);
+            if (docPages == null) {
+                finishDocument();
+            }
+        }
+    }
+
+    /**
+     * The lines of a single document
+     */
+    private static class DocumentLines {
+        private final int firstPage; // the image record with the boundary flag or -1 if there are no images
+        private int end; // one past the last line that can be a page of the document
+        private int nativeLine;
+        private final boolean child;
+
+        DocumentLines(int firstPage, int nativeLine, boolean child) {
+            this.firstPage = firstPage;
+            this.end = firstPage;
+            this.nativeLine = nativeLine;
+            this.child = child;
+        }
+    }
 }
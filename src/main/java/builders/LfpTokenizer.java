@@ -0,0 +1,113 @@
+package builders;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: Splits LFP records on a comma or a semicolon in a single pass. The field boundaries of
+ * the current record are kept in slots that are reused for the next one, so a field is only copied
+ * into a String when it is asked for and tokens and flags can be compared in place. A tokenizer
+ * holds the state of one record, so it must not be shared between threads.
+ */
+class LfpTokenizer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String line = "";
+    private int[] ends = new int[INITIAL_CAPACITY]; // the index after the last character of each field
+    private int size = 0;
+
+    /**
+     * Splits a record, the fields of the previous record are let go
+     * @param line the LFP record
+     */
+    void tokenize(String line) {
+        this.line = line;
+        this.size = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char current = line.charAt(i);
+            if (current == ',' || current == ';') {
+                addEnd(i);
+            }
+        }
+        addEnd(length);
+        // the same as splitting the record, empty fields at the end are dropped
+        while (size > 0 && getStart(size - 1) == ends[size - 1]) {
+            size--;
+        }
+    }
+
+    /**
+     * Gets the number of fields in the record
+     * @return returns the number of fields, not counting empty fields at the end
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets a field value
+     * @param index the index of the field
+     * @return returns the value or blank if the record has no such field
+     */
+    String get(int index) {
+        return (index < size) ? line.substring(getStart(index), ends[index]) : "";
+    }
+
+    /**
+     * Checks a field without copying it
+     * @param index the index of the field
+     * @param value the value to compare to
+     * @return returns true if the field has exactly this value
+     */
+    boolean matches(int index, String value) {
+        if (index >= size) {
+            return value.isEmpty();
+        }
+        int start = getStart(index);
+        return ends[index] - start == value.length() && line.regionMatches(start, value, 0, value.length());
+    }
+
+    /**
+     * Checks if a field is missing, empty or white space
+     * @param index the index of the field
+     * @return returns true if the field is blank
+     */
+    boolean isBlank(int index) {
+        if (index < size) {
+            for (int i = getStart(index); i < ends[index]; i++) {
+                if (!Character.isWhitespace(line.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the fields of the record
+     * @return returns the same values as splitting the record on a comma or a semicolon
+     */
+    String[] toArray() {
+        // an empty record still splits into one empty field
+        if (line.isEmpty()) {
+            return new String[] { line };
+        }
+        String[] fields = new String[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = get(i);
+        }
+        return fields;
+    }
+
+    private int getStart(int index) {
+        return (index == 0) ? 0 : ends[index - 1] + 1;
+    }
+
+    private void addEnd(int end) {
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        ends[size++] = end;
+    }
+}
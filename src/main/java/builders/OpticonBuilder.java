@@ -2,13 +2,24 @@ package builders;
 
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+import eAdapter.ColumnStore;
+import eAdapter.ColumnType;
 import eAdapter.Document;
+import eAdapter.ImagePages;
+import eAdapter.PathSet;
+import eAdapter.PathStore;
 import eAdapter.Representative;
+import eAdapter.SpillPolicy;
 
 /**
  * 
@@ -26,7 +37,7 @@ public class OpticonBuilder {
     private final int FOLDER_BREAK_INDEX = 5;
     @SuppressWarnings("unused")
     private final int PAGE_COUNT_INDEX = 6;
-    private final String TRUE_VALUE = "Y";
+    private final char TRUE_VALUE = 'Y';
     private final String IMAGE_KEY_FIELD = "DocID";
     private final String VOLUME_NAME_FIELD = "Volume Name";
     private final String PAGE_COUNT_FIELD = "Page Count";
@@ -34,14 +45,44 @@ public class OpticonBuilder {
     private final String FOLDER_BREAK_FIELD = "Folder Break";
     private final String DEFAULT_IMAGE_REP_NAME = "default";
     private final String DEFAULT_TEXT_REP_NAME = "default";
-        
-    
+
+    private SpillPolicy spillPolicy = null;
+    private ForkJoinPool pool = null;
+
+    public SpillPolicy getSpillPolicy() {
+        return this.spillPolicy;
+    }
+
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Sets a heap budget for the built documents, once it is crossed the oldest documents are written
+     * to a spill file. Spilled documents keep their metadata in plain maps instead of a column store,
+     * and the returned list has to be closed to delete the spill file.
+     * @param spillPolicy the spill policy or null to keep every document on the heap
+     */
+    public void setSpillPolicy(SpillPolicy spillPolicy) {
+        this.spillPolicy = spillPolicy;
+    }
+
+    /**
+     * Sets a pool to build documents on. The doc breaks are found first and then batches of
+     * documents are built in parallel, they are collected in file order afterwards.
+     * Each batch of documents gets a column store of its own.
+     * @param pool the pool to build on or null to build on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * Builds a list of documents from an opticon file with no text representatives and uses the default image representative name
      * @param lines the lines read from an opt file split on a comma
      * @return returns a list of documents
      */
-    public List<Document> buildDocuments(List<String[]> lines) {
+    public List<Document> buildDocuments(Iterable<String[]> lines) {
         StructuredRepresentativeSetting textSetting = new StructuredRepresentativeSetting();
         textSetting.setTextLevel(StructuredRepresentativeSetting.TextLevel.None);
         textSetting.setTextLocation(StructuredRepresentativeSetting.TextLocation.None);
@@ -54,7 +95,7 @@ public class OpticonBuilder {
      * @param imagesName the name of the image representative
      * @return returns a list of documents
      */
-    public List<Document> buildDocuments(List<String[]> lines, String imagesName) {
+    public List<Document> buildDocuments(Iterable<String[]> lines, String imagesName) {
         StructuredRepresentativeSetting textSetting = new StructuredRepresentativeSetting();
         textSetting.setTextLevel(StructuredRepresentativeSetting.TextLevel.None);
         textSetting.setTextLocation(StructuredRepresentativeSetting.TextLocation.None);
@@ -67,7 +108,7 @@ public class OpticonBuilder {
      * @param textSetting the setting used to construct the text representative
      * @return returns a list of documents
      */
-    public List<Document> buildDocuments(List<String[]> lines, StructuredRepresentativeSetting textSetting) {        
+    public List<Document> buildDocuments(Iterable<String[]> lines, StructuredRepresentativeSetting textSetting) {        
         return buildDocuments(lines, DEFAULT_IMAGE_REP_NAME, DEFAULT_TEXT_REP_NAME, textSetting);        
     } 
     
@@ -79,16 +120,20 @@ public class OpticonBuilder {
      * @param textSetting the setting used to construct the text representative
      * @return returns a list of documents
      */
-    public List<Document> buildDocuments(List<String[]> lines, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
+    public List<Document> buildDocuments(Iterable<String[]> lines, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
         // setup for building
-        Map<String, Document> docs = new LinkedHashMap<>();
+        DocumentCollector docs = new DocumentCollector(spillPolicy);
+        if (pool != null) {
+            return buildDocuments(lines, imagesName, textName, textSetting, docs);
+        }
         List<String[]> docPages = new ArrayList<>();
+        ColumnStore store = createStore();
         // build the documents
         for (String[] line : lines) {
-            if (line[DOC_BREAK_INDEX].toUpperCase().equals(TRUE_VALUE)) {
+            if (isDocBreak(line)) {
                 // send data to make a document
                 if (docPages.size() > 0) {
-                    Document doc = buildDocument(docPages, imagesName, textName, textSetting);
+                    Document doc = buildDocument(docPages, imagesName, textName, textSetting, store);
                     String key = doc.getMetadata().get(IMAGE_KEY_FIELD);
                     docs.put(key, doc);
                 }
@@ -102,11 +147,94 @@ public class OpticonBuilder {
             }
         }
         // add last doc to the collection
-        Document doc = buildDocument(docPages, imagesName, textName, textSetting);
+        Document doc = buildDocument(docPages, imagesName, textName, textSetting, store);
         String key = doc.getMetadata().get(IMAGE_KEY_FIELD);
         docs.put(key, doc);
 
-        return new ArrayList<>(docs.values());
+        return docs.getDocuments();
+    }
+
+    /**
+     * Streams documents from an opticon file with no text representatives and uses the default image representative name
+     * @param lines the lines read from an opt file split on a comma
+     * @return returns the documents in file order
+     */
+    public Iterator<Document> streamDocuments(Iterator<String[]> lines) {
+        StructuredRepresentativeSetting textSetting = new StructuredRepresentativeSetting();
+        textSetting.setTextLevel(StructuredRepresentativeSetting.TextLevel.None);
+        textSetting.setTextLocation(StructuredRepresentativeSetting.TextLocation.None);
+        return streamDocuments(lines, DEFAULT_IMAGE_REP_NAME, DEFAULT_TEXT_REP_NAME, textSetting);
+    }
+
+    /**
+     * Streams documents from an opticon file, the lines are read one at a time and a document is
+     * handed back once the next doc break is read, so memory grows with the largest document instead
+     * of the file. Streamed documents keep their metadata in plain maps.
+     * @param lines the lines read from an opt file split on a comma
+     * @param imagesName the name of images representative
+     * @param textName the name of the text representative
+     * @param textSetting the setting used to construct the text representative
+     * @return returns the documents in file order
+     */
+    public Iterator<Document> streamDocuments(Iterator<String[]> lines, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
+        PeekingIterator<String[]> pages = Iterators.peekingIterator(lines);
+
+        return new AbstractIterator<Document>() {
+            @Override
+            protected Document computeNext() {
+                if (!pages.hasNext()) {
+                    return endOfData();
+                }
+                // a document runs up to the next doc break
+                List<String[]> docPages = new ArrayList<>();
+                docPages.add(pages.next());
+                while (pages.hasNext() && !isDocBreak(pages.peek())) {
+                    docPages.add(pages.next());
+                }
+                return buildDocument(docPages, imagesName, textName, textSetting, null);
+            }
+        };
+    }
+
+    private List<Document> buildDocuments(Iterable<String[]> lines, String imagesName, String textName,
+            StructuredRepresentativeSetting textSetting, DocumentCollector docs) {
+        // the pages of a document are found by index so documents can be built in any order
+        List<String[]> pages = (lines instanceof List && lines instanceof RandomAccess) ? (List<String[]>) lines : Lists.newArrayList(lines);
+        // the first page always starts a document, even if it has no doc break
+        int[] breaks = pool.submit(() -> IntStream.range(0, pages.size()).parallel()
+                .filter(i -> i == 0 || isDocBreak(pages.get(i)))
+                .toArray()).join();
+        // an empty file fails the same way as building in order
+        int[] starts = (breaks.length > 0) ? breaks : new int[] { 0 };
+        Iterator<Integer> documents = IntStream.range(0, starts.length).iterator();
+        Iterator<Document> built = new ParallelDocumentIterator<>(documents, () -> {
+            ColumnStore store = createStore();
+            return i -> {
+                int end = (i + 1 < starts.length) ? starts[i + 1] : pages.size();
+                return buildDocument(pages.subList(starts[i], end), imagesName, textName, textSetting, store);
+            };
+        }, pool);
+        // collect the documents in file order
+        built.forEachRemaining(doc -> docs.put(doc.getMetadata().get(IMAGE_KEY_FIELD), doc));
+
+        return docs.getDocuments();
+    }
+
+    private boolean isDocBreak(String[] line) {
+        // the same as an upper case compare to the true value, without making a copy of every flag
+        String docBreak = line[DOC_BREAK_INDEX];
+        return docBreak.length() == 1 && Character.toUpperCase(docBreak.charAt(0)) == TRUE_VALUE;
+    }
+
+    private ColumnStore createStore() {
+        // documents that may be spilled need to let go of their values, so they don't share a store
+        if (DocumentCollector.isSpilling(spillPolicy)) {
+            return null;
+        }
+
+        ColumnStore store = new ColumnStore(new String[] { IMAGE_KEY_FIELD, VOLUME_NAME_FIELD, PAGE_COUNT_FIELD, BOX_BREAK_FIELD, FOLDER_BREAK_FIELD });
+        store.setColumnType(PAGE_COUNT_FIELD, ColumnType.INTEGER);
+        return store;
     }
     
     /**
@@ -153,8 +281,21 @@ public class OpticonBuilder {
      * @return returns a single document
      */
     public Document buildDocument(List<String[]> docPages, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
+        return buildDocument(docPages, imagesName, textName, textSetting, null);
+    }
+
+    /**
+     * Builds a single document
+     * @param docPages a list of opticon page records split on a comma
+     * @param imagesName the name of the images representative
+     * @param textName the name of the text representative
+     * @param textSetting the setting used to construct the text representative
+     * @param store the column store that holds the metadata or null to use a plain map
+     * @return returns a single document
+     */
+    public Document buildDocument(List<String[]> docPages, String imagesName, String textName, StructuredRepresentativeSetting textSetting, ColumnStore store) {
         // setup for building
-        Document doc = new Document();
+        Document doc = (store != null) ? new Document(store) : new Document();
         StructuredRepresentativeSetting.TextLevel textLevel = textSetting.getTextLevel();        
         // get document properties
         String[] pageOne = docPages.get(0);
@@ -171,24 +312,41 @@ public class OpticonBuilder {
         doc.addField(BOX_BREAK_FIELD, box);
         doc.addField(FOLDER_BREAK_FIELD, dir);
         // get image representative
-        Set<String> representativeFiles = new LinkedHashSet<>();
-        docPages.forEach(page -> representativeFiles.add(page[FULL_PATH_INDEX]));
+        // documents from the same file share their folders
+        PathStore paths = (store != null) ? store.getPathStore() : new PathStore();
+        PathSet representativeFiles = new PathSet(paths);
+        ImagePages imagePages = new ImagePages(paths);
+        String docBreak = pageOne[DOC_BREAK_INDEX];
+        imagePages.setVolume(paths.addVolume(vol));
+        imagePages.setBoundary((docBreak.isEmpty()) ? ImagePages.NO_BOUNDARY : docBreak.charAt(0));
+        String lastPath = null;
+        int file = -1;
+        for (String[] page : docPages) {
+            String path = page[FULL_PATH_INDEX];
+            // a path that repeats the previous page is the next page of a multi-page image
+            if (!path.equals(lastPath)) {
+                file = paths.addFile(path);
+                lastPath = path;
+            }
+            imagePages.addPage(file, ImagePages.getImageType(path));
+            representativeFiles.addFile(file);
+        }
         Representative imageRep = new Representative();
         imageRep.setName(imagesName);
         imageRep.setType(Representative.Type.IMAGE);
         imageRep.setFiles(representativeFiles);
+        imageRep.setPages(imagePages);
         // get text representative        
-        Set<String> textFiles = new LinkedHashSet<>();
+        Set<String> textFiles = new PathSet(paths);
         // add textFiles
         switch (textLevel) {
             case None:
                 // do nothing here
                 break;
             case Page:
-                docPages.forEach(page -> {
-                    String textFile = textSetting.getTextPathFromImagePath(page[FULL_PATH_INDEX]);
-                    textFiles.add(textFile);
-                });
+                List<String> imagePaths = new ArrayList<>(docPages.size());
+                docPages.forEach(page -> imagePaths.add(page[FULL_PATH_INDEX]));
+                textFiles.addAll(textSetting.getTextPathsFromImagePaths(imagePaths));
                 break;
             case Doc:
                 String[] firstPageInfo = docPages.get(0);
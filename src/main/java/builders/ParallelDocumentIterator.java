@@ -0,0 +1,122 @@
+package builders;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import eAdapter.Document;
+
+/**
+ * Purpose: Builds documents from parsed records on a fork join pool and hands them back in record order.
+ * The records are read in batches on the calling thread and each batch is built by one task, so
+ * reading the next records overlaps with building the ones before them. A record that fails to build
+ * throws its exception when its document would have been returned, the same as building in order.
+ * @param <T> the type of the parsed records
+ */
+class ParallelDocumentIterator<T> implements Iterator<Document> {
+
+    /**
+     * The number of records built by one task
+     */
+    static final int BATCH_SIZE = 4096;
+
+    private final Iterator<T> records;
+    private final Supplier<Function<T, Document>> batchBuilders;
+    private final ForkJoinPool pool;
+    private final int window;
+    private final ArrayDeque<ForkJoinTask<Batch>> pending = new ArrayDeque<>();
+    private Batch current = null;
+    private int index = 0;
+
+    /**
+     * Creates an iterator over the documents built from records
+     * @param records the parsed records, they are only read on the calling thread
+     * @param batchBuilders creates the builder of a batch on the thread that builds it,
+     *        so a builder can keep state that is not thread safe, like a column store
+     * @param pool the pool to build on
+     */
+    ParallelDocumentIterator(Iterator<T> records, Supplier<Function<T, Document>> batchBuilders, ForkJoinPool pool) {
+        this.records = records;
+        this.batchBuilders = batchBuilders;
+        this.pool = pool;
+        this.window = Math.max(2, pool.getParallelism() * 2);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || (index >= current.documents.size() && current.error == null)) {
+            submitBatches();
+            if (pending.isEmpty()) {
+                return false;
+            }
+            current = pending.poll().join();
+            index = 0;
+            submitBatches();
+        }
+
+        return true;
+    }
+
+    @Override
+    public Document next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (index == current.documents.size()) {
+            // the record after the last built document failed, so the batches after it are dropped
+            RuntimeException error = current.error;
+            pending.forEach(task -> task.cancel(false));
+            pending.clear();
+            throw error;
+        }
+
+        return current.documents.get(index++);
+    }
+
+    private void submitBatches() {
+        // keep a few batches ahead of the one being handed back, but not so many that they pile up
+        while (pending.size() < window && records.hasNext()) {
+            List<T> batch = new ArrayList<>(BATCH_SIZE);
+            while (batch.size() < BATCH_SIZE && records.hasNext()) {
+                batch.add(records.next());
+            }
+            pending.add(pool.submit(() -> build(batch)));
+        }
+    }
+
+    private Batch build(List<T> batch) {
+        Function<T, Document> builder = batchBuilders.get();
+        Batch built = new Batch(batch.size());
+
+        for (T record : batch) {
+            try {
+                built.documents.add(builder.apply(record));
+            }
+            catch (RuntimeException e) {
+                // keep the original exception so it is thrown as it would have been in order
+                built.error = e;
+                break;
+            }
+        }
+
+        return built;
+    }
+
+    /**
+     * The documents built from one batch of records and the exception that stopped it, if any
+     */
+    private static class Batch {
+        private final List<Document> documents;
+        private RuntimeException error = null;
+
+        Batch(int size) {
+            this.documents = new ArrayList<>(size);
+        }
+    }
+}
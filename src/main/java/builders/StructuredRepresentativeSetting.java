@@ -1,6 +1,10 @@
 package builders;
 
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,6 +20,12 @@ import org.apache.commons.lang3.tuple.Pair;
 public class StructuredRepresentativeSetting {
     
     private final String TEXT_EXT = ".txt";
+    private final String PROBE_FILE = "probe" + TEXT_EXT;
+
+    /**
+     * The default number of image folders whose text folders are remembered
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
     
     /**
      * Levels that a text representative can be.
@@ -60,6 +70,15 @@ public class StructuredRepresentativeSetting {
     private TextLevel textLevel = TextLevel.None;
     private TextLocation textLocation = TextLocation.None;
     private Pair<Pattern, String> textPathFindReplace = null;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private final Map<String, String> textFolders = new LinkedHashMap<String, String>(16, 0.75f, true) { // image folder >> text folder
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > cacheSize;
+        }
+    };
 
     public TextLevel getTextLevel() {
         return this.textLevel;
@@ -72,6 +91,10 @@ public class StructuredRepresentativeSetting {
     public Pair<Pattern, String> getTextPathFindReplace() {
         return this.textPathFindReplace;
     }
+
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
     
     /**
      * 
@@ -87,6 +110,7 @@ public class StructuredRepresentativeSetting {
      */
     public void setTextLocation(TextLocation textLocation) {
         this.textLocation = textLocation;
+        clearCache();
     }
     
     /**
@@ -99,11 +123,71 @@ public class StructuredRepresentativeSetting {
      */
     public void setTextPathFindReplace(Pair<Pattern, String> textPathFindReplace) {
         this.textPathFindReplace = textPathFindReplace;
+        clearCache();
+    }
+
+    /**
+     * 
+     * @param cacheSize the number of image folders whose text folders are remembered, 
+     *        the least recently used folder is dropped first and zero turns the cache off
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(cacheSize, 0);
+        clearCache();
     }
     
-    public String getTextPathFromImagePath(String imagePath) {        
-        String textFolder = FilenameUtils.getFullPath(imagePath);
-        String textFile = FilenameUtils.getBaseName(imagePath) + TEXT_EXT;
+    /**
+     * Gets the path of the text file of an image
+     * @param imagePath the path of the image file
+     * @return returns the text path
+     */
+    public String getTextPathFromImagePath(String imagePath) {
+        String textFolder = getTextFolder(FilenameUtils.getFullPath(imagePath));
+        return textFolder + FilenameUtils.getBaseName(imagePath) + TEXT_EXT;
+    }
+
+    /**
+     * Gets the paths of the text files of a list of images, such as the pages of a document
+     * @param imagePaths the paths of the image files
+     * @return returns the text paths in the same order
+     */
+    public List<String> getTextPathsFromImagePaths(List<String> imagePaths) {
+        List<String> textPaths = new ArrayList<>(imagePaths.size());
+        String lastFolder = null;
+        String lastTextFolder = null;
+
+        for (String imagePath : imagePaths) {
+            String folder = FilenameUtils.getFullPath(imagePath);
+            // the pages of a document nearly always share a folder, so the cache is only asked when it changes
+            if (!folder.equals(lastFolder)) {
+                lastTextFolder = getTextFolder(folder);
+                lastFolder = folder;
+            }
+            textPaths.add(lastTextFolder + FilenameUtils.getBaseName(imagePath) + TEXT_EXT);
+        }
+
+        return textPaths;
+    }
+
+    private String getTextFolder(String imageFolder) {
+        String textFolder;
+        // the setting is shared by the threads that build documents in parallel
+        synchronized (textFolders) {
+            textFolder = textFolders.get(imageFolder);
+        }
+
+        if (textFolder == null) {
+            textFolder = findTextFolder(imageFolder);
+            synchronized (textFolders) {
+                textFolders.put(imageFolder, textFolder);
+            }
+        }
+
+        return textFolder;
+    }
+
+    private String findTextFolder(String imageFolder) {
+        String textFolder = imageFolder;
                 
         switch(textLocation) {            
             case SameAsImages:
@@ -119,6 +203,14 @@ public class StructuredRepresentativeSetting {
                 break;
         }
         
-        return Paths.get(textFolder, textFile).toString(); 
+        // join a file name the way Paths.get does and keep what is in front of it
+        String textPath = Paths.get(textFolder, PROBE_FILE).toString();
+        return textPath.substring(0, textPath.length() - PROBE_FILE.length());
+    }
+
+    private void clearCache() {
+        synchronized (textFolders) {
+            textFolders.clear();
+        }
     }
 }
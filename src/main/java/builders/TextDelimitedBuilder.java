@@ -1,17 +1,25 @@
 package builders;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.collect.Iterators;
+
+import csvparser.CSVRecord;
+import csvparser.RecordMap;
+import eAdapter.ColumnStore;
+import eAdapter.ColumnType;
 import eAdapter.Document;
+import eAdapter.LargeValuePolicy;
 import eAdapter.Representative;
+import eAdapter.SpillPolicy;
 
 /**
  * 
@@ -21,6 +29,75 @@ import eAdapter.Representative;
  * Purpose: Builds documents from a text delimited file.
  */
 public class TextDelimitedBuilder {
+
+    /**
+     * The default number of streamed documents that can wait for their families to be complete
+     */
+    public static final int DEFAULT_FAMILY_BUFFER_SIZE = 100000;
+
+    private LargeValuePolicy largeValuePolicy = null;
+    private SpillPolicy spillPolicy = null;
+    private ForkJoinPool pool = null;
+    private int familyBufferSize = DEFAULT_FAMILY_BUFFER_SIZE;
+
+    public LargeValuePolicy getLargeValuePolicy() {
+        return this.largeValuePolicy;
+    }
+
+    public SpillPolicy getSpillPolicy() {
+        return this.spillPolicy;
+    }
+
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    public int getFamilyBufferSize() {
+        return this.familyBufferSize;
+    }
+
+    /**
+     * Sets where values like message bodies are kept while the documents are in memory,
+     * the column store of the built documents has to be closed once they are done with.
+     * It can't be combined with a pool, see {@link #setPool(ForkJoinPool)}.
+     * @param largeValuePolicy the large value policy or null to keep every value on the heap
+     */
+    public void setLargeValuePolicy(LargeValuePolicy largeValuePolicy) {
+        this.largeValuePolicy = largeValuePolicy;
+    }
+
+    /**
+     * Sets a heap budget for the built documents, once it is crossed the oldest documents are written
+     * to a spill file. Spilled documents keep their metadata in plain maps instead of a column store,
+     * and the returned list has to be closed to delete the spill file.
+     * @param spillPolicy the spill policy or null to keep every document on the heap
+     */
+    public void setSpillPolicy(SpillPolicy spillPolicy) {
+        this.spillPolicy = spillPolicy;
+    }
+
+    /**
+     * Sets a pool to build documents on. Batches of rows are built in parallel and families are
+     * linked afterwards in row order, so the documents and errors are the same as building in order.
+     * Each batch of documents gets a column store of its own, so the value dictionaries and the
+     * inferred column types only cover the rows of a batch and repeated values are kept once per batch.
+     * Every batch would also open a large value store of its own, so a pool can't be combined with
+     * a large value policy unless the documents are spilled.
+     * @param pool the pool to build on or null to build on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets how many streamed documents can wait for their families to be complete. A family that
+     * isn't complete by the time the buffer is full fails the stream instead of growing it.
+     * @param familyBufferSize the number of documents
+     */
+    public void setFamilyBufferSize(int familyBufferSize) {
+        this.familyBufferSize = familyBufferSize;
+    }
+
     /**
      * Builds a list of documents
      * @param lines the lines parsed from a text delimited file
@@ -35,32 +112,131 @@ public class TextDelimitedBuilder {
      * @param repSettings representative settings
      * @return returns a list of documents
      */
-    public List<Document> buildDocuments(List<String[]> lines, boolean hasHeader,
+    public List<Document> buildDocuments(Iterable<String[]> lines, boolean hasHeader,
             String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
             List<UnstructuredRepresentativeSetting> repSettings) {
+        return buildDocuments(lines, hasHeader, keyColumnName, parentColumnName, childColumnName, childColumnDelimiter, repSettings, null);
+    }
+
+    /**
+     * Builds a list of documents with declared column types
+     * @param lines the lines parsed from a text delimited file
+     * @param hasHeader indicates if the first line is a header
+     *        if there is no header the arbitrary column names will be assigned
+     *        in the format "Column 1, Column 2, ..."
+     * @param keyColumnName the name of the column that contains the key
+     *        if no header exists the key must be in the first column
+     * @param parentColumnName the name of the column that contains the parent key or blank if none
+     * @param childColumnName the name of the column that contains the child key or blank if none
+     * @param childColumnDelimiter the delimiter used to split child key values
+     * @param repSettings representative settings
+     * @param columnTypes the types of the columns that are known up front or null,
+     *        the types of the other columns are inferred from the first rows,
+     *        they are not used when documents are spilled
+     * @return returns a list of documents
+     */
+    public List<Document> buildDocuments(Iterable<String[]> lines, boolean hasHeader,
+            String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
+            List<UnstructuredRepresentativeSetting> repSettings, Map<String, ColumnType> columnTypes) {
         // setup for building
-        String[] header = getHeader(lines.get(0), hasHeader);
-        Map<String, Document> docs = new LinkedHashMap<>();
-        Map<String, Document> paternity = new HashMap<>(); // childKey >> parentDoc        
-        String childSeparator = StringUtils.defaultIfBlank(childColumnDelimiter, ";");
-        // build the documents
-        for (String[] line : lines) {
-            if (hasHeader && lines.indexOf(line) == 0) {
-                continue; // skip header line
+        Iterator<String[]> iterator = lines.iterator();
+        if (!iterator.hasNext()) {
+            throw new RuntimeException("The file has no data.");
+        }
+        String[] firstLine = iterator.next();
+        String[] header = getHeader(firstLine, hasHeader);
+        // the first line is only a document if there is no header
+        Iterator<String[]> records = (hasHeader) ? iterator : Iterators.concat(Iterators.singletonIterator(firstLine), iterator);
+        // build the documents, the documents built on one thread share a column store
+        Iterator<Document> documents;
+        if (pool != null) {
+            if (largeValuePolicy != null && !DocumentCollector.isSpilling(spillPolicy)) {
+                throw new RuntimeException("A large value policy can not be used with a pool, every batch would open a large value store of its own.");
             }
-            // build a document
-            Document doc = buildDocument(line, header, keyColumnName, repSettings);
-            // set the parent and child values
-            settleFamilyDrama(parentColumnName, childColumnName, childSeparator, doc, docs, paternity);
-            // add the document to the collection
-            docs.put(doc.getKey(), doc);
+            documents = new ParallelDocumentIterator<>(records, () -> {
+                ColumnStore store = createStore(header, columnTypes);
+                return line -> buildDocument(line, header, keyColumnName, repSettings, store);
+            }, pool);
         }
-        // check for children that have disowned their parent
-        // this can only be known after all children have been imported
-        if (paternity.size() > 0) {
-            throw new RuntimeException("Broken families, children have disowned their parent.");
+        else {
+            ColumnStore store = createStore(header, columnTypes);
+            documents = Iterators.transform(records, line -> buildDocument(line, header, keyColumnName, repSettings, store));
+        }
+        return buildFamilies(documents, parentColumnName, childColumnName, childColumnDelimiter);
+    }
+
+    /**
+     * Builds a list of documents that keep their records and only decode a field when it is read.
+     * Building reads the key, family and representative fields, every other field is left as it is.
+     * @param records the records parsed from a text delimited file
+     * @param hasHeader indicates if the first record is a header
+     *        if there is no header the arbitrary column names will be assigned
+     *        in the format "Column 1, Column 2, ..."
+     * @param keyColumnName the name of the column that contains the key
+     *        if no header exists the key must be in the first column
+     * @param parentColumnName the name of the column that contains the parent key or blank if none
+     * @param childColumnName the name of the column that contains the child key or blank if none
+     * @param childColumnDelimiter the delimiter used to split child key values
+     * @param repSettings representative settings
+     * @return returns a list of documents
+     */
+    public List<Document> buildLazyDocuments(Iterable<CSVRecord> records, boolean hasHeader,
+            String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
+            List<UnstructuredRepresentativeSetting> repSettings) {
+        // setup for building
+        Iterator<CSVRecord> iterator = records.iterator();
+        if (!iterator.hasNext()) {
+            throw new RuntimeException("The file has no data.");
         }
-        return new ArrayList<>(docs.values());
+        CSVRecord firstRecord = iterator.next();
+        String[] header = getHeader(firstRecord.toArray(), hasHeader);
+        Map<String, Integer> headerIndex = RecordMap.indexHeader(header); // all documents share the header
+        // the first record is only a document if there is no header
+        Iterator<CSVRecord> remaining = (hasHeader) ? iterator : Iterators.concat(Iterators.singletonIterator(firstRecord), iterator);
+        // build the documents
+        Function<CSVRecord, Document> builder = record -> buildDocument(record, header, headerIndex, keyColumnName, repSettings);
+        Iterator<Document> documents = (pool != null)
+                ? new ParallelDocumentIterator<>(remaining, () -> builder, pool)
+                : Iterators.transform(remaining, builder::apply);
+        return buildFamilies(documents, parentColumnName, childColumnName, childColumnDelimiter);
+    }
+
+    /**
+     * Streams documents, each document is handed back as soon as its family is complete instead of
+     * after the last line is read. The documents of a family have to be next to each other, a family
+     * is complete once every key it names has been read and a document outside of it follows.
+     * Streamed documents keep their metadata in plain maps, so memory doesn't grow with the file.
+     * @param lines the lines parsed from a text delimited file
+     * @param hasHeader indicates if the first line is a header
+     *        if there is no header the arbitrary column names will be assigned
+     *        in the format "Column 1, Column 2, ..."
+     * @param keyColumnName the name of the column that contains the key
+     *        if no header exists the key must be in the first column
+     * @param parentColumnName the name of the column that contains the parent key or blank if none
+     * @param childColumnName the name of the column that contains the child key or blank if none
+     * @param childColumnDelimiter the delimiter used to split child key values
+     * @param repSettings representative settings
+     * @return returns the documents in file order
+     */
+    public Iterator<Document> streamDocuments(Iterable<String[]> lines, boolean hasHeader,
+            String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
+            List<UnstructuredRepresentativeSetting> repSettings) {
+        // setup for building
+        Iterator<String[]> iterator = lines.iterator();
+        if (!iterator.hasNext()) {
+            throw new RuntimeException("The file has no data.");
+        }
+        String[] firstLine = iterator.next();
+        String[] header = getHeader(firstLine, hasHeader);
+        // the first line is only a document if there is no header
+        Iterator<String[]> records = (hasHeader) ? iterator : Iterators.concat(Iterators.singletonIterator(firstLine), iterator);
+        // build the documents, a shared column store would keep the values of every document
+        Function<String[], Document> builder = line -> buildDocument(line, header, keyColumnName, repSettings, null);
+        Iterator<Document> documents = (pool != null)
+                ? new ParallelDocumentIterator<>(records, () -> builder, pool)
+                : Iterators.transform(records, builder::apply);
+        String childSeparator = StringUtils.defaultIfBlank(childColumnDelimiter, ";");
+        return new FamilyBuffer(documents, parentColumnName, childColumnName, childSeparator, familyBufferSize);
     }
 
     /**
@@ -72,8 +248,21 @@ public class TextDelimitedBuilder {
      * @return returns a document
      */
     public Document buildDocument(String[] line, String[] header, String keyColumnName, List<UnstructuredRepresentativeSetting> representativeSettings) {
+        return buildDocument(line, header, keyColumnName, representativeSettings, null);
+    }
+
+    /**
+     * Builds a document
+     * @param line a text delimited line representing a document
+     * @param header the header which contains the ordered field names
+     * @param keyColumnName the name of the key column
+     * @param representativeSettings representative settings
+     * @param store the column store that holds the metadata or null to use a plain map
+     * @return returns a document
+     */
+    public Document buildDocument(String[] line, String[] header, String keyColumnName, List<UnstructuredRepresentativeSetting> representativeSettings, ColumnStore store) {
         // setup for building
-        Document document = new Document();
+        Document document = (store != null) ? new Document(store) : new Document();
         // check value size matches the header size
         if (header.length != line.length) {
             throw new RuntimeException("The value size does not match the header size.");
@@ -90,6 +279,76 @@ public class TextDelimitedBuilder {
                 : document.getMetadata().get(header[0]);
         document.setKey(keyValue);
         // populate representatives
+        setRepresentatives(document, representativeSettings);
+        // return built document
+        return document;
+    }
+
+    /**
+     * Builds a document that keeps its record and decodes a field when it is read
+     * @param record a text delimited record representing a document
+     * @param header the header which contains the ordered field names
+     * @param headerIndex maps each field name to its index in the header, see {@link RecordMap#indexHeader(String[])}
+     * @param keyColumnName the name of the key column
+     * @param representativeSettings representative settings
+     * @return returns a document
+     */
+    public Document buildDocument(CSVRecord record, String[] header, Map<String, Integer> headerIndex,
+            String keyColumnName, List<UnstructuredRepresentativeSetting> representativeSettings) {
+        // check value size matches the header size
+        if (header.length != record.size()) {
+            throw new RuntimeException("The value size does not match the header size.");
+        }
+        // the metadata is a view over the record
+        Document document = new Document(new RecordMap(record, headerIndex));
+        // populate key, if there is no key column name the value in the first column is expected to be the key
+        String keyValue = (!StringUtils.isBlank(keyColumnName))
+                ? document.getMetadata().get(keyColumnName)
+                : document.getMetadata().get(header[0]);
+        document.setKey(keyValue);
+        // populate representatives
+        setRepresentatives(document, representativeSettings);
+        // return built document
+        return document;
+    }
+
+    private ColumnStore createStore(String[] header, Map<String, ColumnType> columnTypes) {
+        // documents that may be spilled need to let go of their values, so they don't share a store
+        if (DocumentCollector.isSpilling(spillPolicy)) {
+            return null;
+        }
+
+        ColumnStore store = new ColumnStore(header);
+        store.setLargeValuePolicy(largeValuePolicy);
+        if (columnTypes != null) {
+            columnTypes.forEach(store::setColumnType);
+        }
+        return store;
+    }
+
+    private List<Document> buildFamilies(Iterator<Document> documents, String parentColumnName, String childColumnName, String childColumnDelimiter) {
+        // setup for linking
+        DocumentCollector docs = new DocumentCollector(spillPolicy);
+        String childSeparator = StringUtils.defaultIfBlank(childColumnDelimiter, ";");
+        FamilyIndex families = new FamilyIndex(parentColumnName, childColumnName, childSeparator);
+        while (documents.hasNext()) {
+            Document doc = documents.next();
+            // add the document to the collection and note its family
+            int ordinal = docs.put(doc.getKey(), doc);
+            families.add(ordinal, doc, docs);
+        }
+        // a parent can come after its children, so families are only checked after all documents have been read
+        families.resolve();
+        for (int i = 0; i < families.size(); i++) {
+            int parent = families.getParent(i);
+            if (parent >= 0) {
+                setRelationships(docs.get(i), docs.get(parent));
+            }
+        }
+        return docs.getDocuments();
+    }
+
+    private void setRepresentatives(Document document, List<UnstructuredRepresentativeSetting> representativeSettings) {
         if (representativeSettings != null) {
             // setup for populating representatives
             Set<Representative> reps = new LinkedHashSet<>();
@@ -108,79 +367,6 @@ public class TextDelimitedBuilder {
             }
             document.setRepresentatives(reps);
         }
-        // return built document
-        return document;
-    }
-
-    private void settleFamilyDrama(String parentColumnName, String childColumnName, String childSeparator,
-            Document doc, Map<String, Document> docs, Map<String, Document> paternity) {
-        if (StringUtils.isNotBlank(parentColumnName)) {
-            // if we have a parent column name
-            String parentKey = doc.getMetadata().get(parentColumnName);
-            // check that the parentKey doesn't refer to itself
-            if (StringUtils.isBlank(parentKey) || parentKey.equals(doc.getKey())) {
-                // the parentid value refers to itself or there is no parent
-                // do nothing here
-            }
-            else {
-                Document parent = docs.get(parentKey);
-                // check if there is no parent
-                if (parent == null) {
-                    throw new RuntimeException("Broken families, the parent is missing.");
-                }
-                else {
-                    // a parent exists
-                    setRelationships(doc, parent);
-                    // validate relationships if both parent & child fields exists
-                    if (StringUtils.isNotBlank(childColumnName)) {
-                        // log paternity so we can check for children who disown their parent
-                        String childrenLine = doc.getMetadata().get(childColumnName);
-                        if (StringUtils.isNotBlank(childrenLine)) {
-                            String[] childKeys = childrenLine.split(childSeparator);
-                            // the child docs haven't been added yet so we'll record the relationships and add them later
-                            for (String childKey : childKeys) {
-                                paternity.put(childKey, doc); // paternity maps childKey >> parentDoc
-                            }
-                        }
-                        // check for relationships that are not reciprocal
-                        if (!parent.getMetadata().get(childColumnName).contains(parentKey)) {
-                            throw new RuntimeException("Broken families, the parent disowns a child document.");                            
-                        }
-                        else {
-                            // the relationship is reciprocal
-                            // we'll check for orphans later
-                            paternity.remove(doc.getKey());
-                        }
-                    }                    
-                }
-            }
-        }
-        else if (StringUtils.isNotBlank(childColumnName)) {
-            // if we don't have a parent column name but we have a child column name
-            String childrenLine = doc.getMetadata().get(childColumnName);
-            if (StringUtils.isBlank(childrenLine)) {
-                // no childrenLine
-                // do nothing here
-            }
-            else {
-                String[] childKeys = childrenLine.split(childSeparator);
-                // the child docs haven't been added yet so we'll record the relationship and add them later
-                for (String childKey : childKeys) {
-                    paternity.put(childKey, doc); // paternity maps childKey >> parentDoc
-                }
-                // now check for the paternity of this document and add the parent
-                // paternity maps childKey >> parentDoc
-                if (paternity.containsKey(doc.getKey())) {
-                    Document parent = paternity.get(doc.getKey()); // note: the parent doc has already been confirmed
-                    setRelationships(doc, parent);
-                    paternity.remove(doc.getKey()); // needs to be removed for the disowned parent check
-                }
-            }
-        }
-        else {
-            // no family data
-            // do nothing here
-        }
     }
 
     private void setRelationships(Document doc, Document parent) {
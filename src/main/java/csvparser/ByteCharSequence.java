@@ -0,0 +1,85 @@
+package csvparser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Purpose: A char sequence over ISO-8859-1 bytes, where every byte is exactly one character.
+ * ASCII text in any ASCII compatible charset can be viewed this way without decoding it,
+ * and it takes half the memory of the same text in a String.
+ */
+public final class ByteCharSequence implements CharSequence {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a view over a byte array
+     * @param bytes the ISO-8859-1 bytes
+     */
+    public ByteCharSequence(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a view over part of a byte array
+     * @param bytes the ISO-8859-1 bytes
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+    public ByteCharSequence(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Copies text into a byte view if every character fits in one byte
+     * @param text the text to copy
+     * @return returns the byte view or null if the text has a character above 255
+     */
+    public static ByteCharSequence of(CharSequence text) {
+        byte[] bytes = new byte[text.length()];
+
+        for (int i = 0; i < bytes.length; i++) {
+            char currentChar = text.charAt(i);
+            if (currentChar > 255) {
+                return null;
+            }
+            bytes[i] = (byte) currentChar;
+        }
+
+        return new ByteCharSequence(bytes);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        return new ByteCharSequence(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,110 +1,236 @@
 package csvparser;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
-import java.util.Scanner;
-
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.mutable.MutableInt;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import parsers.CharsetDetector;
 import parsers.Delimiters;
 
 public class CSVParser {
 
+    private boolean restoreFlattenedNewLines = false;
+
+    /**
+     * Checks if flattened new lines are turned back into new lines in parsed field values
+     * @return returns true if the flattened new line of the delimiters is replaced with a new line
+     */
+    public boolean isRestoreFlattenedNewLines() {
+        return this.restoreFlattenedNewLines;
+    }
+
+    /**
+     * Sets if flattened new lines are turned back into new lines in parsed field values.
+     * This applies to the parsed records, field views are left as they are in the file.
+     * @param restoreFlattenedNewLines true to replace the flattened new line of the delimiters with a new line
+     */
+    public void setRestoreFlattenedNewLines(boolean restoreFlattenedNewLines) {
+        this.restoreFlattenedNewLines = restoreFlattenedNewLines;
+    }
+
     public List<String[]> parse(Path path, Delimiters delimiters) {
-        Charset charset = CharsetDetector.detect(path);
+        return parse(path, delimiters, CharsetDetector.detect(path));
+    }
 
-        List<String[]> records = new ArrayList<>();
+    /**
+     * Parses all records of a text delimited file that is in a known charset
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns the parsed records
+     */
+    public List<String[]> parse(Path path, Delimiters delimiters, Charset charset) {
+        try (Stream<String[]> records = stream(path, delimiters, charset)) {
+            return records.collect(Collectors.toList());
+        }
+    }
 
-        try (Scanner scanner = new Scanner(path, charset.name())) {
-            scanner.useDelimiter(String.valueOf(delimiters.getNewRecord()));
+    /**
+     * Parses all records of a text delimited file using every core of the common pool.
+     * The records are returned in file order.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @return returns the parsed records
+     */
+    public List<String[]> parseParallel(Path path, Delimiters delimiters) {
+        return parseParallel(path, delimiters, ForkJoinPool.commonPool());
+    }
 
-            while (scanner.hasNext()) {
-                String line = StringUtils.stripToEmpty(scanner.next());
+    /**
+     * Parses all records of a text delimited file on a fork join pool.
+     * Files that can't be tokenized as bytes are parsed on the calling thread.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param pool the pool to parse on
+     * @return returns the parsed records in file order
+     */
+    public List<String[]> parseParallel(Path path, Delimiters delimiters, ForkJoinPool pool) {
+        Charset charset = CharsetDetector.detect(path);
 
-                if (StringUtils.isNotBlank(line)) {
-                    String[] fieldValues = parseLine(line, delimiters);
-                    records.add(fieldValues);
-                }
+        if (MappedRecordReader.supports(charset, delimiters)) {
+            List<String[]> records = new ParallelCSVParser(pool).parse(path, delimiters, charset);
+            if (restores(delimiters)) {
+                records.forEach(values -> restoreNewLines(values, delimiters.getFlattenedNewLine()));
             }
+            return records;
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+        else {
+            return parse(path, delimiters, charset);
         }
+    }
 
-        return records;
+    /**
+     * Streams the records of a text delimited file without reading the whole file into memory.
+     * The stream holds the file open, so it should be closed once it is consumed.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @return returns an ordered stream of parsed records
+     */
+    public Stream<String[]> stream(Path path, Delimiters delimiters) {
+        return stream(path, delimiters, CharsetDetector.detect(path));
     }
 
-    protected String[] parseLine(String line, Delimiters delimiters) {
-        List<String> fieldValues = new ArrayList<>();
-        MutableInt startIndex = new MutableInt(0);
+    /**
+     * Streams the records of a text delimited file that is in a known charset
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns an ordered stream of parsed records
+     */
+    public Stream<String[]> stream(Path path, Delimiters delimiters, Charset charset) {
+        RecordIterator<String[]> iterator = iterator(path, delimiters, charset);
+        Spliterator<String[]> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * Opens an iterator over the records of a text delimited file.
+     * The iterator holds the file open until it is closed.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @return returns a closeable record iterator
+     */
+    public RecordIterator<String[]> iterator(Path path, Delimiters delimiters) {
+        return iterator(path, delimiters, CharsetDetector.detect(path));
+    }
+
+    /**
+     * Opens an iterator over the records of a text delimited file that is in a known charset.
+     * The file is memory mapped and tokenized as bytes when the charset allows it, or as code units
+     * when it is UTF-16, otherwise it is decoded and tokenized as characters.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns a closeable record iterator
+     */
+    public RecordIterator<String[]> iterator(Path path, Delimiters delimiters, Charset charset) {
+        try {
+            RecordIterator<String[]> records;
+
+            if (MappedUtf16RecordReader.supports(charset, delimiters)) {
+                // the flattened new lines are replaced while the values are copied out of the file
+                return new MappedUtf16RecordIterator(FileChannel.open(path, StandardOpenOption.READ), charset, delimiters, restoreFlattenedNewLines);
+            }
+            else if (MappedRecordReader.supports(charset, delimiters)) {
+                records = new MappedRecordIterator(FileChannel.open(path, StandardOpenOption.READ), charset, delimiters);
+            }
+            else {
+                InputStreamReader reader = new InputStreamReader(Files.newInputStream(path), charset);
+                RecordParser recordParser = RecordParsers.of(delimiters);
+                records = new CSVRecordIterator(reader, delimiters).map(record -> recordParser.parseLine(record.getBuffer()));
+            }
 
-        while (startIndex.intValue() < line.length()) {
-            String fieldValue = parseField(line, startIndex, delimiters);
-            fieldValues.add(fieldValue);
+            if (restores(delimiters)) {
+                char flattenedNewLine = delimiters.getFlattenedNewLine();
+                return records.map(values -> restoreNewLines(values, flattenedNewLine));
+            }
+            return records;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        return fieldValues.toArray(new String[fieldValues.size()]);
+    /**
+     * Streams the records of a text delimited file as field views, so only the fields
+     * that are asked for are ever copied into Strings.
+     * The stream holds the file open, so it should be closed once it is consumed.
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @return returns an ordered stream of records
+     */
+    public Stream<CSVRecord> records(Path path, Delimiters delimiters) {
+        return records(path, delimiters, CharsetDetector.detect(path));
     }
 
-    protected String parseField(String line, MutableInt startIndex, Delimiters delimiters) {
-        StringBuilder fieldValue = new StringBuilder();
-        int currentIndex = startIndex.intValue();
-        char currentChar = line.charAt(currentIndex);
+    /**
+     * Streams the records of a text delimited file that is in a known charset as field views
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns an ordered stream of records
+     */
+    public Stream<CSVRecord> records(Path path, Delimiters delimiters, Charset charset) {
+        RecordIterator<CSVRecord> iterator = recordIterator(path, delimiters, charset);
+        Spliterator<CSVRecord> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
 
-        // if this is an emtpy field... simply return empty value
-        if (currentChar == delimiters.getFieldSeparator()) {
-            currentIndex++;
+    /**
+     * Opens an iterator over the records of a text delimited file as field views
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns a closeable record iterator
+     */
+    public RecordIterator<CSVRecord> recordIterator(Path path, Delimiters delimiters, Charset charset) {
+        try {
+            if (MappedUtf16RecordReader.supports(charset, delimiters)) {
+                return new MappedUtf16CSVRecordIterator(FileChannel.open(path, StandardOpenOption.READ), charset, delimiters);
+            }
+            else if (MappedRecordReader.supports(charset, delimiters)) {
+                return new MappedCSVRecordIterator(FileChannel.open(path, StandardOpenOption.READ), charset, delimiters);
+            }
+            else {
+                InputStreamReader reader = new InputStreamReader(Files.newInputStream(path), charset);
+                return new CSVRecordIterator(reader, delimiters);
+            }
         }
-
-        // if this is NOT a qualified field, then simply scan through to next field separator
-        else if (currentChar != delimiters.getTextQualifier()) {
-            int endIndex = line.indexOf(delimiters.getFieldSeparator(), currentIndex);
-            endIndex = (endIndex < 0) ? line.length() : endIndex;
-            fieldValue.append(line.substring(currentIndex, endIndex));
-            currentIndex = endIndex;
+        catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        // otherwise, this field must be text qualified... so we're going to have to parse through the possibilities here
-        else {
-            for (currentIndex = currentIndex + 1; currentIndex < line.length(); currentIndex++) {
-                currentChar = line.charAt(currentIndex);
-                Character nextChar = (currentIndex + 1 < line.length()) ? line.charAt(currentIndex + 1) : null;
-
-                // So we are a qualified field... we have several possibilities:
-                // 1. The character is a properly escaped text qualifier, so we append it as a single character
-                //    a. If text qualifier is not escaped, but it doesn't precede a field separator then this
-                //       this is an error case, but we're going to be nice and treat it as escaped
-                // 3. The character is a text qualifier followed by a field separator, so we're done
-                //    b. If the character is a text qualifier at the very end of the line, we're also done
-                // 4. None of the above - so we append it to the fieldValue
-
-                // current character is escape character for a text qualifier, append text qualifier as part of field value
-                if (currentChar == delimiters.getEscapeCharacter() && nextChar != null && nextChar == delimiters.getTextQualifier()) {
-                    fieldValue.append(nextChar);
-                    currentIndex++;
-                    continue;
-                }
-
-                // if current character is text qualifier, next character is the field separator or doesn't exist then we're done with this field
-                else if (currentChar == delimiters.getTextQualifier() && (nextChar == null || nextChar == delimiters.getFieldSeparator())) {
-                    currentIndex++;
-                    break;
-                }
-
-                // We might be an unqualified text qualifier, an escape character, or anything else... simply append it to field value
-                else {
-                    fieldValue.append(currentChar);
-                }
-            }
+    /**
+     * Splits a single stripped record into its field values
+     * @param line the record text
+     * @param delimiters the delimiters of the record
+     * @return returns the field values
+     */
+    protected String[] parseLine(String line, Delimiters delimiters) {
+        return RecordParsers.of(delimiters).parseLine(line);
+    }
+
+    private boolean restores(Delimiters delimiters) {
+        return restoreFlattenedNewLines && delimiters.getFlattenedNewLine() != '\0';
+    }
+
+    private static String[] restoreNewLines(String[] values, char flattenedNewLine) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].replace(flattenedNewLine, '\n');
         }
 
-        // Update start position to one character after the last one we looked at...
-        startIndex.setValue(currentIndex + 1);
-        return fieldValue.toString();
+        return values;
     }
 }
@@ -0,0 +1,247 @@
+package csvparser;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: A single text delimited record whose fields are views over the record text.
+ * The field offsets are found the first time a field is requested and a field value is
+ * only copied into a String, or has its escaped text qualifiers replaced, when asked for.
+ */
+public class CSVRecord {
+
+    private static final int INITIAL_FIELDS = 16;
+
+    private final CharSequence buffer;
+    private final Delimiters delimiters;
+    private int[] bounds = null; // start and end of each field in the buffer
+    private char[] charBounds = null; // the same bounds at half the size, for records shorter than 64K chars
+    private int size = 0;
+    private BitSet escaped = null; // fields that contain escaped text qualifiers
+
+    /**
+     * Creates a record over stripped record text
+     * @param buffer the record text, without the new record delimiter
+     * @param delimiters the delimiters of the record
+     */
+    public CSVRecord(CharSequence buffer, Delimiters delimiters) {
+        this.buffer = buffer;
+        this.delimiters = delimiters;
+    }
+
+    /**
+     * Gets the record text that the fields are views over
+     * @return returns the record text
+     */
+    public CharSequence getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the delimiters of this record
+     * @return returns the delimiters
+     */
+    public Delimiters getDelimiters() {
+        return this.delimiters;
+    }
+
+    /**
+     * Gets the number of fields in the record
+     * @return returns the field count
+     */
+    public int size() {
+        index();
+        return size;
+    }
+
+    /**
+     * Gets a field without copying it, unless the field contains escaped text qualifiers
+     * @param index the field index
+     * @return returns a read only view of the field value
+     */
+    public CharSequence getField(int index) {
+        checkIndex(index);
+        int start = getBound(index * 2);
+        int end = getBound(index * 2 + 1);
+
+        if (escaped != null && escaped.get(index)) {
+            return unescape(start, end);
+        }
+
+        return CharBuffer.wrap(buffer, start, end);
+    }
+
+    /**
+     * Gets a field value as a String
+     * @param index the field index
+     * @return returns the field value
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        int start = getBound(index * 2);
+        int end = getBound(index * 2 + 1);
+
+        if (escaped != null && escaped.get(index)) {
+            return unescape(start, end);
+        }
+
+        return buffer.subSequence(start, end).toString();
+    }
+
+    /**
+     * Compares a field value to some text without materializing the field
+     * @param index the field index
+     * @param value the text to compare with
+     * @return returns true if the field value is equal to the text
+     */
+    public boolean valueEquals(int index, CharSequence value) {
+        checkIndex(index);
+        int start = getBound(index * 2);
+        int end = getBound(index * 2 + 1);
+
+        if (escaped != null && escaped.get(index)) {
+            return unescape(start, end).contentEquals(value);
+        }
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (buffer.charAt(i) != value.charAt(i - start)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Materializes all field values
+     * @return returns the field values
+     */
+    public String[] toArray() {
+        String[] values = new String[size()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getValue(i);
+        }
+
+        return values;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Field " + index + " does not exist in a record with " + size + " fields.");
+        }
+    }
+
+    private String unescape(int start, int end) {
+        char textQualifier = delimiters.getTextQualifier();
+        char escapeCharacter = delimiters.getEscapeCharacter();
+        StringBuilder value = new StringBuilder(end - start);
+
+        for (int i = start; i < end; i++) {
+            char currentChar = buffer.charAt(i);
+
+            if (currentChar == escapeCharacter && i + 1 < end && buffer.charAt(i + 1) == textQualifier) {
+                currentChar = textQualifier;
+                i++;
+            }
+            value.append(currentChar);
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * Finds the bounds of every field, the first time they are needed
+     */
+    private void index() {
+        if (bounds != null || charBounds != null) {
+            return;
+        }
+
+        char fieldSeparator = delimiters.getFieldSeparator();
+        char textQualifier = delimiters.getTextQualifier();
+        char escapeCharacter = delimiters.getEscapeCharacter();
+        int length = buffer.length();
+        int currentIndex = 0;
+        int[] found = new int[INITIAL_FIELDS * 2];
+
+        // every field separator is followed by another field, even at the very end of the line
+        while (true) {
+            int start = currentIndex;
+            int end;
+
+            // if this is an empty field... the current index is already on the field separator
+            if (currentIndex >= length || buffer.charAt(currentIndex) == fieldSeparator) {
+                end = currentIndex;
+            }
+
+            // if this is NOT a qualified field, then simply scan through to next field separator
+            else if (buffer.charAt(currentIndex) != textQualifier) {
+                while (currentIndex < length && buffer.charAt(currentIndex) != fieldSeparator) {
+                    currentIndex++;
+                }
+                end = currentIndex;
+            }
+
+            // otherwise, this field must be text qualified... the value ends at the text qualifier
+            // that is followed by the field separator or at the very end of the line
+            else {
+                start = currentIndex + 1;
+                end = length;
+
+                for (currentIndex = start; currentIndex < length; currentIndex++) {
+                    char currentChar = buffer.charAt(currentIndex);
+                    boolean hasNext = currentIndex + 1 < length;
+
+                    // an escaped text qualifier, so remember to replace it when the value is asked for
+                    if (currentChar == escapeCharacter && hasNext && buffer.charAt(currentIndex + 1) == textQualifier) {
+                        if (escaped == null) {
+                            escaped = new BitSet();
+                        }
+                        escaped.set(size);
+                        currentIndex++;
+                    }
+
+                    // the closing text qualifier, anything else is part of the value
+                    else if (currentChar == textQualifier && (!hasNext || buffer.charAt(currentIndex + 1) == fieldSeparator)) {
+                        end = currentIndex;
+                        currentIndex++;
+                        break;
+                    }
+                }
+            }
+
+            if (size * 2 == found.length) {
+                found = Arrays.copyOf(found, found.length * 2);
+            }
+            found[size * 2] = start;
+            found[size * 2 + 1] = end;
+            size++;
+
+            if (currentIndex >= length) {
+                break;
+            }
+            currentIndex++;
+        }
+
+        // records are retained by lazy documents, so keep the index as small as the record allows
+        if (length <= Character.MAX_VALUE) {
+            charBounds = new char[size * 2];
+            for (int i = 0; i < charBounds.length; i++) {
+                charBounds[i] = (char) found[i];
+            }
+        }
+        else {
+            bounds = Arrays.copyOf(found, size * 2);
+        }
+    }
+
+    private int getBound(int index) {
+        return (charBounds != null) ? charBounds[index] : bounds[index];
+    }
+}
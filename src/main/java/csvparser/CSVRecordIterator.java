@@ -0,0 +1,183 @@
+package csvparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams records from a text delimited source one record at a time.
+ * Only the record currently being read is held in memory, and a new record delimiter
+ * that appears inside a text qualified field does not end the record.
+ */
+public class CSVRecordIterator implements RecordIterator<CSVRecord> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char NULL_CHAR = '\0';
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    private static final char CARRIAGE_RETURN = '\r';
+
+    private final Reader reader;
+    private final Delimiters delimiters;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder record = new StringBuilder();
+    private int position = 0;
+    private int limit = 0;
+    private boolean firstRead = true;
+    private CSVRecord nextRecord = null;
+    private boolean finished = false;
+
+    /**
+     * Creates an iterator over the records of a reader
+     * @param reader the reader to consume, it is closed when this iterator is closed
+     * @param delimiters the delimiters of the source
+     */
+    public CSVRecordIterator(Reader reader, Delimiters delimiters) {
+        this.reader = reader;
+        this.delimiters = delimiters;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRecord == null && !finished) {
+            String line = readRecord();
+
+            if (line == null) {
+                finished = true;
+            }
+            else {
+                nextRecord = new CSVRecord(line, delimiters);
+            }
+        }
+
+        return nextRecord != null;
+    }
+
+    @Override
+    public CSVRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        CSVRecord current = nextRecord;
+        nextRecord = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        nextRecord = null;
+
+        try {
+            reader.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the next non blank record from the reader
+     * @return returns the stripped record or null if the end of the source was reached
+     */
+    protected String readRecord() {
+        char fieldSeparator = delimiters.getFieldSeparator();
+        char textQualifier = delimiters.getTextQualifier();
+        char escapeCharacter = delimiters.getEscapeCharacter();
+        char newRecord = delimiters.getNewRecord();
+        boolean qualified = false;
+        boolean fieldStart = true;
+        boolean blank = true;
+        int current;
+
+        record.setLength(0);
+
+        while ((current = read()) != -1) {
+            char currentChar = (char) current;
+
+            if (qualified) {
+                int nextChar = peek();
+
+                // an escaped text qualifier never closes the field, so keep both characters as they are
+                if (currentChar == escapeCharacter && nextChar == textQualifier) {
+                    record.append(currentChar).append((char) read());
+                    continue;
+                }
+                // a text qualifier at the end of the field closes it, anything else is part of the value
+                else if (currentChar == textQualifier && (nextChar == -1 || nextChar == fieldSeparator || nextChar == newRecord || nextChar == CARRIAGE_RETURN)) {
+                    qualified = false;
+                }
+            }
+            else if (currentChar == newRecord) {
+                // skip blank lines and keep reading until we find some data
+                if (!blank) {
+                    return StringUtils.stripToEmpty(record.toString());
+                }
+
+                record.setLength(0);
+                fieldStart = true;
+                continue;
+            }
+            else if (currentChar == fieldSeparator) {
+                fieldStart = true;
+                blank = false;
+            }
+            else if (currentChar == textQualifier && textQualifier != NULL_CHAR && fieldStart) {
+                qualified = true;
+                fieldStart = false;
+                blank = false;
+            }
+            else if (!(blank && Character.isWhitespace(currentChar))) {
+                // leading white space is stripped from the record, so it doesn't end the first field start
+                fieldStart = false;
+                blank = false;
+            }
+
+            record.append(currentChar);
+        }
+
+        return (blank) ? null : StringUtils.stripToEmpty(record.toString());
+    }
+
+    private int read() {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++];
+    }
+
+    private int peek() {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position];
+    }
+
+    private boolean fill() {
+        try {
+            int count;
+
+            do {
+                count = reader.read(buffer, 0, buffer.length);
+            } while (count == 0);
+
+            position = 0;
+            limit = Math.max(count, 0);
+            // a UTF-8 byte order mark is not consumed by the decoder, so drop it here
+            if (firstRead && limit > 0 && buffer[0] == BYTE_ORDER_MARK) {
+                position = 1;
+            }
+            firstRead = false;
+            return position < limit || (limit > 0 && fill());
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
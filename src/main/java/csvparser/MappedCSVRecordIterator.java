@@ -0,0 +1,65 @@
+package csvparser;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams records from a memory mapped text delimited file as field views.
+ * Each record keeps a copy of its own bytes. When those bytes are all ASCII, or the file
+ * is ISO-8859-1, the record is a view over the bytes themselves and nothing is decoded
+ * until a field value is asked for. Otherwise the record text is decoded once.
+ */
+public class MappedCSVRecordIterator extends MappedRecordReader<CSVRecord> {
+
+    private final boolean latin1;
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     */
+    public MappedCSVRecordIterator(FileChannel channel, Charset charset, Delimiters delimiters) {
+        super(channel, charset, delimiters);
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Creates an iterator over the records that start inside a byte range of a file.
+     * The last record may continue past the end of the range.
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param start the file offset of the first record
+     * @param end the file offset that no record starts at or after
+     * @param windowSize the number of bytes to map at a time
+     */
+    public MappedCSVRecordIterator(FileChannel channel, Charset charset, Delimiters delimiters, long start, long end, int windowSize) {
+        super(channel, charset, delimiters, start, end, windowSize);
+        this.latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    protected CSVRecord createRecord(int from, int to) {
+        byte[] bytes = copy(from, to);
+
+        if (latin1 || isAscii(bytes)) {
+            return new CSVRecord(new ByteCharSequence(bytes), delimiters);
+        }
+
+        return new CSVRecord(new String(bytes, charset), delimiters);
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte value : bytes) {
+            if (value < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,101 @@
+package csvparser;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams parsed records from a memory mapped text delimited file.
+ * Only the field values that are returned get decoded.
+ */
+public class MappedRecordIterator extends MappedRecordReader<String[]> {
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     */
+    public MappedRecordIterator(FileChannel channel, Charset charset, Delimiters delimiters) {
+        super(channel, charset, delimiters);
+    }
+
+    /**
+     * Creates an iterator over the records that start inside a byte range of a file.
+     * The last record may continue past the end of the range.
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param start the file offset of the first record
+     * @param end the file offset that no record starts at or after
+     * @param windowSize the number of bytes to map at a time
+     */
+    public MappedRecordIterator(FileChannel channel, Charset charset, Delimiters delimiters, long start, long end, int windowSize) {
+        super(channel, charset, delimiters, start, end, windowSize);
+    }
+
+    /**
+     * Splits a stripped record into field values, following the same rules as {@link CSVRecord}
+     * @param from the window index of the first byte of the record
+     * @param to the window index after the last byte of the record
+     * @return returns the decoded field values
+     */
+    @Override
+    protected String[] createRecord(int from, int to) {
+        List<String> fieldValues = new ArrayList<>();
+        int index = from;
+
+        while (true) {
+            int fieldEnd;
+
+            // an empty field
+            if (index >= to || byteAt(index) == fieldSeparator) {
+                fieldEnd = index;
+                fieldValues.add("");
+            }
+            // an unqualified field, so read up to the next field separator
+            else if (byteAt(index) != textQualifier) {
+                fieldEnd = indexOfAny(index, to, fieldSeparator, NONE, NONE);
+                fieldValues.add(decode(index, fieldEnd, false));
+            }
+            // a qualified field, read up to the closing text qualifier
+            else {
+                boolean escaped = false;
+                int valueEnd = to;
+
+                for (fieldEnd = index + 1; fieldEnd < to; fieldEnd++) {
+                    // only a text qualifier or an escape character can end the value
+                    fieldEnd = indexOfAny(fieldEnd, to, textQualifier, escapeCharacter, NONE);
+                    if (fieldEnd == to) {
+                        break;
+                    }
+                    int current = byteAt(fieldEnd);
+                    int next = (fieldEnd + 1 < to) ? byteAt(fieldEnd + 1) : NONE;
+
+                    if (current == escapeCharacter && next == textQualifier) {
+                        escaped = true;
+                        fieldEnd++;
+                    }
+                    else if (current == textQualifier && (next == NONE || next == fieldSeparator)) {
+                        valueEnd = fieldEnd;
+                        fieldEnd++;
+                        break;
+                    }
+                }
+
+                fieldValues.add(decode(index + 1, valueEnd, escaped));
+            }
+
+            // every field separator is followed by another field, even at the very end of the record
+            if (fieldEnd >= to) {
+                break;
+            }
+            index = fieldEnd + 1;
+        }
+
+        return fieldValues.toArray(new String[fieldValues.size()]);
+    }
+}
@@ -0,0 +1,505 @@
+package csvparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams records from a memory mapped text delimited file.
+ * The delimiters are matched against the encoded bytes directly, so nothing is decoded
+ * until a subclass turns the bytes of a record into the record type it returns. This works
+ * for any charset where each delimiter is a single ASCII compatible byte, which covers UTF-8
+ * with ASCII delimiters and the single byte charsets. Only ASCII white space is stripped from
+ * the ends of a record. The stretches between delimiters are skipped eight bytes at a time by
+ * reading the window as longs and testing every byte of a long at once.
+ * @param <T> the type of record returned
+ */
+public abstract class MappedRecordReader<T> implements RecordIterator<T> {
+
+    /**
+     * The default number of bytes mapped at a time
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    protected static final int NONE = -1;
+    private static final int NEED_MORE = -2;
+    private static final int CARRIAGE_RETURN = '\r';
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+    private static final byte[] UTF8_BOM = new byte[] { (byte) 239, (byte) 187, (byte) 191 };
+    private static final long LOW_BITS = 0x0101010101010101L; // the lowest bit of every byte of a long
+    private static final long HIGH_BITS = 0x8080808080808080L; // the highest bit of every byte of a long
+
+    protected final int fieldSeparator;
+    protected final int textQualifier;
+    protected final int escapeCharacter;
+    protected final int newRecord;
+    protected final Delimiters delimiters;
+    protected final Charset charset;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long end;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private int windowLength = 0;
+    private long position;
+    private byte[] scratch = new byte[1024];
+    private T nextRecord = null;
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     */
+    public MappedRecordReader(FileChannel channel, Charset charset, Delimiters delimiters) {
+        this(channel, charset, delimiters, 0, size(channel), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates an iterator over the records that start inside a byte range of a file.
+     * The last record may continue past the end of the range.
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param start the file offset of the first record
+     * @param end the file offset that no record starts at or after
+     * @param windowSize the number of bytes to map at a time
+     */
+    public MappedRecordReader(FileChannel channel, Charset charset, Delimiters delimiters, long start, long end, int windowSize) {
+        if (!supports(charset, delimiters)) {
+            throw new RuntimeException("The delimiters can not be matched as single bytes in " + charset.name() + ".");
+        }
+        this.channel = channel;
+        this.charset = charset;
+        this.delimiters = delimiters;
+        this.fieldSeparator = encode(delimiters.getFieldSeparator(), charset);
+        this.textQualifier = encode(delimiters.getTextQualifier(), charset);
+        this.escapeCharacter = encode(delimiters.getEscapeCharacter(), charset);
+        this.newRecord = encode(delimiters.getNewRecord(), charset);
+        this.fileSize = size(channel);
+        this.end = Math.min(end, fileSize);
+        this.windowSize = windowSize;
+        this.position = (start == 0 && startsWith(UTF8_BOM)) ? UTF8_BOM.length : start;
+    }
+
+    /**
+     * Checks if a file with this charset and these delimiters can be tokenized as bytes
+     * @param charset the charset of the file
+     * @param delimiters the delimiters of the file
+     * @return returns true if every delimiter is a single byte that can't be part of another character
+     */
+    public static boolean supports(Charset charset, Delimiters delimiters) {
+        CharsetEncoder encoder = charset.newEncoder();
+        boolean singleByte = encoder.maxBytesPerChar() == 1 && Arrays.equals(" \t\r\n".getBytes(charset), " \t\r\n".getBytes(StandardCharsets.US_ASCII));
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+        if (!singleByte && !utf8) {
+            return false;
+        }
+
+        for (char delimiter : new char[] { delimiters.getFieldSeparator(), delimiters.getTextQualifier(), delimiters.getEscapeCharacter(), delimiters.getNewRecord() }) {
+            if (delimiter != '\0' && ((utf8 && delimiter > 127) || !encoder.canEncode(delimiter))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRecord == null) {
+            nextRecord = readRecord();
+        }
+
+        return nextRecord != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T current = nextRecord;
+        nextRecord = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        position = end;
+        nextRecord = null;
+        window = null;
+
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the next non blank record
+     * @return returns the record or null if there are no more records in the range
+     */
+    protected T readRecord() {
+        while (position < end) {
+            map(position, false);
+            int recordStart = (int) (position - windowStart);
+            int recordEnd = findRecordEnd(recordStart);
+
+            if (recordEnd == NEED_MORE) {
+                // the record runs past the mapped window, so map it again starting at the record
+                map(position, true);
+                continue;
+            }
+
+            position = windowStart + recordEnd + 1;
+            // strip the record the same way the character parser does
+            while (recordStart < recordEnd && isWhitespace(byteAt(recordStart))) {
+                recordStart++;
+            }
+            while (recordEnd > recordStart && isWhitespace(byteAt(recordEnd - 1))) {
+                recordEnd--;
+            }
+            // skip blank lines
+            if (recordStart < recordEnd) {
+                return createRecord(recordStart, recordEnd);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the new record delimiter that ends the record, ignoring the ones inside of text qualified fields
+     * @param from the window index the record starts at
+     * @return returns the window index of the new record delimiter, the window length if the file ends first
+     *         or NEED_MORE if the window ends first
+     */
+    protected int findRecordEnd(int from) {
+        return findRecordEnd(from, false);
+    }
+
+    /**
+     * Finds the new record delimiter that ends the record
+     * @param from the window index to start at
+     * @param qualified indicates the scan starts inside of a text qualified field instead of at the start of a record
+     * @return returns the window index of the new record delimiter, the window length if the file ends first
+     *         or NEED_MORE if the window ends first
+     */
+    protected int findRecordEnd(int from, boolean qualified) {
+        boolean fieldStart = !qualified;
+        boolean blank = !qualified;
+        boolean lastWindow = windowStart + windowLength >= fileSize;
+
+        for (int i = from; i < windowLength; i++) {
+            // skip the bytes that can't change anything, inside a field only a few of them can
+            if (qualified) {
+                i = indexOfAny(i, windowLength, textQualifier, escapeCharacter, textQualifier);
+            }
+            else if (!fieldStart) {
+                i = indexOfAny(i, windowLength, newRecord, fieldSeparator, newRecord);
+            }
+            if (i == windowLength) {
+                if (qualified && !lastWindow) {
+                    return NEED_MORE;
+                }
+                break;
+            }
+
+            int current = byteAt(i);
+
+            if (qualified) {
+                if (i + 1 >= windowLength && !lastWindow) {
+                    return NEED_MORE;
+                }
+
+                int next = (i + 1 < windowLength) ? byteAt(i + 1) : NONE;
+
+                if (current == escapeCharacter && next == textQualifier) {
+                    i++;
+                }
+                else if (current == textQualifier && (next == NONE || next == fieldSeparator || next == newRecord || next == CARRIAGE_RETURN)) {
+                    qualified = false;
+                }
+            }
+            else if (current == newRecord) {
+                return i;
+            }
+            else if (current == fieldSeparator) {
+                fieldStart = true;
+                blank = false;
+            }
+            else if (current == textQualifier && fieldStart) {
+                qualified = true;
+                fieldStart = false;
+                blank = false;
+            }
+            else if (!(blank && isWhitespace(current))) {
+                fieldStart = false;
+                blank = false;
+            }
+        }
+
+        return (lastWindow) ? windowLength : NEED_MORE;
+    }
+
+    /**
+     * Scans the range for record boundaries without tokenizing anything.
+     * The range has to start right after a new record delimiter, so the only thing that
+     * isn't known is whether that delimiter was inside of a text qualified field.
+     * @param qualified indicates the range starts inside of a text qualified field
+     * @return returns the offset of the first record that starts in the range, or -1 if there is none,
+     *         and whether the range ends inside of a text qualified field
+     */
+    RangeState scanRange(boolean qualified) {
+        long firstRecord = (qualified) ? -1 : position;
+        long offset = position;
+        boolean inside = qualified;
+
+        while (offset < end) {
+            map(offset, false);
+            int recordEnd = findRecordEnd((int) (offset - windowStart), inside);
+
+            if (recordEnd == NEED_MORE) {
+                map(offset, true);
+                continue;
+            }
+
+            offset = windowStart + recordEnd + 1;
+            inside = false;
+            if (firstRecord < 0 && offset < end) {
+                firstRecord = offset;
+            }
+        }
+
+        // when the last record ends after the range, the delimiter that ends the range is part of a field
+        return new RangeState(firstRecord, offset > end);
+    }
+
+    /**
+     * Finds the first record boundary candidate at or after an offset
+     * @param offset the file offset to search from
+     * @return returns the offset right after the next new record delimiter or the file size
+     */
+    long skipPastNewRecord(long offset) {
+        while (offset < fileSize) {
+            map(offset, false);
+            int i = indexOfAny((int) (offset - windowStart), windowLength, newRecord, newRecord, newRecord);
+            if (i < windowLength) {
+                return windowStart + i + 1;
+            }
+            offset = windowStart + windowLength;
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * Gets the file offset of the next record to read
+     * @return returns the file offset
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * The record boundary state of a byte range
+     */
+    static final class RangeState {
+        final long firstRecord;
+        final boolean endsQualified;
+
+        RangeState(long firstRecord, boolean endsQualified) {
+            this.firstRecord = firstRecord;
+            this.endsQualified = endsQualified;
+        }
+    }
+
+    /**
+     * Turns the bytes of a stripped record into the record type this reader returns
+     * @param from the window index of the first byte of the record
+     * @param to the window index after the last byte of the record
+     * @return returns the record
+     */
+    protected abstract T createRecord(int from, int to);
+
+    /**
+     * Copies a slice of the window
+     * @param from the window index of the first byte
+     * @param to the window index after the last byte
+     * @return returns the copied bytes
+     */
+    protected byte[] copy(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer slice = window.duplicate();
+        slice.position(from);
+        slice.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes a slice of the window
+     * @param from the window index of the first byte
+     * @param to the window index after the last byte
+     * @param unescape indicates if escaped text qualifiers need to be replaced
+     * @return returns the decoded value
+     */
+    protected String decode(int from, int to, boolean unescape) {
+        int length = to - from;
+
+        if (length <= 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+
+        ByteBuffer slice = window.duplicate();
+        slice.position(from);
+        slice.get(scratch, 0, length);
+
+        if (unescape) {
+            int count = 0;
+
+            for (int i = 0; i < length; i++) {
+                int current = scratch[i] & 0xFF;
+
+                if (current == escapeCharacter && i + 1 < length && (scratch[i + 1] & 0xFF) == textQualifier) {
+                    i++;
+                }
+                scratch[count++] = scratch[i];
+            }
+            length = count;
+        }
+
+        return new String(scratch, 0, length, charset);
+    }
+
+    protected int byteAt(int index) {
+        return window.get(index) & 0xFF;
+    }
+
+    /**
+     * Finds the first byte in a slice of the window that has one of three values.
+     * Eight bytes are tested at a time, so pass the same value more than once to look for fewer.
+     * @param from the window index of the first byte to test
+     * @param to the window index after the last byte to test
+     * @param first a byte value to look for
+     * @param second another byte value to look for or NONE
+     * @param third another byte value to look for or NONE
+     * @return returns the window index of the byte or to if there is none
+     */
+    protected int indexOfAny(int from, int to, int first, int second, int third) {
+        // a value that isn't used is looked for as the first one
+        second = (second == NONE) ? first : second;
+        third = (third == NONE) ? first : third;
+        long firstBytes = first * LOW_BITS;
+        long secondBytes = second * LOW_BITS;
+        long thirdBytes = third * LOW_BITS;
+        int i = from;
+
+        // the window is little endian, so the lowest zero byte of a long is the first matching byte
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long bytes = window.getLong(i);
+            long found = zeroBytes(bytes ^ firstBytes) | zeroBytes(bytes ^ secondBytes) | zeroBytes(bytes ^ thirdBytes);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            int current = byteAt(i);
+            if (current == first || current == second || current == third) {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Marks the zero bytes of a long, a byte above the first zero byte can be marked by mistake
+     * @param bytes the bytes to test
+     * @return returns a long with the highest bit of each zero byte set
+     */
+    private static long zeroBytes(long bytes) {
+        return (bytes - LOW_BITS) & ~bytes & HIGH_BITS;
+    }
+
+    protected static boolean isWhitespace(int value) {
+        return value < 128 && Character.isWhitespace(value);
+    }
+
+    /**
+     * Maps the window so that it contains a file offset
+     * @param offset the file offset
+     * @param grow indicates the current window is too small and a bigger one is needed
+     */
+    private void map(long offset, boolean grow) {
+        if (!grow && window != null && offset >= windowStart && offset < windowStart + windowLength) {
+            return;
+        }
+
+        long size = windowSize;
+        if (grow && offset == windowStart) {
+            size = Math.max(size, (long) windowLength * 2);
+            if (windowLength >= MAX_WINDOW_SIZE) {
+                throw new RuntimeException("A single record is larger than the largest window that can be mapped.");
+            }
+        }
+        size = Math.min(Math.min(size, MAX_WINDOW_SIZE), fileSize - offset);
+
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            windowStart = offset;
+            windowLength = (int) size;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        if (fileSize < prefix.length) {
+            return false;
+        }
+
+        map(0, false);
+        for (int i = 0; i < prefix.length; i++) {
+            if (window.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int encode(char delimiter, Charset charset) {
+        return (delimiter == '\0') ? NONE : String.valueOf(delimiter).getBytes(charset)[0] & 0xFF;
+    }
+
+    private static long size(FileChannel channel) {
+        try {
+            return channel.size();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
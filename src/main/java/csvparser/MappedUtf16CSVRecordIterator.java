@@ -0,0 +1,33 @@
+package csvparser;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams records from a memory mapped UTF-16 text delimited file as field views.
+ * The code units of each record are copied out of the window once and the record is a view
+ * over them, so nothing else is copied until a field value is asked for.
+ */
+public class MappedUtf16CSVRecordIterator extends MappedUtf16RecordReader<CSVRecord> {
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     */
+    public MappedUtf16CSVRecordIterator(FileChannel channel, Charset charset, Delimiters delimiters) {
+        super(channel, charset, delimiters);
+    }
+
+    @Override
+    protected CSVRecord createRecord(int from, int to) {
+        String text = decode(from, to);
+        // most Concordance records are Latin-1 text, which can be kept at a byte per character
+        ByteCharSequence bytes = ByteCharSequence.of(text);
+
+        return new CSVRecord((bytes != null) ? bytes : text, delimiters);
+    }
+}
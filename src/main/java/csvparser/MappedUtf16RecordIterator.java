@@ -0,0 +1,104 @@
+package csvparser;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams parsed records from a memory mapped UTF-16 text delimited file.
+ * Only the field values that are returned get copied out of the window, and flattened
+ * new lines can be turned back into new lines while a value is copied.
+ */
+public class MappedUtf16RecordIterator extends MappedUtf16RecordReader<String[]> {
+
+    private final int flattenedNewLine;
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param restoreNewLines indicates if the flattened new line of the delimiters is replaced with a new line
+     */
+    public MappedUtf16RecordIterator(FileChannel channel, Charset charset, Delimiters delimiters, boolean restoreNewLines) {
+        this(channel, charset, delimiters, restoreNewLines, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param restoreNewLines indicates if the flattened new line of the delimiters is replaced with a new line
+     * @param windowSize the number of bytes to map at a time
+     */
+    public MappedUtf16RecordIterator(FileChannel channel, Charset charset, Delimiters delimiters, boolean restoreNewLines, int windowSize) {
+        super(channel, charset, delimiters, windowSize);
+        this.flattenedNewLine = (restoreNewLines && delimiters.getFlattenedNewLine() != '\0') ? delimiters.getFlattenedNewLine() : NONE;
+    }
+
+    /**
+     * Splits a stripped record into field values, following the same rules as {@link CSVRecord}
+     * @param from the window index of the first code unit of the record
+     * @param to the window index after the last code unit of the record
+     * @return returns the field values
+     */
+    @Override
+    protected String[] createRecord(int from, int to) {
+        List<String> fieldValues = new ArrayList<>();
+        int index = from;
+
+        while (true) {
+            int fieldEnd;
+
+            // an empty field
+            if (index >= to || unitAt(index) == fieldSeparator) {
+                fieldEnd = index;
+                fieldValues.add("");
+            }
+            // an unqualified field, so read up to the next field separator
+            else if (unitAt(index) != textQualifier) {
+                fieldEnd = indexOfAny(index, to, fieldSeparator, NONE, NONE);
+                fieldValues.add(decode(index, fieldEnd, false, flattenedNewLine));
+            }
+            // a qualified field, read up to the closing text qualifier
+            else {
+                boolean escaped = false;
+                int valueEnd = to;
+
+                for (fieldEnd = index + 1; fieldEnd < to; fieldEnd++) {
+                    // only a text qualifier or an escape character can end the value
+                    fieldEnd = indexOfAny(fieldEnd, to, textQualifier, escapeCharacter, NONE);
+                    if (fieldEnd == to) {
+                        break;
+                    }
+                    int current = unitAt(fieldEnd);
+                    int next = (fieldEnd + 1 < to) ? unitAt(fieldEnd + 1) : NONE;
+
+                    if (current == escapeCharacter && next == textQualifier) {
+                        escaped = true;
+                        fieldEnd++;
+                    }
+                    else if (current == textQualifier && (next == NONE || next == fieldSeparator)) {
+                        valueEnd = fieldEnd;
+                        fieldEnd++;
+                        break;
+                    }
+                }
+
+                fieldValues.add(decode(index + 1, valueEnd, escaped, flattenedNewLine));
+            }
+
+            // every field separator is followed by another field, even at the very end of the record
+            if (fieldEnd >= to) {
+                break;
+            }
+            index = fieldEnd + 1;
+        }
+
+        return fieldValues.toArray(new String[fieldValues.size()]);
+    }
+}
@@ -0,0 +1,439 @@
+package csvparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams records from a memory mapped UTF-16 text delimited file, like a Concordance DAT.
+ * A UTF-16 code unit is a char, so the delimiters are matched against the code units in the mapped
+ * bytes directly and nothing is decoded until a subclass copies the code units of a record into the
+ * record type it returns. The stretches between delimiters are skipped four code units at a time by
+ * reading the window as longs and testing every code unit of a long at once. The byte order comes from
+ * the charset, or from the byte order mark for UTF-16, and the byte order mark is never part of a record.
+ * @param <T> the type of record returned
+ */
+public abstract class MappedUtf16RecordReader<T> implements RecordIterator<T> {
+
+    /**
+     * The default number of bytes mapped at a time
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    protected static final int NONE = -1;
+    private static final int NEED_MORE = -2;
+    private static final int CARRIAGE_RETURN = '\r';
+    private static final int BYTE_ORDER_MARK = 0xFEFF;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+    private static final long LOW_BITS = 0x7FFF7FFF7FFF7FFFL; // every bit but the highest of every code unit of a long
+    private static final long CODE_UNIT_BITS = 0x0001000100010001L; // the lowest bit of every code unit of a long
+
+    protected final int fieldSeparator;
+    protected final int textQualifier;
+    protected final int escapeCharacter;
+    protected final int newRecord;
+    protected final Delimiters delimiters;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final ByteOrder order;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private CharBuffer units; // the window as code units
+    private long windowStart = 0;
+    private int windowLength = 0; // the number of code units in the window
+    private long position;
+    private char[] scratch = new char[1024];
+    private T nextRecord = null;
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     */
+    public MappedUtf16RecordReader(FileChannel channel, Charset charset, Delimiters delimiters) {
+        this(channel, charset, delimiters, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates an iterator over all records of a file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset, Delimiters)}
+     * @param delimiters the delimiters of the file
+     * @param windowSize the number of bytes to map at a time
+     */
+    public MappedUtf16RecordReader(FileChannel channel, Charset charset, Delimiters delimiters, int windowSize) {
+        if (!supports(charset, delimiters)) {
+            throw new RuntimeException("The delimiters can not be matched as code units in " + charset.name() + ".");
+        }
+        this.channel = channel;
+        this.delimiters = delimiters;
+        this.fieldSeparator = encode(delimiters.getFieldSeparator());
+        this.textQualifier = encode(delimiters.getTextQualifier());
+        this.escapeCharacter = encode(delimiters.getEscapeCharacter());
+        this.newRecord = encode(delimiters.getNewRecord());
+        // a trailing odd byte is not a code unit
+        this.fileSize = size(channel) & ~1L;
+        // the windows have to start and end between code units
+        this.windowSize = Math.max(windowSize & ~7, Long.BYTES);
+        this.order = findOrder(charset);
+        this.position = 0;
+        if (fileSize > 0) {
+            map(0, false);
+            if (units.get(0) == BYTE_ORDER_MARK) {
+                position = Character.BYTES;
+            }
+        }
+    }
+
+    /**
+     * Checks if a file with this charset and these delimiters can be tokenized as code units
+     * @param charset the charset of the file
+     * @param delimiters the delimiters of the file
+     * @return returns true if the charset is UTF-16 and no delimiter is half of a surrogate pair
+     */
+    public static boolean supports(Charset charset, Delimiters delimiters) {
+        if (!charset.equals(StandardCharsets.UTF_16) && !charset.equals(StandardCharsets.UTF_16LE) && !charset.equals(StandardCharsets.UTF_16BE)) {
+            return false;
+        }
+
+        for (char delimiter : new char[] { delimiters.getFieldSeparator(), delimiters.getTextQualifier(), delimiters.getEscapeCharacter(), delimiters.getNewRecord() }) {
+            if (Character.isSurrogate(delimiter)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRecord == null) {
+            nextRecord = readRecord();
+        }
+
+        return nextRecord != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T current = nextRecord;
+        nextRecord = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        position = fileSize;
+        nextRecord = null;
+        window = null;
+        units = null;
+
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the next non blank record
+     * @return returns the record or null if there are no more records
+     */
+    protected T readRecord() {
+        while (position < fileSize) {
+            map(position, false);
+            int recordStart = (int) ((position - windowStart) / Character.BYTES);
+            int recordEnd = findRecordEnd(recordStart);
+
+            if (recordEnd == NEED_MORE) {
+                // the record runs past the mapped window, so map it again starting at the record
+                map(position, true);
+                continue;
+            }
+
+            position = windowStart + (recordEnd + 1L) * Character.BYTES;
+            // strip the record the same way the character parser does
+            while (recordStart < recordEnd && Character.isWhitespace(unitAt(recordStart))) {
+                recordStart++;
+            }
+            while (recordEnd > recordStart && Character.isWhitespace(unitAt(recordEnd - 1))) {
+                recordEnd--;
+            }
+            // skip blank lines
+            if (recordStart < recordEnd) {
+                return createRecord(recordStart, recordEnd);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the new record delimiter that ends the record, ignoring the ones inside of text qualified fields
+     * @param from the window index the record starts at
+     * @return returns the window index of the new record delimiter, the window length if the file ends first
+     *         or NEED_MORE if the window ends first
+     */
+    private int findRecordEnd(int from) {
+        boolean qualified = false;
+        boolean fieldStart = true;
+        boolean blank = true;
+        boolean lastWindow = windowStart + (long) windowLength * Character.BYTES >= fileSize;
+
+        for (int i = from; i < windowLength; i++) {
+            // skip the code units that can't change anything, inside a field only a few of them can
+            if (qualified) {
+                i = indexOfAny(i, windowLength, textQualifier, escapeCharacter, textQualifier);
+            }
+            else if (!fieldStart) {
+                i = indexOfAny(i, windowLength, newRecord, fieldSeparator, newRecord);
+            }
+            if (i == windowLength) {
+                if (qualified && !lastWindow) {
+                    return NEED_MORE;
+                }
+                break;
+            }
+
+            int current = unitAt(i);
+
+            if (qualified) {
+                if (i + 1 >= windowLength && !lastWindow) {
+                    return NEED_MORE;
+                }
+
+                int next = (i + 1 < windowLength) ? unitAt(i + 1) : NONE;
+
+                if (current == escapeCharacter && next == textQualifier) {
+                    i++;
+                }
+                else if (current == textQualifier && (next == NONE || next == fieldSeparator || next == newRecord || next == CARRIAGE_RETURN)) {
+                    qualified = false;
+                }
+            }
+            else if (current == newRecord) {
+                return i;
+            }
+            else if (current == fieldSeparator) {
+                fieldStart = true;
+                blank = false;
+            }
+            else if (current == textQualifier && fieldStart) {
+                qualified = true;
+                fieldStart = false;
+                blank = false;
+            }
+            else if (!(blank && Character.isWhitespace(current))) {
+                fieldStart = false;
+                blank = false;
+            }
+        }
+
+        return (lastWindow) ? windowLength : NEED_MORE;
+    }
+
+    /**
+     * Turns the code units of a stripped record into the record type this reader returns
+     * @param from the window index of the first code unit of the record
+     * @param to the window index after the last code unit of the record
+     * @return returns the record
+     */
+    protected abstract T createRecord(int from, int to);
+
+    /**
+     * Copies a slice of the window into a String, the code units are the chars of the String
+     * @param from the window index of the first code unit
+     * @param to the window index after the last code unit
+     * @return returns the value
+     */
+    protected String decode(int from, int to) {
+        int length = to - from;
+
+        if (length <= 0) {
+            return "";
+        }
+
+        char[] chars = reserve(length);
+        CharBuffer slice = units.duplicate();
+        slice.position(from);
+        slice.get(chars, 0, length);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Copies a slice of the window into a String, replacing escaped text qualifiers and
+     * flattened new lines on the way instead of in a pass of their own
+     * @param from the window index of the first code unit
+     * @param to the window index after the last code unit
+     * @param unescape indicates if escaped text qualifiers need to be replaced
+     * @param flattenedNewLine the code unit to replace with a new line or NONE
+     * @return returns the value
+     */
+    protected String decode(int from, int to, boolean unescape, int flattenedNewLine) {
+        if (!unescape && flattenedNewLine == NONE) {
+            return decode(from, to);
+        }
+
+        char[] chars = reserve(to - from);
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            int current = unitAt(i);
+
+            if (unescape && current == escapeCharacter && i + 1 < to && unitAt(i + 1) == textQualifier) {
+                current = textQualifier;
+                i++;
+            }
+            else if (current == flattenedNewLine) {
+                current = '\n';
+            }
+            chars[count++] = (char) current;
+        }
+
+        return new String(chars, 0, count);
+    }
+
+    protected int unitAt(int index) {
+        return units.get(index);
+    }
+
+    /**
+     * Finds the first code unit in a slice of the window that has one of three values.
+     * Four code units are tested at a time, so pass the same value more than once to look for fewer.
+     * @param from the window index of the first code unit to test
+     * @param to the window index after the last code unit to test
+     * @param first a code unit to look for
+     * @param second another code unit to look for or NONE
+     * @param third another code unit to look for or NONE
+     * @return returns the window index of the code unit or to if there is none
+     */
+    protected int indexOfAny(int from, int to, int first, int second, int third) {
+        // a value that isn't used is looked for as the first one
+        second = (second == NONE) ? first : second;
+        third = (third == NONE) ? first : third;
+        long firstUnits = first * CODE_UNIT_BITS;
+        long secondUnits = second * CODE_UNIT_BITS;
+        long thirdUnits = third * CODE_UNIT_BITS;
+        boolean littleEndian = order == ByteOrder.LITTLE_ENDIAN;
+        int i = from;
+
+        // the window is read in the byte order of the file, so the first code unit is the lowest one of a
+        // little endian long and the highest one of a big endian long
+        for (; i + 4 <= to; i += 4) {
+            long value = window.getLong(i * Character.BYTES);
+            long found = zeroUnits(value ^ firstUnits) | zeroUnits(value ^ secondUnits) | zeroUnits(value ^ thirdUnits);
+            if (found != 0) {
+                return i + ((littleEndian) ? Long.numberOfTrailingZeros(found) : Long.numberOfLeadingZeros(found)) / Character.SIZE;
+            }
+        }
+        for (; i < to; i++) {
+            int current = unitAt(i);
+            if (current == first || current == second || current == third) {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    /**
+     * Marks the zero code units of a long, unlike a quicker borrow test no other code unit is marked
+     * @param value the code units to test
+     * @return returns a long with the highest bit of each zero code unit set
+     */
+    private static long zeroUnits(long value) {
+        return ~(((value & LOW_BITS) + LOW_BITS) | value | LOW_BITS);
+    }
+
+    private char[] reserve(int length) {
+        if (scratch.length < length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+
+        return scratch;
+    }
+
+    /**
+     * Maps the window so that it contains a file offset
+     * @param offset the file offset
+     * @param grow indicates the current window is too small and a bigger one is needed
+     */
+    private void map(long offset, boolean grow) {
+        long mappedBytes = (long) windowLength * Character.BYTES;
+        if (!grow && window != null && offset >= windowStart && offset < windowStart + mappedBytes) {
+            return;
+        }
+
+        long size = windowSize;
+        if (grow && offset == windowStart) {
+            size = Math.max(size, mappedBytes * 2);
+            if (mappedBytes >= MAX_WINDOW_SIZE) {
+                throw new RuntimeException("A single record is larger than the largest window that can be mapped.");
+            }
+        }
+        size = Math.min(Math.min(size, MAX_WINDOW_SIZE), fileSize - offset) & ~1L;
+
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            window.order(order);
+            units = window.asCharBuffer();
+            windowStart = offset;
+            windowLength = (int) (size / Character.BYTES);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Finds the byte order of the file, UTF-16 without a byte order mark is big endian
+     * @param charset the charset of the file
+     * @return returns the byte order
+     */
+    private ByteOrder findOrder(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_16LE)) {
+            return ByteOrder.LITTLE_ENDIAN;
+        }
+        if (charset.equals(StandardCharsets.UTF_16) && fileSize >= Character.BYTES) {
+            try {
+                ByteBuffer bom = ByteBuffer.allocate(Character.BYTES);
+                channel.read(bom, 0);
+                if ((bom.get(0) & 0xFF) == 0xFF && (bom.get(1) & 0xFF) == 0xFE) {
+                    return ByteOrder.LITTLE_ENDIAN;
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    private static int encode(char delimiter) {
+        return (delimiter == '\0') ? NONE : delimiter;
+    }
+
+    private static long size(FileChannel channel) {
+        try {
+            return channel.size();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package csvparser;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Streams the records of a memory mapped opticon file. An opticon record has no text
+ * qualifiers, so it is split on every comma in a single pass instead of going through the general
+ * field rules. The records come back the same as {@link MappedRecordIterator} would return them with
+ * {@link Delimiters#COMMA_DELIMITED}.
+ */
+public class OpticonRecordIterator extends MappedRecordReader<String[]> {
+
+    /**
+     * The number of fields in an opticon record
+     */
+    public static final int FIELD_COUNT = 7;
+
+    private int[] separators = new int[FIELD_COUNT]; // the window index of each comma in the current record
+
+    /**
+     * Creates an iterator over all records of an opticon file
+     * @param channel the open file channel, it is closed when this iterator is closed
+     * @param charset the charset of the file, see {@link #supports(Charset)}
+     */
+    public OpticonRecordIterator(FileChannel channel, Charset charset) {
+        super(channel, charset, Delimiters.COMMA_DELIMITED);
+    }
+
+    /**
+     * Checks if an opticon file with this charset can be tokenized as bytes
+     * @param charset the charset of the file
+     * @return returns true if a comma is a single byte that can't be part of another character
+     */
+    public static boolean supports(Charset charset) {
+        return supports(charset, Delimiters.COMMA_DELIMITED);
+    }
+
+    /**
+     * Splits a stripped record on every comma
+     * @param from the window index of the first byte of the record
+     * @param to the window index after the last byte of the record
+     * @return returns the decoded field values
+     */
+    @Override
+    protected String[] createRecord(int from, int to) {
+        // find the commas first so the record is allocated once at its exact size
+        int count = 0;
+        for (int i = indexOfAny(from, to, fieldSeparator, NONE, NONE); i < to; i = indexOfAny(i + 1, to, fieldSeparator, NONE, NONE)) {
+            if (count == separators.length) {
+                separators = Arrays.copyOf(separators, count * 2);
+            }
+            separators[count++] = i;
+        }
+        String[] fields = new String[count + 1];
+        int fieldStart = from;
+        for (int i = 0; i < count; i++) {
+            fields[i] = decode(fieldStart, separators[i], false);
+            fieldStart = separators[i] + 1;
+        }
+        fields[count] = decode(fieldStart, to, false);
+
+        return fields;
+    }
+}
@@ -0,0 +1,150 @@
+package csvparser;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Parses a single text delimited file on a fork join pool.
+ * The file is split into byte ranges that each start right after a new record delimiter.
+ * Every range is scanned twice in parallel, once as if it starts outside of a text qualified
+ * field and once as if it starts inside of one. Walking the ranges in order then tells which
+ * of the two guesses was right and where the first real record of each range starts, so the
+ * ranges can be tokenized in parallel and joined back together in file order.
+ */
+public class ParallelCSVParser {
+
+    /**
+     * The smallest byte range worth handing to another thread
+     */
+    public static final int MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The largest byte range, so each one fits inside of a single mapped window
+     */
+    public static final int MAX_CHUNK_SIZE = MappedRecordReader.DEFAULT_WINDOW_SIZE;
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Creates a parser that sizes its byte ranges for the pool parallelism
+     * @param pool the pool to parse on
+     */
+    public ParallelCSVParser(ForkJoinPool pool) {
+        this(pool, 0);
+    }
+
+    /**
+     * Creates a parser with a fixed byte range size
+     * @param pool the pool to parse on
+     * @param chunkSize the size of each byte range or zero to size them for the pool parallelism
+     */
+    public ParallelCSVParser(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses all records of a file, the charset and delimiters have to be supported by {@link MappedRecordReader}
+     * @param path the path to the text delimited file
+     * @param delimiters the delimiters used to parse the file
+     * @param charset the charset of the file
+     * @return returns the parsed records in file order
+     */
+    public List<String[]> parse(Path path, Delimiters delimiters, Charset charset) {
+        // split the file on raw new record delimiters
+        long[] bounds = split(path, delimiters, charset);
+        int chunks = bounds.length - 1;
+        // scan every range for both possible starting states
+        List<ForkJoinTask<MappedRecordReader.RangeState[]>> scans = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long start = bounds[i];
+            long end = bounds[i + 1];
+            scans.add(pool.submit(() -> scan(path, delimiters, charset, start, end)));
+        }
+        // resolve the real starting state of each range in order
+        long[] starts = new long[chunks];
+        boolean qualified = false;
+        for (int i = 0; i < chunks; i++) {
+            MappedRecordReader.RangeState state = scans.get(i).join()[(qualified) ? 1 : 0];
+            starts[i] = state.firstRecord;
+            qualified = state.endsQualified;
+        }
+        // tokenize the records that start in each range
+        List<ForkJoinTask<List<String[]>>> parses = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long start = starts[i];
+            long end = bounds[i + 1];
+            parses.add((start < 0) ? null : pool.submit(() -> read(path, delimiters, charset, start, end)));
+        }
+        // join the records back together in file order
+        List<String[]> records = new ArrayList<>();
+        for (ForkJoinTask<List<String[]>> parse : parses) {
+            if (parse != null) {
+                records.addAll(parse.join());
+            }
+        }
+
+        return records;
+    }
+
+    private long[] split(Path path, Delimiters delimiters, Charset charset) {
+        try (MappedRecordIterator iterator = open(path, delimiters, charset, 0, Long.MAX_VALUE)) {
+            long size = Files.size(path);
+            long first = iterator.getPosition(); // skips a byte order mark
+            long target = (chunkSize > 0) ? chunkSize
+                    : Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(first);
+
+            long bound = first;
+            while (bound < size) {
+                bound = iterator.skipPastNewRecord(Math.min(size, bound + target) - 1);
+                bounds.add(bound);
+            }
+
+            return bounds.stream().mapToLong(Long::longValue).toArray();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private MappedRecordReader.RangeState[] scan(Path path, Delimiters delimiters, Charset charset, long start, long end) {
+        try (MappedRecordIterator iterator = open(path, delimiters, charset, start, end)) {
+            return new MappedRecordReader.RangeState[] { iterator.scanRange(false), iterator.scanRange(true) };
+        }
+    }
+
+    private List<String[]> read(Path path, Delimiters delimiters, Charset charset, long start, long end) {
+        List<String[]> records = new ArrayList<>();
+
+        try (MappedRecordIterator iterator = open(path, delimiters, charset, start, end)) {
+            iterator.forEachRemaining(records::add);
+        }
+
+        return records;
+    }
+
+    private MappedRecordIterator open(Path path, Delimiters delimiters, Charset charset, long start, long end) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new MappedRecordIterator(channel, charset, delimiters, start, end, MappedRecordReader.DEFAULT_WINDOW_SIZE);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package csvparser;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Purpose: An iterator over the records of an open text delimited source.
+ * @param <T> the type of record returned
+ */
+public interface RecordIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Releases the underlying source, an I/O failure is rethrown unchecked
+     */
+    @Override
+    public void close();
+
+    /**
+     * Converts each record of this iterator, the returned iterator closes this one
+     * @param mapper the conversion to apply to each record
+     * @return returns the converted iterator
+     */
+    public default <R> RecordIterator<R> map(Function<? super T, ? extends R> mapper) {
+        RecordIterator<T> source = this;
+
+        return new RecordIterator<R>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public R next() {
+                return mapper.apply(source.next());
+            }
+
+            @Override
+            public void close() {
+                source.close();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,181 @@
+package csvparser;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Purpose: A metadata map over a retained record. Field values are only unescaped and
+ * decoded when they are read, and every read decodes the value again. The first write
+ * copies all values into a plain map that is used from then on.
+ */
+public class RecordMap extends AbstractMap<String, String> {
+
+    private final CSVRecord record;
+    private final Map<String, Integer> headerIndex;
+    private Map<String, String> copy = null;
+
+    /**
+     * Creates a map over a record
+     * @param record the record, which needs one field for each header field
+     * @param headerIndex maps each field name to its index in the header, shared by all records of a file
+     */
+    public RecordMap(CSVRecord record, Map<String, Integer> headerIndex) {
+        this.record = record;
+        this.headerIndex = headerIndex;
+    }
+
+    /**
+     * Builds the index shared by the maps of a file, a repeated field name keeps its first
+     * position and its last value, the same as putting every value into a map in order
+     * @param header the ordered field names
+     * @return returns a map of each field name to its index
+     */
+    public static Map<String, Integer> indexHeader(String[] header) {
+        Map<String, Integer> headerIndex = new LinkedHashMap<>();
+
+        for (int i = 0; i < header.length; i++) {
+            headerIndex.put(header[i], i);
+        }
+
+        return headerIndex;
+    }
+
+    /**
+     * Gets the record behind this map
+     * @return returns the record or null once the map has been written to
+     */
+    public CSVRecord getRecord() {
+        return (copy == null) ? record : null;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (copy != null) {
+            return copy.get(key);
+        }
+
+        Integer index = headerIndex.get(key);
+        return (index == null) ? null : record.getValue(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (copy != null) ? copy.containsKey(key) : headerIndex.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return (copy != null) ? copy.size() : headerIndex.size();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (copy != null) {
+            return copy.entrySet();
+        }
+
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                Iterator<String> keys = headerIndex.keySet().iterator();
+
+                return new Iterator<Map.Entry<String, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new RecordEntry(keys.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return headerIndex.size();
+            }
+        };
+    }
+
+    private Map<String, String> materialize() {
+        if (copy == null) {
+            Map<String, String> values = new LinkedHashMap<>();
+            headerIndex.forEach((fieldName, index) -> values.put(fieldName, record.getValue(index)));
+            copy = values;
+        }
+
+        return copy;
+    }
+
+    /**
+     * A field that is decoded when its value is read
+     */
+    private class RecordEntry implements Map.Entry<String, String> {
+
+        private final String key;
+
+        RecordEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return get(key);
+        }
+
+        @Override
+        public String setValue(String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
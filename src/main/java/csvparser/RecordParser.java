@@ -0,0 +1,16 @@
+package csvparser;
+
+/**
+ * Purpose: Splits a stripped text delimited record into its field values, following the same rules
+ * as {@link CSVRecord}. The implementation for a set of delimiters comes from {@link RecordParsers}.
+ */
+public interface RecordParser {
+
+    /**
+     * Splits a single stripped record into its field values
+     * @param line the record text, without the new record delimiter
+     * @return returns the field values
+     */
+    public String[] parseLine(CharSequence line);
+
+}
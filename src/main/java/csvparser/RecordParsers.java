@@ -0,0 +1,225 @@
+package csvparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parsers.Delimiters;
+
+/**
+ * Purpose: Hands out the record parser for a set of delimiters. The common delimiter profiles get
+ * parsers of their own where the delimiters are constants, so each profile is compiled into its own
+ * loop without reading the delimiters or testing for a missing text qualifier on every character.
+ * Every other set of delimiters is parsed by {@link CSVRecord}. The parsers keep no state, so they can
+ * be shared between threads.
+ */
+public final class RecordParsers {
+
+    private static final char NULL_CHAR = '\0';
+    private static final RecordParser COMMA_QUOTE = new CommaQuoteParser();
+    private static final RecordParser TAB_DELIMITED = new TabDelimitedParser();
+    private static final RecordParser PIPE_CARET = new PipeCaretParser();
+    private static final RecordParser CONCORDANCE = new ConcordanceParser();
+
+    private RecordParsers() {
+    }
+
+    /**
+     * Gets the parser for a set of delimiters, only the field separator, the text qualifier
+     * and the escape character are used to split a record
+     * @param delimiters the delimiters of the records
+     * @return returns the parser
+     */
+    public static RecordParser of(Delimiters delimiters) {
+        char fieldSeparator = delimiters.getFieldSeparator();
+        char textQualifier = delimiters.getTextQualifier();
+        char escapeCharacter = delimiters.getEscapeCharacter();
+
+        // without a text qualifier the escape character never applies
+        if (textQualifier == NULL_CHAR) {
+            return (fieldSeparator == '\t') ? TAB_DELIMITED : new UnqualifiedParser(fieldSeparator);
+        }
+        if (escapeCharacter == textQualifier) {
+            if (fieldSeparator == CommaQuoteParser.FIELD_SEPARATOR && textQualifier == CommaQuoteParser.TEXT_QUALIFIER) {
+                return COMMA_QUOTE;
+            }
+            if (fieldSeparator == PipeCaretParser.FIELD_SEPARATOR && textQualifier == PipeCaretParser.TEXT_QUALIFIER) {
+                return PIPE_CARET;
+            }
+            if (fieldSeparator == ConcordanceParser.FIELD_SEPARATOR && textQualifier == ConcordanceParser.TEXT_QUALIFIER) {
+                return CONCORDANCE;
+            }
+        }
+
+        return new GenericParser(delimiters);
+    }
+
+    /**
+     * Splits a record where the escape character is the text qualifier, so an escaped text qualifier
+     * is a doubled one. It is kept small so it is inlined into each profile, where the delimiters are constants.
+     * @param line the record text
+     * @param fieldSeparator the field separator
+     * @param textQualifier the text qualifier and escape character
+     * @return returns the field values
+     */
+    private static String[] splitQualified(CharSequence line, char fieldSeparator, char textQualifier) {
+        List<String> fieldValues = new ArrayList<>();
+        int length = line.length();
+        int index = 0;
+
+        // every field separator is followed by another field, even at the very end of the line
+        while (true) {
+            // an empty field
+            if (index >= length || line.charAt(index) == fieldSeparator) {
+                fieldValues.add("");
+            }
+            // an unqualified field, so read up to the next field separator
+            else if (line.charAt(index) != textQualifier) {
+                int start = index;
+                while (index < length && line.charAt(index) != fieldSeparator) {
+                    index++;
+                }
+                fieldValues.add(line.subSequence(start, index).toString());
+            }
+            // a qualified field, the value ends at the text qualifier that is followed by the field separator
+            else {
+                StringBuilder value = null; // only needed once an escaped text qualifier is found
+                int start = ++index;
+                int end = length;
+
+                for (; index < length; index++) {
+                    if (line.charAt(index) != textQualifier) {
+                        continue;
+                    }
+                    boolean hasNext = index + 1 < length;
+
+                    if (hasNext && line.charAt(index + 1) == textQualifier) {
+                        // keep one text qualifier of the escaped pair
+                        value = (value == null) ? new StringBuilder(length - start) : value;
+                        value.append(line, start, index + 1);
+                        index++;
+                        start = index + 1;
+                    }
+                    else if (!hasNext || line.charAt(index + 1) == fieldSeparator) {
+                        end = index;
+                        index++;
+                        break;
+                    }
+                }
+
+                fieldValues.add((value == null) ? line.subSequence(start, end).toString() : value.append(line, start, end).toString());
+            }
+
+            if (index >= length) {
+                break;
+            }
+            index++;
+        }
+
+        return fieldValues.toArray(new String[fieldValues.size()]);
+    }
+
+    /**
+     * Splits a record on every field separator
+     * @param line the record text
+     * @param fieldSeparator the field separator
+     * @return returns the field values
+     */
+    private static String[] splitUnqualified(CharSequence line, char fieldSeparator) {
+        List<String> fieldValues = new ArrayList<>();
+        int length = line.length();
+        int start = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) == fieldSeparator) {
+                fieldValues.add(line.subSequence(start, i).toString());
+                start = i + 1;
+            }
+        }
+        fieldValues.add(line.subSequence(start, length).toString());
+
+        return fieldValues.toArray(new String[fieldValues.size()]);
+    }
+
+    /**
+     * Parses {@link Delimiters#COMMA_QUOTE} records
+     */
+    private static final class CommaQuoteParser implements RecordParser {
+        private static final char FIELD_SEPARATOR = ',';
+        private static final char TEXT_QUALIFIER = '"';
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return splitQualified(line, FIELD_SEPARATOR, TEXT_QUALIFIER);
+        }
+    }
+
+    /**
+     * Parses {@link Delimiters#PIPE_CARET} records
+     */
+    private static final class PipeCaretParser implements RecordParser {
+        private static final char FIELD_SEPARATOR = '|';
+        private static final char TEXT_QUALIFIER = '^';
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return splitQualified(line, FIELD_SEPARATOR, TEXT_QUALIFIER);
+        }
+    }
+
+    /**
+     * Parses {@link Delimiters#CONCORDANCE} records
+     */
+    private static final class ConcordanceParser implements RecordParser {
+        private static final char FIELD_SEPARATOR = (char) 20;
+        private static final char TEXT_QUALIFIER = (char) 254;
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return splitQualified(line, FIELD_SEPARATOR, TEXT_QUALIFIER);
+        }
+    }
+
+    /**
+     * Parses {@link Delimiters#TAB_DELIMITED} records
+     */
+    private static final class TabDelimitedParser implements RecordParser {
+        private static final char FIELD_SEPARATOR = '\t';
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return splitUnqualified(line, FIELD_SEPARATOR);
+        }
+    }
+
+    /**
+     * Parses records with any field separator and no text qualifier, like {@link Delimiters#COMMA_DELIMITED}
+     */
+    private static final class UnqualifiedParser implements RecordParser {
+        private final char fieldSeparator;
+
+        UnqualifiedParser(char fieldSeparator) {
+            this.fieldSeparator = fieldSeparator;
+        }
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return splitUnqualified(line, fieldSeparator);
+        }
+    }
+
+    /**
+     * Parses records with any other delimiters
+     */
+    private static final class GenericParser implements RecordParser {
+        private final Delimiters delimiters;
+
+        GenericParser(Delimiters delimiters) {
+            this.delimiters = delimiters;
+        }
+
+        @Override
+        public String[] parseLine(CharSequence line) {
+            return new CSVRecord(line, delimiters).toArray();
+        }
+    }
+}
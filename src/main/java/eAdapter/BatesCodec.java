@@ -0,0 +1,239 @@
+package eAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Purpose: Encodes Bates style keys like RS00001 into a long that sorts the way people read them.
+ * A key is split into a text prefix and the run of digits at its end. The prefix and the number
+ * of digits are interned as a prefix id that is kept in the high bits and the digits are kept
+ * as a number in the low bits. Keys compare by prefix text, then by number, so RS9 comes before
+ * RS10 and RS0010 is the same Bates number as RS10. Only the last twelve digits are read as a number,
+ * any digits before them stay in the prefix.
+ */
+public class BatesCodec {
+
+    /**
+     * The largest number of trailing digits that are read as a number
+     */
+    public static final int MAX_DIGITS = 12;
+
+    /**
+     * The code {@link #tryEncode(String)} returns for a key whose prefix was never interned
+     */
+    public static final long UNKNOWN = -1L;
+
+    private static final int NUMBER_BITS = 40;
+    private static final long NUMBER_MASK = (1L << NUMBER_BITS) - 1;
+    private static final int MAX_PREFIXES = 1 << (Long.SIZE - NUMBER_BITS - 1);
+
+    private final Map<String, Integer> prefixIds = new HashMap<>(); // width and prefix >> prefix id
+    private final Map<String, Integer> textIds = new HashMap<>(); // prefix >> first prefix id with that text
+    private final List<String> prefixes = new ArrayList<>();
+    private int[] widths = new int[16];
+    private int[] ranks = null; // prefix id >> order of the prefix text, built when needed
+
+    /**
+     * Encodes a key and interns its prefix
+     * @param key the key
+     * @return returns the code
+     */
+    public synchronized long encode(String key) {
+        int start = findDigits(key);
+        String prefix = key.substring(0, start);
+        int width = key.length() - start;
+        // intern the prefix with its digit count, so the key can be written back as it was
+        String internKey = (char) width + prefix;
+        Integer prefixId = prefixIds.get(internKey);
+        if (prefixId == null) {
+            if (prefixes.size() == MAX_PREFIXES) {
+                throw new RuntimeException("There are too many distinct key prefixes.");
+            }
+            prefixId = prefixes.size();
+            prefixIds.put(internKey, prefixId);
+            textIds.putIfAbsent(prefix, prefixId);
+            prefixes.add(prefix);
+            if (prefixId == widths.length) {
+                widths = Arrays.copyOf(widths, prefixId * 2);
+            }
+            widths[prefixId] = width;
+            ranks = null;
+        }
+
+        return toCode(prefixId, key, start);
+    }
+
+    /**
+     * Encodes a key without interning anything, so it can be used to look up keys that might never
+     * have been encoded. A prefix that was interned with a different digit count stands in for the
+     * prefix of the key, the code compares the same way but may not decode back to the key.
+     * @param key the key
+     * @return returns the code or {@link #UNKNOWN} if the prefix text was never interned
+     */
+    public synchronized long tryEncode(String key) {
+        int start = findDigits(key);
+        String prefix = key.substring(0, start);
+        Integer prefixId = prefixIds.get((char) (key.length() - start) + prefix);
+        if (prefixId == null) {
+            prefixId = textIds.get(prefix);
+        }
+
+        return (prefixId != null) ? toCode(prefixId, key, start) : UNKNOWN;
+    }
+
+    /**
+     * Writes a code back out as the key it was encoded from
+     * @param code the code
+     * @return returns the key
+     */
+    public String decode(long code) {
+        int prefixId = getPrefixId(code);
+        int width = getWidth(prefixId);
+        String prefix = getPrefix(prefixId);
+
+        if (width == 0) {
+            return prefix;
+        }
+
+        String digits = Long.toString(getNumber(code));
+        StringBuilder key = new StringBuilder(prefix.length() + width).append(prefix);
+        for (int i = digits.length(); i < width; i++) {
+            key.append('0');
+        }
+        return key.append(digits).toString();
+    }
+
+    /**
+     * Gets the prefix id of a code
+     * @param code the code
+     * @return returns the prefix id
+     */
+    public static int getPrefixId(long code) {
+        return (int) (code >>> NUMBER_BITS);
+    }
+
+    /**
+     * Gets the number of a code
+     * @param code the code
+     * @return returns the value of the trailing digits or zero if the key had none
+     */
+    public static long getNumber(long code) {
+        return code & NUMBER_MASK;
+    }
+
+    /**
+     * Gets the text of an interned prefix
+     * @param prefixId the prefix id
+     * @return returns the prefix
+     */
+    public synchronized String getPrefix(int prefixId) {
+        return prefixes.get(prefixId);
+    }
+
+    /**
+     * Gets the number of trailing digits that belong with an interned prefix
+     * @param prefixId the prefix id
+     * @return returns the digit count
+     */
+    public synchronized int getWidth(int prefixId) {
+        return widths[prefixId];
+    }
+
+    /**
+     * Compares two codes
+     * @param code1 the first code
+     * @param code2 the second code
+     * @return returns a negative number, zero or a positive number as the first key sorts before, with or after the second,
+     *         keys that only differ by leading zeros sort together
+     */
+    public int compare(long code1, long code2) {
+        if (getPrefixId(code1) == getPrefixId(code2)) {
+            return Long.compare(getNumber(code1), getNumber(code2));
+        }
+
+        return compare(code1, code2, getRanks());
+    }
+
+    /**
+     * Sorts documents by the codes of a key field, documents with the same key keep their order.
+     * The codes are worked out once and the sort runs on the common fork join pool.
+     * @param docs the documents, which are put back into the list in their new order
+     * @param fieldName the key field or null to sort on the document keys,
+     *        documents without a key sort before the rest
+     */
+    public void parallelSort(List<Document> docs, String fieldName) {
+        int size = docs.size();
+        long[] codes = new long[size];
+        boolean[] blank = new boolean[size];
+        Integer[] order = new Integer[size];
+        // encode the keys up front so the sort never touches a string
+        for (int i = 0; i < size; i++) {
+            Document doc = docs.get(i);
+            String key = (fieldName != null) ? doc.getMetadata().get(fieldName) : doc.getKey();
+            blank[i] = (key == null || key.isEmpty());
+            codes[i] = (blank[i]) ? 0 : encode(key);
+            order[i] = i;
+        }
+        // rank the prefixes before the sort, so the threads only read them
+        int[] ranks = getRanks();
+        Arrays.parallelSort(order, (a, b) -> {
+            int compare = Boolean.compare(!blank[a], !blank[b]);
+            if (compare == 0 && !blank[a]) {
+                compare = compare(codes[a], codes[b], ranks);
+            }
+            return (compare != 0) ? compare : Integer.compare(a, b);
+        });
+        // put the documents back in their new order
+        Document[] sorted = new Document[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = docs.get(order[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            docs.set(i, sorted[i]);
+        }
+    }
+
+    private static int findDigits(String key) {
+        // the start of the trailing digits
+        int end = key.length();
+        int start = end;
+        while (start > 0 && end - start < MAX_DIGITS && key.charAt(start - 1) >= '0' && key.charAt(start - 1) <= '9') {
+            start--;
+        }
+        return start;
+    }
+
+    private static long toCode(int prefixId, String key, int start) {
+        long number = (start < key.length()) ? Long.parseLong(key.substring(start)) : 0;
+        return ((long) prefixId << NUMBER_BITS) | number;
+    }
+
+    private synchronized int[] getRanks() {
+        if (ranks == null) {
+            Integer[] byText = new Integer[prefixes.size()];
+            for (int i = 0; i < byText.length; i++) {
+                byText[i] = i;
+            }
+            Arrays.sort(byText, (a, b) -> prefixes.get(a).compareTo(prefixes.get(b)));
+            // prefixes with the same text and a different digit count share a rank
+            int[] newRanks = new int[byText.length];
+            for (int i = 0, rank = 0; i < byText.length; i++) {
+                if (i > 0 && !prefixes.get(byText[i]).equals(prefixes.get(byText[i - 1]))) {
+                    rank++;
+                }
+                newRanks[byText[i]] = rank;
+            }
+            ranks = newRanks;
+        }
+
+        return ranks;
+    }
+
+    private static int compare(long code1, long code2, int[] ranks) {
+        int compare = Integer.compare(ranks[getPrefixId(code1)], ranks[getPrefixId(code2)]);
+        return (compare != 0) ? compare : Long.compare(getNumber(code1), getNumber(code2));
+    }
+}
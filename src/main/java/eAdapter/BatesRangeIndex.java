@@ -0,0 +1,173 @@
+package eAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Purpose: Finds the documents whose Bates range overlaps a range of keys, like RS00100 to RS05000.
+ * Each document covers the keys from its begin field to its end field. The ranges are kept sorted
+ * by their begin code and read as a balanced tree, where each range in the middle of a span also keeps
+ * the largest end code of its span. A search skips every span whose ranges all end before the first key
+ * or begin after the last one, so a long range only costs the searches it overlaps. A snapshot of the
+ * documents is indexed, a document that is added or changed later needs a new index.
+ */
+public class BatesRangeIndex {
+
+    private final BatesCodec codec;
+    private final int[] positions; // positions in the source list, sorted by begin code
+    private final long[] begins;
+    private final long[] ends;
+    private final long[] maxEnds; // the largest end code of the span each range is in the middle of
+
+    /**
+     * Indexes documents that each cover a single key
+     * @param docs the documents
+     * @param keyFieldName the key field or null to use the document keys
+     * @param codec the codec used to encode the keys
+     */
+    public BatesRangeIndex(List<Document> docs, String keyFieldName, BatesCodec codec) {
+        this(docs, keyFieldName, keyFieldName, codec);
+    }
+
+    /**
+     * Indexes documents that cover a range of keys, a document without a begin key is left out
+     * and a document without an end key only covers its begin key
+     * @param docs the documents
+     * @param beginFieldName the begin key field, like BegDoc, or null to use the document keys
+     * @param endFieldName the end key field, like EndDoc, or null to use the document keys
+     * @param codec the codec used to encode the keys
+     */
+    public BatesRangeIndex(List<Document> docs, String beginFieldName, String endFieldName, BatesCodec codec) {
+        this.codec = codec;
+        // encode the ranges
+        int size = docs.size();
+        long[] beginCodes = new long[size];
+        long[] endCodes = new long[size];
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Document doc = docs.get(i);
+            String begin = getKey(doc, beginFieldName);
+            if (begin == null) {
+                continue;
+            }
+            String end = getKey(doc, endFieldName);
+            beginCodes[i] = codec.encode(begin);
+            endCodes[i] = (end != null) ? codec.encode(end) : beginCodes[i];
+            // a range that was entered backwards still covers the keys between its ends
+            if (codec.compare(endCodes[i], beginCodes[i]) < 0) {
+                long swap = beginCodes[i];
+                beginCodes[i] = endCodes[i];
+                endCodes[i] = swap;
+            }
+            order.add(i);
+        }
+        // sort the ranges by where they begin
+        Integer[] sorted = order.toArray(new Integer[order.size()]);
+        Arrays.parallelSort(sorted, (a, b) -> {
+            int compare = codec.compare(beginCodes[a], beginCodes[b]);
+            return (compare != 0) ? compare : Integer.compare(a, b);
+        });
+        this.positions = new int[sorted.length];
+        this.begins = new long[sorted.length];
+        this.ends = new long[sorted.length];
+        this.maxEnds = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            positions[i] = sorted[i];
+            begins[i] = beginCodes[sorted[i]];
+            ends[i] = endCodes[sorted[i]];
+        }
+        if (sorted.length > 0) {
+            buildMaxEnds(0, sorted.length);
+        }
+    }
+
+    /**
+     * Finds the documents whose range overlaps a range of keys
+     * @param from the first key of the range
+     * @param to the last key of the range
+     * @return returns the positions of the documents in the indexed list
+     */
+    public BitSet filter(String from, String to) {
+        BitSet matches = new BitSet();
+        search(from, to, matches::set);
+        return matches;
+    }
+
+    /**
+     * Finds the documents whose range overlaps a range of keys
+     * @param docs the indexed documents
+     * @param from the first key of the range
+     * @param to the last key of the range
+     * @return returns the documents in the order their ranges begin
+     */
+    public List<Document> find(List<Document> docs, String from, String to) {
+        List<Document> matches = new ArrayList<>();
+        search(from, to, position -> matches.add(docs.get(position)));
+        return matches;
+    }
+
+    /**
+     * Gets the number of indexed ranges
+     * @return returns the number of documents that have a begin key
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    private long buildMaxEnds(int low, int high) {
+        // the range in the middle of the span keeps the largest end code of the span
+        int middle = (low + high) >>> 1;
+        long maxEnd = ends[middle];
+        if (low < middle) {
+            maxEnd = larger(maxEnd, buildMaxEnds(low, middle));
+        }
+        if (middle + 1 < high) {
+            maxEnd = larger(maxEnd, buildMaxEnds(middle + 1, high));
+        }
+        maxEnds[middle] = maxEnd;
+        return maxEnd;
+    }
+
+    private long larger(long code1, long code2) {
+        return (codec.compare(code1, code2) >= 0) ? code1 : code2;
+    }
+
+    private void search(String from, String to, IntConsumer matches) {
+        // the keys are looked up without interning, a prefix that was never indexed can't match
+        long fromCode = codec.tryEncode(from);
+        long toCode = codec.tryEncode(to);
+        if (fromCode == BatesCodec.UNKNOWN || toCode == BatesCodec.UNKNOWN) {
+            return;
+        }
+        search(0, positions.length, fromCode, toCode, matches);
+    }
+
+    private void search(int low, int high, long fromCode, long toCode, IntConsumer matches) {
+        if (low >= high) {
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        // every range of the span ends before the first key
+        if (codec.compare(maxEnds[middle], fromCode) < 0) {
+            return;
+        }
+        // visit the ranges in the order they begin
+        search(low, middle, fromCode, toCode, matches);
+        // this range and the ones after it begin after the last key
+        if (codec.compare(begins[middle], toCode) > 0) {
+            return;
+        }
+        if (codec.compare(ends[middle], fromCode) >= 0) {
+            matches.accept(positions[middle]);
+        }
+        search(middle + 1, high, fromCode, toCode, matches);
+    }
+
+    private String getKey(Document doc, String fieldName) {
+        String key = (fieldName != null) ? doc.getMetadata().get(fieldName) : doc.getKey();
+        return (key == null || key.trim().isEmpty()) ? null : key.trim();
+    }
+}
@@ -0,0 +1,80 @@
+package eAdapter;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Purpose: The values of a single metadata field for every row of a column store.
+ * A null value means the row does not have the field.
+ */
+public abstract class Column {
+
+    /**
+     * Gets the value of a row
+     * @param row the row index
+     * @return returns the value or null if the row does not have one
+     */
+    public abstract String get(int row);
+
+    /**
+     * Checks if a row has a value without reading it
+     * @param row the row index
+     * @return returns true if the row has a value
+     */
+    public boolean has(int row) {
+        return get(row) != null;
+    }
+
+    /**
+     * Sets the value of a row
+     * @param row the row index
+     * @param value the value or null to clear it
+     * @return returns false if this column can't hold the value, in which case nothing was changed
+     */
+    public abstract boolean set(int row, String value);
+
+    /**
+     * Gets the type of values this column holds
+     * @return returns the column type
+     */
+    public ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    /**
+     * Finds the rows that have a value
+     * @param value the value to look for
+     * @param rowCount the number of rows in the store
+     * @return returns the matching row indexes
+     */
+    public BitSet filterEquals(String value, int rowCount) {
+        BitSet rows = new BitSet(rowCount);
+
+        for (int row = 0; row < rowCount; row++) {
+            if (value.equals(get(row))) {
+                rows.set(row);
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Groups the rows by value, rows without a value are left out
+     * @param rowCount the number of rows in the store
+     * @return returns the rows of each value in the order the values first appear
+     */
+    public Map<String, BitSet> groupBy(int rowCount) {
+        Map<String, BitSet> groups = new LinkedHashMap<>();
+
+        for (int row = 0; row < rowCount; row++) {
+            String value = get(row);
+            if (value != null) {
+                groups.computeIfAbsent(value, v -> new BitSet(rowCount)).set(row);
+            }
+        }
+
+        return groups;
+    }
+}
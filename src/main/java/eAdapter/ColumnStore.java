@@ -0,0 +1,632 @@
+package eAdapter;
+
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Purpose: Holds the metadata of many documents as columns that share one header.
+ * Each document is a row, and its metadata map is a view over that row, so a document
+ * no longer needs a map entry for every field it has. A row does not have a field when
+ * its value is null. Columns start out dictionary encoded and move to plain storage when
+ * they hold too many distinct values. Numbers and dates are kept in primitive columns, either
+ * because the caller declared the type or because every value in the first rows had it.
+ * A typed column only holds values it can give back unchanged, anything else moves the
+ * column back to text. With a large value policy, values over its threshold are kept outside
+ * of the heap until they are read, so the store has to be closed once its documents are no
+ * longer needed. This class is not thread safe.
+ */
+public class ColumnStore implements Closeable {
+
+    /**
+     * The default number of distinct values a dictionary encoded column may hold
+     */
+    public static final int DEFAULT_DICTIONARY_THRESHOLD = 1024;
+
+    /**
+     * The default number of rows used to guess the column types
+     */
+    public static final int DEFAULT_INFERENCE_ROWS = 1000;
+
+    private static final ColumnType[] INFERRED_TYPES = { ColumnType.INTEGER, ColumnType.LONG, ColumnType.DATE };
+
+    private final int dictionaryThreshold;
+    private final int inferenceRows;
+    private final BitSet declared = new BitSet(); // columns whose type was set by the caller
+    private LargeValuePolicy largeValuePolicy = null;
+    private LargeValueStore largeValues = null;
+    private PathStore pathStore = null;
+    private final Map<String, Integer> fieldIndex = new HashMap<>();
+    private final List<String> fieldNames = new ArrayList<>();
+    private final List<Column> columns = new ArrayList<>();
+    private int rowCount = 0;
+
+    /**
+     * Creates an empty store, fields are added as they are set
+     */
+    public ColumnStore() {
+        this(new String[0]);
+    }
+
+    /**
+     * Creates a store with a known header
+     * @param header the ordered field names
+     */
+    public ColumnStore(String[] header) {
+        this(header, DEFAULT_DICTIONARY_THRESHOLD);
+    }
+
+    /**
+     * Creates a store with a known header
+     * @param header the ordered field names
+     * @param dictionaryThreshold the number of distinct values a column may hold before it
+     *        is stored as plain values, zero turns dictionary encoding off
+     */
+    public ColumnStore(String[] header, int dictionaryThreshold) {
+        this(header, dictionaryThreshold, DEFAULT_INFERENCE_ROWS);
+    }
+
+    /**
+     * Creates a store with a known header
+     * @param header the ordered field names
+     * @param dictionaryThreshold the number of distinct values a column may hold before it
+     *        is stored as plain values, zero turns dictionary encoding off
+     * @param inferenceRows the number of rows to look at before guessing the column types,
+     *        zero turns type inference off
+     */
+    public ColumnStore(String[] header, int dictionaryThreshold, int inferenceRows) {
+        this.dictionaryThreshold = dictionaryThreshold;
+        this.inferenceRows = inferenceRows;
+        for (String fieldName : header) {
+            addColumn(fieldName);
+        }
+    }
+
+    /**
+     * Adds an empty row
+     * @return returns the index of the new row
+     */
+    public int addRow() {
+        // the sample rows are complete once the next row is added
+        if (inferenceRows > 0 && rowCount == inferenceRows) {
+            inferTypes();
+        }
+
+        return rowCount++;
+    }
+
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Gets the field names in the order they were added
+     * @return returns the field names
+     */
+    public List<String> getFieldNames() {
+        return Collections.unmodifiableList(this.fieldNames);
+    }
+
+    /**
+     * Gets the index of a column
+     * @param fieldName the field name
+     * @return returns the column index or -1 if there is no such field
+     */
+    public int getColumnIndex(String fieldName) {
+        Integer index = fieldIndex.get(fieldName);
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * Adds a column if the field doesn't exist yet
+     * @param fieldName the field name
+     * @return returns the column index
+     */
+    public int addColumn(String fieldName) {
+        Integer index = fieldIndex.get(fieldName);
+
+        if (index == null) {
+            index = columns.size();
+            fieldIndex.put(fieldName, index);
+            fieldNames.add(fieldName);
+            columns.add(createColumn(ColumnType.STRING));
+        }
+
+        return index;
+    }
+
+    public String get(int row, int column) {
+        return columns.get(column).get(row);
+    }
+
+    public String get(int row, String fieldName) {
+        int column = getColumnIndex(fieldName);
+        return (column < 0) ? null : get(row, column);
+    }
+
+    public void set(int row, int column, String value) {
+        checkRow(row);
+
+        Column current = columns.get(column);
+        // the first large value of a column moves the column behind a handle column
+        if (largeValuePolicy != null && value != null && value.length() >= largeValuePolicy.getThreshold()
+                && !(current instanceof LargeValueColumn)) {
+            if (largeValues == null) {
+                largeValues = new LargeValueStore(largeValuePolicy);
+            }
+            current = new LargeValueColumn(current, largeValues, largeValuePolicy.getThreshold());
+            columns.set(column, current);
+        }
+        // a column that can't hold the value gets replaced with one that can
+        if (!current.set(row, value)) {
+            columns.set(column, widen(current, row, value));
+        }
+    }
+
+    public void set(int row, String fieldName, String value) {
+        int column = (value == null) ? getColumnIndex(fieldName) : addColumn(fieldName);
+
+        if (column >= 0) {
+            set(row, column, value);
+        }
+    }
+
+    /**
+     * Gets the column of a field
+     * @param fieldName the field name
+     * @return returns the column or null if there is no such field
+     */
+    public Column getColumn(String fieldName) {
+        int column = getColumnIndex(fieldName);
+        return (column < 0) ? null : columns.get(column);
+    }
+
+    /**
+     * Checks if a row has a value for a field without reading large values
+     * @param row the row index
+     * @param column the column index
+     * @return returns true if the row has a value
+     */
+    public boolean has(int row, int column) {
+        return columns.get(column).has(row);
+    }
+
+    /**
+     * Gets the store for the representative file paths of the documents in this store
+     * @return returns the path store
+     */
+    public PathStore getPathStore() {
+        if (pathStore == null) {
+            pathStore = new PathStore();
+        }
+
+        return pathStore;
+    }
+
+    public LargeValuePolicy getLargeValuePolicy() {
+        return this.largeValuePolicy;
+    }
+
+    /**
+     * Sets the policy for values that are kept out of the heap, it applies to values set after this call
+     * @param largeValuePolicy the large value policy or null to keep every value on the heap
+     */
+    public void setLargeValuePolicy(LargeValuePolicy largeValuePolicy) {
+        this.largeValuePolicy = largeValuePolicy;
+    }
+
+    /**
+     * Releases the large values, their rows can't be read after this
+     */
+    @Override
+    public void close() {
+        if (largeValues != null) {
+            largeValues.close();
+        }
+    }
+
+    /**
+     * Gets the type of a field
+     * @param fieldName the field name
+     * @return returns the column type or null if there is no such field
+     */
+    public ColumnType getColumnType(String fieldName) {
+        Column column = getColumn(fieldName);
+        return (column == null) ? null : column.getType();
+    }
+
+    /**
+     * Declares the type of a field, the field is added if it doesn't exist yet
+     * @param fieldName the field name
+     * @param type the column type
+     * @return returns false if an existing value doesn't fit the type, the column then keeps its current type
+     */
+    public boolean setColumnType(String fieldName, ColumnType type) {
+        int column = addColumn(fieldName);
+        declared.set(column);
+
+        if (columns.get(column).getType() == type) {
+            return true;
+        }
+
+        Column converted = convert(columns.get(column), type);
+        if (converted != null) {
+            columns.set(column, converted);
+        }
+
+        return converted != null;
+    }
+
+    /**
+     * Types the text columns whose rows all hold the same kind of number or date.
+     * Columns that were declared by the caller or that only have blank values are left alone.
+     */
+    public void inferTypes() {
+        for (int column = 0; column < columns.size(); column++) {
+            // large values are never numbers or dates, and reading them back would be slow
+            if (!declared.get(column) && columns.get(column).getType() == ColumnType.STRING
+                    && !(columns.get(column) instanceof LargeValueColumn)) {
+                inferType(column);
+            }
+        }
+    }
+
+    /**
+     * Gets the value of a field as an int
+     * @param row the row index
+     * @param fieldName the field name
+     * @return returns the value or null if the row has no value or a blank one
+     */
+    public Integer getInteger(int row, String fieldName) {
+        Column column = getColumn(fieldName);
+
+        if (column instanceof IntegerColumn) {
+            IntegerColumn integers = (IntegerColumn) column;
+            return (integers.hasValue(row)) ? integers.getInt(row) : null;
+        }
+
+        return IntegerColumn.toInteger((column == null) ? null : column.get(row));
+    }
+
+    /**
+     * Gets the value of a field as a long
+     * @param row the row index
+     * @param fieldName the field name
+     * @return returns the value or null if the row has no value or a blank one
+     */
+    public Long getLong(int row, String fieldName) {
+        Column column = getColumn(fieldName);
+
+        if (column instanceof IntegerColumn || column instanceof LongColumn) {
+            PrimitiveColumn numbers = (PrimitiveColumn) column;
+            return (numbers.hasValue(row)) ? numbers.getLong(row) : null;
+        }
+
+        return LongColumn.toLong((column == null) ? null : column.get(row));
+    }
+
+    /**
+     * Gets the value of a field as a date
+     * @param row the row index
+     * @param fieldName the field name
+     * @return returns the value or null if the row has no value or a blank one
+     */
+    public LocalDate getDate(int row, String fieldName) {
+        Column column = getColumn(fieldName);
+
+        if (column instanceof DateColumn) {
+            DateColumn dates = (DateColumn) column;
+            return (dates.hasValue(row)) ? dates.getDate(row) : null;
+        }
+
+        return DateColumn.toDate((column == null) ? null : column.get(row));
+    }
+
+    /**
+     * Finds the rows where a number or date field is inside of a range.
+     * A text column is typed first if all of its values allow it.
+     * @param fieldName the field name
+     * @param min the smallest matching value, dates are given in epoch days
+     * @param max the largest matching value, dates are given in epoch days
+     * @return returns the matching row indexes
+     */
+    public BitSet filterRange(String fieldName, long min, long max) {
+        int column = getColumnIndex(fieldName);
+
+        if (column < 0) {
+            return new BitSet();
+        }
+        if (columns.get(column).getType() == ColumnType.STRING && !inferType(column)) {
+            throw new RuntimeException("The field " + fieldName + " does not hold numbers or dates.");
+        }
+
+        return ((PrimitiveColumn) columns.get(column)).filterRange(min, max, rowCount);
+    }
+
+    /**
+     * Finds the rows where a field has a value, dictionary encoded columns compare codes instead of strings
+     * @param fieldName the field name
+     * @param value the value to look for
+     * @return returns the matching row indexes
+     */
+    public BitSet filterEquals(String fieldName, String value) {
+        Column column = getColumn(fieldName);
+        return (column == null || value == null) ? new BitSet() : column.filterEquals(value, rowCount);
+    }
+
+    /**
+     * Groups the rows by the value of a field, rows without a value are left out
+     * @param fieldName the field name
+     * @return returns the rows of each value in the order the values first appear
+     */
+    public Map<String, BitSet> groupBy(String fieldName) {
+        Column column = getColumn(fieldName);
+        return (column == null) ? new LinkedHashMap<>() : column.groupBy(rowCount);
+    }
+
+    /**
+     * Gets a map view over a row, writes to the map are written to the store.
+     * Putting a null value removes the field and the fields iterate in header order.
+     * @param row the row index
+     * @return returns the row view
+     */
+    public Map<String, String> getRow(int row) {
+        checkRow(row);
+        return new RowMap(row);
+    }
+
+    private Column createColumn(ColumnType type) {
+        switch (type) {
+            case INTEGER:
+                return new IntegerColumn();
+            case LONG:
+                return new LongColumn();
+            case DATE:
+                return new DateColumn();
+            default:
+                return (dictionaryThreshold > 0) ? new DictionaryColumn(dictionaryThreshold) : new StringColumn();
+        }
+    }
+
+    private boolean inferType(int column) {
+        Column current = columns.get(column);
+
+        for (ColumnType type : INFERRED_TYPES) {
+            boolean typed = false;
+            boolean accepted = true;
+            // a column of blanks doesn't say anything about its type
+            for (int row = 0; row < rowCount && accepted; row++) {
+                String value = current.get(row);
+                accepted = type.accepts(value);
+                typed |= (value != null && !value.isEmpty());
+            }
+
+            if (accepted && typed) {
+                columns.set(column, convert(current, type));
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Column convert(Column source, ColumnType type) {
+        Column target = createColumn(type);
+
+        for (int row = 0; row < rowCount; row++) {
+            if (!target.set(row, source.get(row))) {
+                // text always fits once the dictionary is out of the way
+                return (type == ColumnType.STRING) ? toPlainColumn(source) : null;
+            }
+        }
+
+        return target;
+    }
+
+    private Column widen(Column column, int row, String value) {
+        Column wider;
+
+        // an int column that overflows tries a long column before it falls back to text
+        if (column instanceof IntegerColumn && ColumnType.LONG.accepts(value)) {
+            wider = convert(column, ColumnType.LONG);
+        }
+        else if (column instanceof DictionaryColumn) {
+            wider = toPlainColumn(column);
+        }
+        else {
+            wider = convert(column, ColumnType.STRING);
+        }
+
+        if (!wider.set(row, value)) {
+            wider = toPlainColumn(wider);
+            wider.set(row, value);
+        }
+
+        return wider;
+    }
+
+    private Column toPlainColumn(Column column) {
+        Column plain = new StringColumn();
+
+        for (int row = 0; row < rowCount; row++) {
+            plain.set(row, column.get(row));
+        }
+
+        return plain;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " does not exist in a store with " + rowCount + " rows.");
+        }
+    }
+
+    /**
+     * A metadata map over a single row, in header order. A row doesn't have a field
+     * whose value is null, so putting a null value removes the field.
+     */
+    private class RowMap extends AbstractMap<String, String> {
+
+        private final int row;
+
+        RowMap(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(Object key) {
+            return (key instanceof String) ? ColumnStore.this.get(row, (String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int column = (key instanceof String) ? getColumnIndex((String) key) : -1;
+            return column >= 0 && has(row, column);
+        }
+
+        @Override
+        public String put(String key, String value) {
+            String previous = get(key);
+            set(row, key, value);
+            return previous;
+        }
+
+        @Override
+        public String remove(Object key) {
+            String previous = get(key);
+            if (previous != null) {
+                set(row, (String) key, null);
+            }
+            return previous;
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new RowIterator(row);
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (int column = 0; column < columns.size(); column++) {
+                        if (has(row, column)) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+    }
+
+    /**
+     * Walks the fields a row has, skipping the ones it doesn't
+     */
+    private class RowIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final int row;
+        private int next = -1;
+        private int last = -1;
+
+        RowIterator(int row) {
+            this.row = row;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < columns.size();
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            advance();
+            return new RowEntry(row, last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            set(row, last, null);
+            last = -1;
+        }
+
+        private void advance() {
+            do {
+                next++;
+            } while (next < columns.size() && !has(row, next));
+        }
+    }
+
+    /**
+     * A field of a row that reads its value when asked, so walking a row doesn't read large values
+     */
+    private class RowEntry implements Map.Entry<String, String> {
+
+        private final int row;
+        private final int column;
+
+        RowEntry(int row, int column) {
+            this.row = row;
+            this.column = column;
+        }
+
+        @Override
+        public String getKey() {
+            return fieldNames.get(column);
+        }
+
+        @Override
+        public String getValue() {
+            return get(row, column);
+        }
+
+        @Override
+        public String setValue(String value) {
+            String previous = getValue();
+            set(row, column, value);
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return getKey().equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package eAdapter;
+
+/**
+ * Purpose: The ways a column store can hold the values of a field.
+ * A typed column only takes values it can give back exactly as they were set,
+ * and every type takes blank values.
+ */
+public enum ColumnType {
+    /**
+     * Plain text values
+     */
+    STRING {
+        @Override
+        public boolean accepts(String value) {
+            return true;
+        }
+    },
+    /**
+     * Whole numbers that fit in an int, like page or attachment counts
+     */
+    INTEGER {
+        @Override
+        public boolean accepts(String value) {
+            return value == null || value.isEmpty() || IntegerColumn.isInteger(value);
+        }
+    },
+    /**
+     * Whole numbers that fit in a long, like file sizes
+     */
+    LONG {
+        @Override
+        public boolean accepts(String value) {
+            return value == null || value.isEmpty() || LongColumn.isLong(value);
+        }
+    },
+    /**
+     * Dates in the MM/dd/yyyy format
+     */
+    DATE {
+        @Override
+        public boolean accepts(String value) {
+            return value == null || value.isEmpty() || DateColumn.isDate(value);
+        }
+    };
+
+    /**
+     * Checks if a value can be stored by this type without changing it
+     * @param value the value to check
+     * @return returns true if the value can be stored
+     */
+    public abstract boolean accepts(String value);
+}
@@ -0,0 +1,132 @@
+package eAdapter;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Purpose: A column of MM/dd/yyyy dates stored as epoch days.
+ */
+public class DateColumn extends PrimitiveColumn {
+
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.DATE;
+    }
+
+    /**
+     * Gets the value of a row
+     * @param row the row index, which has to have a value
+     * @return returns the date
+     */
+    public LocalDate getDate(int row) {
+        return LocalDate.ofEpochDay(values[row]);
+    }
+
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected boolean store(int row, String value) {
+        LocalDate date = parse(value);
+        if (date == null) {
+            return false;
+        }
+
+        if (row >= values.length) {
+            values = Arrays.copyOf(values, Math.max(row + 1, values.length + (values.length >> 1)));
+        }
+        values[row] = (int) date.toEpochDay();
+        return true;
+    }
+
+    @Override
+    protected String format(int row) {
+        LocalDate date = getDate(row);
+        char[] text = new char[10];
+        write(text, 0, date.getMonthValue(), 2);
+        text[2] = '/';
+        write(text, 3, date.getDayOfMonth(), 2);
+        text[5] = '/';
+        write(text, 6, date.getYear(), 4);
+        return new String(text);
+    }
+
+    /**
+     * Checks if a value is a valid MM/dd/yyyy date
+     * @param value the value to check
+     * @return returns true if the value can be stored
+     */
+    public static boolean isDate(String value) {
+        return parse(value) != null;
+    }
+
+    /**
+     * Parses a MM/dd/yyyy date
+     * @param value the value to parse
+     * @return returns the date or null if the value is not a valid date in that exact format
+     */
+    public static LocalDate parse(String value) {
+        if (value.length() != 10 || value.charAt(2) != '/' || value.charAt(5) != '/') {
+            return null;
+        }
+
+        int month = read(value, 0, 2);
+        int day = read(value, 3, 2);
+        int year = read(value, 6, 4);
+        if (month < 0 || day < 0 || year < 0) {
+            return null;
+        }
+
+        try {
+            return LocalDate.of(year, month, day);
+        }
+        catch (DateTimeException e) {
+            // a day that doesn't exist, like 02/30/2001
+            return null;
+        }
+    }
+
+    /**
+     * Parses a value the way a typed accessor reads a text column
+     * @param value the value to parse
+     * @return returns the date or null if the value is null or blank
+     */
+    public static LocalDate toDate(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+
+        LocalDate date = parse(value.trim());
+        if (date == null) {
+            throw new DateTimeException("The value " + value + " is not a MM/dd/yyyy date.");
+        }
+
+        return date;
+    }
+
+    private static int read(String value, int start, int length) {
+        int number = 0;
+
+        for (int i = start; i < start + length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+
+        return number;
+    }
+
+    private static void write(char[] text, int start, int number, int length) {
+        for (int i = start + length - 1; i >= start; i--) {
+            text[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+    }
+}
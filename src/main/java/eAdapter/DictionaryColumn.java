@@ -0,0 +1,138 @@
+package eAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Purpose: A column that stores each distinct value once and keeps an int code per row.
+ * It suits fields that repeat a handful of values, like custodians, file extensions or yes and no flags.
+ * Once the column sees more distinct values than its limit it refuses new ones,
+ * so the store can move it to a plain column.
+ */
+public class DictionaryColumn extends Column {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_VALUE = 0;
+
+    private final int maxCardinality;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int[] rows = new int[INITIAL_CAPACITY]; // dictionary index + 1, zero if the row has no value
+
+    /**
+     * Creates an empty dictionary column
+     * @param maxCardinality the largest number of distinct values the column will hold
+     */
+    public DictionaryColumn(int maxCardinality) {
+        this.maxCardinality = maxCardinality;
+    }
+
+    @Override
+    public String get(int row) {
+        int code = getCode(row);
+        return (code < 0) ? null : dictionary.get(code);
+    }
+
+    @Override
+    public boolean set(int row, String value) {
+        int code = NO_VALUE;
+
+        if (value != null) {
+            Integer index = codes.get(value);
+            if (index == null) {
+                if (dictionary.size() >= maxCardinality) {
+                    return false;
+                }
+                index = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, index);
+            }
+            code = index + 1;
+        }
+
+        if (row >= rows.length) {
+            if (code == NO_VALUE) {
+                return true;
+            }
+            rows = Arrays.copyOf(rows, Math.max(row + 1, rows.length + (rows.length >> 1)));
+        }
+        rows[row] = code;
+        return true;
+    }
+
+    /**
+     * Gets the dictionary code of a row
+     * @param row the row index
+     * @return returns the code or -1 if the row has no value
+     */
+    public int getCode(int row) {
+        return ((row < rows.length) ? rows[row] : NO_VALUE) - 1;
+    }
+
+    /**
+     * Gets the value of a dictionary code
+     * @param code the code
+     * @return returns the value
+     */
+    public String getValue(int code) {
+        return dictionary.get(code);
+    }
+
+    /**
+     * Gets the number of distinct values in the column
+     * @return returns the dictionary size
+     */
+    public int getCardinality() {
+        return dictionary.size();
+    }
+
+    @Override
+    public BitSet filterEquals(String value, int rowCount) {
+        BitSet matches = new BitSet(rowCount);
+        Integer index = codes.get(value);
+
+        // the value never occurs so nothing needs to be scanned
+        if (index != null) {
+            int code = index + 1;
+            int limit = Math.min(rowCount, rows.length);
+            for (int row = 0; row < limit; row++) {
+                if (rows[row] == code) {
+                    matches.set(row);
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    @Override
+    public Map<String, BitSet> groupBy(int rowCount) {
+        BitSet[] groups = new BitSet[dictionary.size() + 1];
+        int limit = Math.min(rowCount, rows.length);
+
+        for (int row = 0; row < limit; row++) {
+            int code = rows[row];
+            if (code != NO_VALUE) {
+                if (groups[code] == null) {
+                    groups[code] = new BitSet(rowCount);
+                }
+                groups[code].set(row);
+            }
+        }
+
+        // keep the values in the order they first appear
+        Map<String, BitSet> result = new LinkedHashMap<>();
+        for (int code = 1; code < groups.length; code++) {
+            if (groups[code] != null) {
+                result.put(dictionary.get(code - 1), groups[code]);
+            }
+        }
+
+        return result;
+    }
+}
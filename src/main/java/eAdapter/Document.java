@@ -1,5 +1,6 @@
 package eAdapter;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -12,8 +13,34 @@ public class Document {
     private String key;
     private Document parent;
     private List<Document> children = new ArrayList<>();
-    private Map<String, String> metadata = new LinkedHashMap<>();
+    private Map<String, String> metadata;
     private Set<Representative> representatives = new LinkedHashSet<>();
+    private ColumnStore store;
+    private int row;
+
+    public Document() {
+        this.metadata = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates a document with its own metadata map
+     * @param metadata the metadata, which may be a view that decodes its values on demand
+     */
+    public Document(Map<String, String> metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Creates a document whose metadata is a new row of a column store.
+     * Documents built from the same file share one store, so they share the field names too.
+     * Unlike the map of a plain document, putting a null value removes the field and the fields
+     * iterate in the order of the store header instead of the order they were put.
+     * @param store the store that holds the metadata
+     */
+    public Document(ColumnStore store) {
+        this.store = store;
+        this.row = store.addRow();
+    }
 
     public String getKey() {
         return key;
@@ -39,14 +66,37 @@ public class Document {
         this.children = children;
     }
 
+    /**
+     * Gets the metadata of this document
+     * @return returns the metadata map, or a view over the row when the document has a column store,
+     *         where a null value removes the field and the fields are in header order
+     */
     public Map<String, String> getMetadata() {
-        return metadata;
+        return (store != null) ? store.getRow(row) : metadata;
     }
 
     public void setMetadata(Map<String, String> metadata) {
+        // the document no longer reads its row from the store
+        this.store = null;
         this.metadata = metadata;
     }
 
+    /**
+     * Gets the store that holds the metadata of this document
+     * @return returns the column store or null if the metadata is a plain map
+     */
+    public ColumnStore getColumnStore() {
+        return store;
+    }
+
+    /**
+     * Gets the row of this document in its column store
+     * @return returns the row index, which only has meaning while the document has a column store
+     */
+    public int getRow() {
+        return row;
+    }
+
     public Set<Representative> getRepresentatives() {
         return representatives;
     }
@@ -55,8 +105,40 @@ public class Document {
         this.representatives = representatives;
     }
 
+    /**
+     * Gets the value of a field as an int, typed columns are read without parsing
+     * @param fieldName the field name
+     * @return returns the value or null if the field is missing or blank
+     */
+    public Integer getInteger(String fieldName) {
+        return (store != null) ? store.getInteger(row, fieldName) : IntegerColumn.toInteger(getMetadata().get(fieldName));
+    }
+
+    /**
+     * Gets the value of a field as a long, typed columns are read without parsing
+     * @param fieldName the field name
+     * @return returns the value or null if the field is missing or blank
+     */
+    public Long getLong(String fieldName) {
+        return (store != null) ? store.getLong(row, fieldName) : LongColumn.toLong(getMetadata().get(fieldName));
+    }
+
+    /**
+     * Gets the value of a MM/dd/yyyy field as a date, typed columns are read without parsing
+     * @param fieldName the field name
+     * @return returns the value or null if the field is missing or blank
+     */
+    public LocalDate getDate(String fieldName) {
+        return (store != null) ? store.getDate(row, fieldName) : DateColumn.toDate(getMetadata().get(fieldName));
+    }
+
     public void addField(String fieldName, String value) {
-        this.metadata.put(fieldName, value);
+        if (store != null) {
+            store.set(row, fieldName, value);
+        }
+        else {
+            this.metadata.put(fieldName, value);
+        }
     }
 
 }
@@ -0,0 +1,388 @@
+package eAdapter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Purpose: A list of imported documents that can be searched by metadata. The first search on a field
+ * builds an index over it, a hash index for equality and a sorted index for ranges, and documents
+ * that are added or replaced later are written into the indexes that exist. A sorted index compares
+ * numbers and MM/dd/yyyy dates by value when every value of the field is one, and text otherwise.
+ * Indexes read the metadata when a document is added, so a field that is changed on a document
+ * afterwards needs {@link #dropIndexes(String)} before it is searched again.
+ */
+public class DocumentCollection extends AbstractList<Document> implements RandomAccess, Closeable {
+
+    private final List<Document> documents;
+    private final Map<String, FieldIndex> hashIndexes = new HashMap<>();
+    private final Map<String, FieldIndex> sortedIndexes = new HashMap<>();
+
+    /**
+     * Creates an empty collection
+     */
+    public DocumentCollection() {
+        this(new ArrayList<>());
+    }
+
+    /**
+     * Creates a collection over a list of documents, the list is used as it is and not copied
+     * @param documents the documents, which may be a {@link SpillingDocumentList}
+     */
+    public DocumentCollection(List<Document> documents) {
+        this.documents = documents;
+    }
+
+    @Override
+    public Document get(int index) {
+        return documents.get(index);
+    }
+
+    @Override
+    public int size() {
+        return documents.size();
+    }
+
+    @Override
+    public void add(int index, Document doc) {
+        if (index != documents.size()) {
+            // the positions after it would move, so the indexes are built again when they are needed
+            documents.add(index, doc);
+            clearIndexes();
+        }
+        else {
+            documents.add(doc);
+            for (FieldIndex fieldIndex : getIndexes()) {
+                fieldIndex.add(doc, index);
+            }
+            dropRejectedIndexes();
+        }
+        modCount++;
+    }
+
+    @Override
+    public Document set(int index, Document doc) {
+        Document previous = documents.set(index, doc);
+
+        for (FieldIndex fieldIndex : getIndexes()) {
+            fieldIndex.remove(previous, index);
+            fieldIndex.add(doc, index);
+        }
+        dropRejectedIndexes();
+
+        return previous;
+    }
+
+    @Override
+    public Document remove(int index) {
+        Document previous = documents.remove(index);
+        clearIndexes();
+        modCount++;
+        return previous;
+    }
+
+    /**
+     * Starts a query that matches every document until conditions are added
+     * @return returns the query
+     */
+    public DocumentQuery query() {
+        return new DocumentQuery(this);
+    }
+
+    /**
+     * Finds the documents where a field has a value
+     * @param fieldName the field name
+     * @param value the value to look for
+     * @return returns the matching positions
+     */
+    public BitSet filterEquals(String fieldName, String value) {
+        BitSet matches = new BitSet();
+
+        if (value != null) {
+            Positions positions = getHashIndex(fieldName).entries.get(value);
+            if (positions != null) {
+                positions.addTo(matches);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Finds the documents where a field is inside of a range, documents without a value never match.
+     * The bounds are read the same way as the values, so a date field takes MM/dd/yyyy bounds.
+     * A range where the smallest value is larger than the largest one matches nothing.
+     * @param fieldName the field name
+     * @param min the smallest matching value or null or blank for no lower bound
+     * @param max the largest matching value or null or blank for no upper bound
+     * @return returns the matching positions
+     * @throws IllegalArgumentException if a bound can't be read as the type of a number or date field
+     */
+    public BitSet filterRange(String fieldName, String min, String max) {
+        FieldIndex fieldIndex = getSortedIndex(fieldName);
+        NavigableMap<Object, Positions> entries = (NavigableMap<Object, Positions>) fieldIndex.entries;
+        BitSet matches = new BitSet();
+        Object lower = fieldIndex.toBound(min);
+        Object upper = fieldIndex.toBound(max);
+
+        if (lower != null && upper != null) {
+            // an inverted range can't be a view of the index
+            if (fieldIndex.keyOrder.compare(lower, upper) > 0) {
+                return matches;
+            }
+            entries = entries.subMap(lower, true, upper, true);
+        }
+        else if (lower != null) {
+            entries = entries.tailMap(lower, true);
+        }
+        else if (upper != null) {
+            entries = entries.headMap(upper, true);
+        }
+        for (Positions positions : entries.values()) {
+            positions.addTo(matches);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Gets the documents at a set of positions
+     * @param positions the positions, like the result of a filter
+     * @return returns the documents in collection order
+     */
+    public List<Document> select(BitSet positions) {
+        List<Document> selected = new ArrayList<>(positions.cardinality());
+
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            selected.add(documents.get(i));
+        }
+
+        return selected;
+    }
+
+    /**
+     * Drops the indexes of a field, they are built again the next time the field is searched
+     * @param fieldName the field name
+     */
+    public void dropIndexes(String fieldName) {
+        hashIndexes.remove(fieldName);
+        sortedIndexes.remove(fieldName);
+    }
+
+    /**
+     * Closes the underlying list if it holds a spill file
+     */
+    @Override
+    public void close() throws IOException {
+        clearIndexes();
+
+        if (documents instanceof Closeable) {
+            ((Closeable) documents).close();
+        }
+    }
+
+    private FieldIndex getHashIndex(String fieldName) {
+        FieldIndex fieldIndex = hashIndexes.get(fieldName);
+
+        if (fieldIndex == null) {
+            fieldIndex = new FieldIndex(fieldName, null);
+            fieldIndex.addAll(documents);
+            hashIndexes.put(fieldName, fieldIndex);
+        }
+
+        return fieldIndex;
+    }
+
+    private FieldIndex getSortedIndex(String fieldName) {
+        FieldIndex fieldIndex = sortedIndexes.get(fieldName);
+
+        if (fieldIndex == null) {
+            fieldIndex = new FieldIndex(fieldName, inferKeyType(fieldName));
+            fieldIndex.addAll(documents);
+            sortedIndexes.put(fieldName, fieldIndex);
+        }
+
+        return fieldIndex;
+    }
+
+    private ColumnType inferKeyType(String fieldName) {
+        // ints are compared as longs, so they don't need a type of their own
+        ColumnType[] types = { ColumnType.LONG, ColumnType.DATE };
+        boolean[] accepted = { true, true };
+        boolean typed = false;
+
+        for (Document doc : documents) {
+            String value = doc.getMetadata().get(fieldName);
+            for (int i = 0; i < types.length; i++) {
+                accepted[i] &= types[i].accepts(value);
+            }
+            typed |= (value != null && !value.isEmpty());
+        }
+
+        // a field of blanks doesn't say anything about its type
+        for (int i = 0; i < types.length && typed; i++) {
+            if (accepted[i]) {
+                return types[i];
+            }
+        }
+
+        return ColumnType.STRING;
+    }
+
+    private List<FieldIndex> getIndexes() {
+        List<FieldIndex> indexes = new ArrayList<>(hashIndexes.values());
+        indexes.addAll(sortedIndexes.values());
+        return indexes;
+    }
+
+    private void dropRejectedIndexes() {
+        // a typed index that was handed a value of another type gets built again as text
+        sortedIndexes.values().removeIf(fieldIndex -> fieldIndex.rejected);
+    }
+
+    private void clearIndexes() {
+        hashIndexes.clear();
+        sortedIndexes.clear();
+    }
+
+    /**
+     * The positions of the documents that share a value, in ascending order
+     */
+    private static class Positions {
+        private int[] positions = new int[1];
+        private int size = 0;
+
+        void add(int position) {
+            int index = (size == 0 || positions[size - 1] < position) ? size : Arrays.binarySearch(positions, 0, size, position);
+            if (index >= 0 && index < size) {
+                return; // already there
+            }
+            index = (index < 0) ? -(index + 1) : index;
+
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+            positions[index] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int index = Arrays.binarySearch(positions, 0, size, position);
+            if (index >= 0) {
+                System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+                size--;
+            }
+        }
+
+        void addTo(BitSet matches) {
+            for (int i = 0; i < size; i++) {
+                matches.set(positions[i]);
+            }
+        }
+    }
+
+    /**
+     * Maps the values of one field to the positions of the documents that have them.
+     * A hash index keys on the raw value, a sorted index keys on the value read as its key type.
+     */
+    private static class FieldIndex {
+        private final String fieldName;
+        private final ColumnType keyType;
+        private final Comparator<Object> keyOrder; // the order of the keys of a sorted index
+        private final Map<Object, Positions> entries;
+        private boolean rejected = false;
+
+        FieldIndex(String fieldName, ColumnType keyType) {
+            this.fieldName = fieldName;
+            this.keyType = keyType;
+            // numbers and dates are keyed as longs, everything else as text
+            this.keyOrder = (keyType == ColumnType.LONG || keyType == ColumnType.DATE)
+                    ? (a, b) -> Long.compare((Long) a, (Long) b)
+                    : (a, b) -> ((String) a).compareTo((String) b);
+            this.entries = (keyType == null) ? new HashMap<>() : new TreeMap<>(keyOrder);
+        }
+
+        void addAll(List<Document> documents) {
+            for (int i = 0; i < documents.size(); i++) {
+                add(documents.get(i), i);
+            }
+        }
+
+        void add(Document doc, int position) {
+            Object key = getKey(doc);
+            if (key != null) {
+                entries.computeIfAbsent(key, k -> new Positions()).add(position);
+            }
+        }
+
+        void remove(Document doc, int position) {
+            Object key = getKey(doc);
+            Positions positions = (key != null) ? entries.get(key) : null;
+            if (positions != null) {
+                positions.remove(position);
+                if (positions.size == 0) {
+                    entries.remove(key);
+                }
+            }
+        }
+
+        /**
+         * Reads a range bound as a key, the same way for every key type
+         * @param bound the bound
+         * @return returns the key or null if the bound is null or blank, which leaves the range open
+         */
+        Object toBound(String bound) {
+            if (StringUtils.isBlank(bound)) {
+                return null;
+            }
+            try {
+                return toKey(bound);
+            }
+            catch (NumberFormatException | DateTimeException e) {
+                throw new IllegalArgumentException("The bound " + bound + " can not be compared with the " + keyType + " values of " + fieldName + ".", e);
+            }
+        }
+
+        Object toKey(String value) {
+            switch (keyType) {
+                case LONG:
+                    return LongColumn.toLong(value);
+                case DATE:
+                    return DateColumn.toDate(value).toEpochDay();
+                default:
+                    return value;
+            }
+        }
+
+        private Object getKey(Document doc) {
+            String value = doc.getMetadata().get(fieldName);
+
+            if (keyType == null) {
+                return value;
+            }
+            // a sorted index leaves out documents without a value
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            if (!keyType.accepts(value)) {
+                rejected = true;
+                return null;
+            }
+            return toKey(value);
+        }
+    }
+}
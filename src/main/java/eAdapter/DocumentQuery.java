@@ -0,0 +1,97 @@
+package eAdapter;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Purpose: Narrows down the documents of a {@link DocumentCollection}. Every condition is answered
+ * from an index of the collection and the conditions are combined with a logical and.
+ */
+public class DocumentQuery {
+
+    private final DocumentCollection collection;
+    private BitSet matches = null; // null matches every document
+
+    /**
+     * Creates a query that matches every document of a collection
+     * @param collection the collection to search
+     */
+    DocumentQuery(DocumentCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Keeps the documents where a field has a value
+     * @param fieldName the field name
+     * @param value the value to look for
+     * @return returns this query
+     */
+    public DocumentQuery equalTo(String fieldName, String value) {
+        return and(collection.filterEquals(fieldName, value));
+    }
+
+    /**
+     * Keeps the documents where a field has any of a set of values
+     * @param fieldName the field name
+     * @param values the values to look for
+     * @return returns this query
+     */
+    public DocumentQuery in(String fieldName, Collection<String> values) {
+        BitSet rows = new BitSet();
+        for (String value : values) {
+            rows.or(collection.filterEquals(fieldName, value));
+        }
+        return and(rows);
+    }
+
+    /**
+     * Keeps the documents where a field is inside of a range, see {@link DocumentCollection#filterRange(String, String, String)}
+     * @param fieldName the field name
+     * @param min the smallest matching value or null for no lower bound
+     * @param max the largest matching value or null for no upper bound
+     * @return returns this query
+     */
+    public DocumentQuery between(String fieldName, String min, String max) {
+        return and(collection.filterRange(fieldName, min, max));
+    }
+
+    /**
+     * Gets the matching documents
+     * @return returns the documents in collection order
+     */
+    public List<Document> list() {
+        return collection.select(getMatches());
+    }
+
+    /**
+     * Counts the matching documents
+     * @return returns the number of matches
+     */
+    public int count() {
+        return getMatches().cardinality();
+    }
+
+    /**
+     * Gets the positions of the matching documents in the collection
+     * @return returns the matching positions
+     */
+    public BitSet getMatches() {
+        if (matches == null) {
+            BitSet all = new BitSet();
+            all.set(0, collection.size());
+            return all;
+        }
+        return (BitSet) matches.clone();
+    }
+
+    private DocumentQuery and(BitSet rows) {
+        if (matches == null) {
+            matches = rows;
+        }
+        else {
+            matches.and(rows);
+        }
+        return this;
+    }
+}
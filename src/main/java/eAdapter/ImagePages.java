@@ -0,0 +1,163 @@
+package eAdapter;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: The pages of an image representative kept in primitive arrays, one slot per page,
+ * instead of a record object per page. Files are ids in a shared {@link PathStore}, and a page
+ * that repeats the file of the page before it continues a multi-page image.
+ */
+public class ImagePages {
+
+    /**
+     * The image type of a page whose type is not known
+     */
+    public static final int UNKNOWN_TYPE = 0;
+    public static final int TIF_TYPE = 2;
+    public static final int JPG_TYPE = 4;
+    public static final int PDF_TYPE = 7;
+
+    /**
+     * The boundary flag of a document that doesn't have one
+     */
+    public static final char NO_BOUNDARY = '\0';
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final PathStore paths;
+    private int volume = -1;
+    private char boundary = NO_BOUNDARY;
+    private int[] files = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private byte[] imageTypes = new byte[INITIAL_CAPACITY];
+    private int pageCount = 0;
+
+    /**
+     * Creates a document without pages
+     * @param paths the store that holds the page files and volume names
+     */
+    public ImagePages(PathStore paths) {
+        this.paths = paths;
+    }
+
+    public PathStore getPaths() {
+        return this.paths;
+    }
+
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * Adds a page
+     * @param file the file id in the path store
+     * @param offset the page offset inside of the file, zero for a single page file
+     * @param imageType the image type code
+     */
+    public void addPage(int file, int offset, int imageType) {
+        if (pageCount == files.length) {
+            int capacity = pageCount * 2;
+            files = Arrays.copyOf(files, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            imageTypes = Arrays.copyOf(imageTypes, capacity);
+        }
+
+        files[pageCount] = file;
+        offsets[pageCount] = offset;
+        imageTypes[pageCount] = (byte) imageType;
+        pageCount++;
+    }
+
+    /**
+     * Adds a page and works out its offset, a file that repeats the file of the previous page
+     * turns both pages into pages of one multi-page image with offsets that count up from one
+     * @param file the file id in the path store
+     * @param imageType the image type code
+     */
+    public void addPage(int file, int imageType) {
+        int offset = 0;
+
+        if (pageCount > 0 && files[pageCount - 1] == file) {
+            // the first page of the image only learns it has an offset now
+            if (offsets[pageCount - 1] == 0) {
+                offsets[pageCount - 1] = 1;
+            }
+            offset = offsets[pageCount - 1] + 1;
+        }
+
+        addPage(file, offset, imageType);
+    }
+
+    public int getFile(int page) {
+        return files[page];
+    }
+
+    /**
+     * Gets the full path of the file of a page
+     * @param page the page index
+     * @return returns the path
+     */
+    public String getPath(int page) {
+        return paths.getPath(files[page]);
+    }
+
+    public int getOffset(int page) {
+        return offsets[page];
+    }
+
+    public int getImageType(int page) {
+        return imageTypes[page];
+    }
+
+    public int getVolume() {
+        return this.volume;
+    }
+
+    /**
+     * Gets the name of the volume of the document
+     * @return returns the volume name or null if none was set
+     */
+    public String getVolumeName() {
+        return (volume < 0) ? null : paths.getVolume(volume);
+    }
+
+    public char getBoundary() {
+        return this.boundary;
+    }
+
+    /**
+     * @param volume the volume id in the path store
+     */
+    public void setVolume(int volume) {
+        this.volume = volume;
+    }
+
+    /**
+     * @param boundary the boundary flag of the first page as it was read
+     */
+    public void setBoundary(char boundary) {
+        this.boundary = boundary;
+    }
+
+    /**
+     * Gets the image type code that belongs to the extension of a file
+     * @param path the path of the file
+     * @return returns the image type or UNKNOWN_TYPE if the extension is not an image type
+     */
+    public static int getImageType(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = (dot < 0) ? "" : path.substring(dot + 1);
+
+        if (ext.equalsIgnoreCase("TIF")) {
+            return TIF_TYPE;
+        }
+        else if (ext.equalsIgnoreCase("JPG")) {
+            return JPG_TYPE;
+        }
+        else if (ext.equalsIgnoreCase("PDF")) {
+            return PDF_TYPE;
+        }
+
+        return UNKNOWN_TYPE;
+    }
+}
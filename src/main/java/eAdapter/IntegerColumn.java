@@ -0,0 +1,71 @@
+package eAdapter;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: A column of whole numbers that fit in an int.
+ */
+public class IntegerColumn extends PrimitiveColumn {
+
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.INTEGER;
+    }
+
+    /**
+     * Gets the value of a row
+     * @param row the row index, which has to have a value
+     * @return returns the value
+     */
+    public int getInt(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected boolean store(int row, String value) {
+        if (!isInteger(value)) {
+            return false;
+        }
+
+        if (row >= values.length) {
+            values = Arrays.copyOf(values, Math.max(row + 1, values.length + (values.length >> 1)));
+        }
+        values[row] = Integer.parseInt(value);
+        return true;
+    }
+
+    @Override
+    protected String format(int row) {
+        return Integer.toString(values[row]);
+    }
+
+    /**
+     * Checks if a value is an int that can be formatted back to the same String
+     * @param value the value to check
+     * @return returns true if the value can be stored
+     */
+    public static boolean isInteger(String value) {
+        if (!isCanonicalNumber(value) || value.length() > 11) {
+            return false;
+        }
+
+        long number = Long.parseLong(value);
+        return number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Parses a value the way a typed accessor reads a text column
+     * @param value the value to parse
+     * @return returns the number or null if the value is null or blank
+     */
+    public static Integer toInteger(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : Integer.valueOf(value.trim());
+    }
+}
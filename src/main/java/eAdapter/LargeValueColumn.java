@@ -0,0 +1,77 @@
+package eAdapter;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: A column that writes its large values to a {@link LargeValueStore} and keeps only
+ * a handle to each of them. Values below the threshold stay in the column it wraps.
+ * Large values are read back every time they are asked for.
+ */
+public class LargeValueColumn extends Column {
+
+    private static final long NO_HANDLE = -1;
+
+    private final LargeValueStore largeValues;
+    private final int threshold;
+    private Column values;
+    private long[] handles = new long[0];
+    private int size = 0; // one past the highest row that was set
+
+    /**
+     * Creates a column around an existing one
+     * @param values the column that holds the small values
+     * @param largeValues the store that holds the large values
+     * @param threshold the number of characters a value needs to be stored as a large value
+     */
+    public LargeValueColumn(Column values, LargeValueStore largeValues, int threshold) {
+        this.values = values;
+        this.largeValues = largeValues;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String get(int row) {
+        long handle = getHandle(row);
+        return (handle == NO_HANDLE) ? values.get(row) : largeValues.read(handle);
+    }
+
+    @Override
+    public boolean has(int row) {
+        return getHandle(row) != NO_HANDLE || values.has(row);
+    }
+
+    @Override
+    public boolean set(int row, String value) {
+        size = Math.max(size, row + 1);
+
+        if (value != null && value.length() >= threshold) {
+            if (row >= handles.length) {
+                int length = handles.length;
+                handles = Arrays.copyOf(handles, Math.max(row + 1, length + (length >> 1) + 16));
+                Arrays.fill(handles, length, handles.length, NO_HANDLE);
+            }
+            handles[row] = largeValues.write(value);
+            values.set(row, null);
+            return true;
+        }
+
+        if (row < handles.length) {
+            handles[row] = NO_HANDLE;
+        }
+        // the small values move to plain text instead of handing the large ones back to the store
+        if (!values.set(row, value)) {
+            Column plain = new StringColumn();
+            for (int i = 0; i < size; i++) {
+                plain.set(i, values.get(i));
+            }
+            plain.set(row, value);
+            values = plain;
+        }
+
+        return true;
+    }
+
+    private long getHandle(int row) {
+        return (row < handles.length) ? handles[row] : NO_HANDLE;
+    }
+}
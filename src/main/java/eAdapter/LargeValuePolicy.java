@@ -0,0 +1,79 @@
+package eAdapter;
+
+import java.nio.file.Path;
+
+/**
+ * Purpose: Settings for keeping very large metadata values, like message bodies or hidden text,
+ * out of the heap. Values at or above the threshold are written to a {@link LargeValueStore}
+ * and only read back when they are asked for.
+ */
+public class LargeValuePolicy {
+
+    /**
+     * The default number of characters a value needs before it leaves the heap
+     */
+    public static final int DEFAULT_THRESHOLD = 16 * 1024;
+
+    /**
+     * Places large values can be kept
+     */
+    public enum Storage {
+        /**
+         * Direct buffers outside of the garbage collected heap
+         */
+        OFF_HEAP,
+        /**
+         * A temporary file that is deleted when the store is closed
+         */
+        TEMP_FILE
+    }
+
+    private int threshold = DEFAULT_THRESHOLD;
+    private Storage storage = Storage.OFF_HEAP;
+    private boolean compressed = false;
+    private Path tempDirectory = null;
+
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    public Storage getStorage() {
+        return this.storage;
+    }
+
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    public Path getTempDirectory() {
+        return this.tempDirectory;
+    }
+
+    /**
+     * @param threshold the number of characters a value needs before it leaves the heap
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param storage where large values are kept
+     */
+    public void setStorage(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * @param compressed indicates if large values are deflated before they are stored
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * @param tempDirectory the directory for the temporary file or null to use the system default
+     */
+    public void setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+}
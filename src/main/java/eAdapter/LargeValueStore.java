@@ -0,0 +1,221 @@
+package eAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Purpose: Keeps large values outside of the heap and hands back a long handle for each one.
+ * Values are encoded as UTF-8 and optionally deflated. Each entry starts with its stored length
+ * and its inflated length, which is -1 when the entry is not compressed. Reads may happen from
+ * several threads, but writes have to come from one thread at a time.
+ */
+public class LargeValueStore implements Closeable {
+
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+    private static final int NOT_COMPRESSED = -1;
+
+    private final boolean compressed;
+    private final List<ByteBuffer> chunks = new ArrayList<>(); // off heap storage
+    private final FileChannel channel; // temp file storage
+    private long fileSize = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a store that follows a policy
+     * @param policy the large value policy
+     */
+    public LargeValueStore(LargeValuePolicy policy) {
+        this.compressed = policy.isCompressed();
+
+        if (policy.getStorage() == LargeValuePolicy.Storage.TEMP_FILE) {
+            try {
+                Path file = (policy.getTempDirectory() != null)
+                        ? Files.createTempFile(policy.getTempDirectory(), "eAdapter", ".values")
+                        : Files.createTempFile("eAdapter", ".values");
+                this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        else {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Writes a value to the store
+     * @param value the value to write
+     * @return returns the handle used to read it back
+     */
+    public long write(String value) {
+        checkOpen();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = bytes;
+        int inflatedLength = NOT_COMPRESSED;
+
+        // only keep the deflated bytes if they are actually smaller
+        if (compressed) {
+            byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                stored = deflated;
+                inflatedLength = bytes.length;
+            }
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(HEADER_SIZE + stored.length);
+        entry.putInt(stored.length).putInt(inflatedLength).put(stored);
+        entry.flip();
+
+        return (channel != null) ? append(entry) : allocate(entry);
+    }
+
+    /**
+     * Reads a value back from the store
+     * @param handle the handle returned when the value was written
+     * @return returns the value
+     */
+    public String read(long handle) {
+        checkOpen();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(handle, header);
+        header.flip();
+        byte[] stored = new byte[header.getInt()];
+        int inflatedLength = header.getInt();
+        readFully(handle + HEADER_SIZE, ByteBuffer.wrap(stored));
+        byte[] bytes = (inflatedLength == NOT_COMPRESSED) ? stored : inflate(stored, inflatedLength);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Releases the storage, the temp file is deleted and the direct buffers are left for the collector
+     */
+    @Override
+    public void close() {
+        closed = true;
+        chunks.clear();
+
+        if (channel != null) {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private long append(ByteBuffer entry) {
+        long handle = fileSize;
+
+        try {
+            while (entry.hasRemaining()) {
+                fileSize += channel.write(entry, fileSize);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return handle;
+    }
+
+    private long allocate(ByteBuffer entry) {
+        ByteBuffer chunk = (chunks.isEmpty()) ? null : chunks.get(chunks.size() - 1);
+
+        // an entry never spans chunks, so a large one gets a chunk of its own
+        if (chunk == null || chunk.remaining() < entry.remaining()) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, entry.remaining()));
+            chunks.add(chunk);
+        }
+
+        // the chunk index is kept in the high bits and the position in the low bits
+        long handle = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        chunk.put(entry);
+        return handle;
+    }
+
+    private void readFully(long position, ByteBuffer target) {
+        if (channel != null) {
+            try {
+                while (target.hasRemaining()) {
+                    if (channel.read(target, position + target.position()) < 0) {
+                        throw new RuntimeException("Unexpected end of the large value file.");
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        else {
+            // a duplicate keeps concurrent readers from moving each other's position
+            ByteBuffer chunk = chunks.get((int) (position >>> 32)).duplicate();
+            chunk.position((int) position);
+            chunk.limit(chunk.position() + target.remaining());
+            target.put(chunk);
+        }
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] stored, int inflatedLength) {
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(stored);
+            byte[] bytes = new byte[inflatedLength];
+            int length = 0;
+            while (length < inflatedLength && !inflater.finished()) {
+                int count = inflater.inflate(bytes, length, inflatedLength - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new RuntimeException("A large value is corrupt.");
+                }
+                length += count;
+            }
+            return bytes;
+        }
+        catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new RuntimeException("The large value store is closed.");
+        }
+    }
+}
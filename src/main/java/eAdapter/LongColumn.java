@@ -0,0 +1,68 @@
+package eAdapter;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: A column of whole numbers that fit in a long.
+ */
+public class LongColumn extends PrimitiveColumn {
+
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    @Override
+    public ColumnType getType() {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    protected boolean store(int row, String value) {
+        if (!isLong(value)) {
+            return false;
+        }
+
+        if (row >= values.length) {
+            values = Arrays.copyOf(values, Math.max(row + 1, values.length + (values.length >> 1)));
+        }
+        values[row] = Long.parseLong(value);
+        return true;
+    }
+
+    @Override
+    protected String format(int row) {
+        return Long.toString(values[row]);
+    }
+
+    /**
+     * Checks if a value is a long that can be formatted back to the same String
+     * @param value the value to check
+     * @return returns true if the value can be stored
+     */
+    public static boolean isLong(String value) {
+        if (!isCanonicalNumber(value) || value.length() > 20) {
+            return false;
+        }
+
+        try {
+            Long.parseLong(value);
+            return true;
+        }
+        catch (NumberFormatException e) {
+            // too large for a long
+            return false;
+        }
+    }
+
+    /**
+     * Parses a value the way a typed accessor reads a text column
+     * @param value the value to parse
+     * @return returns the number or null if the value is null or blank
+     */
+    public static Long toLong(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : Long.valueOf(value.trim());
+    }
+}
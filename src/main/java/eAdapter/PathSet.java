@@ -0,0 +1,225 @@
+package eAdapter;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Purpose: An ordered set of file paths that keeps an int file id per path and the
+ * paths themselves in a shared {@link PathStore}. Paths are put back together when they
+ * are read. Adding checks the last path first, since repeated paths like the pages of
+ * a multi-page image come one after another. Larger sets find their paths through an open
+ * addressing table of positions hashed on the folder id and leaf name, so filling a set with
+ * the pages of a large document stays linear.
+ */
+public class PathSet extends AbstractSet<String> {
+
+    private static final int SCAN_LIMIT = 8; // sets up to this size are scanned instead of hashed
+
+    private final PathStore store;
+    private int[] files = new int[1];
+    private int size = 0;
+    private int[] slots = null; // position + 1 of each hashed path, 0 for an empty slot
+
+    /**
+     * Creates an empty set
+     * @param store the store that holds the paths
+     */
+    public PathSet(PathStore store) {
+        this.store = store;
+    }
+
+    public PathStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Gets the file id of a path in the set
+     * @param index the position of the path in the set
+     * @return returns the file id
+     */
+    public int getFile(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for a set of " + size + " paths.");
+        }
+
+        return files[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && indexOf((String) o) >= 0;
+    }
+
+    @Override
+    public boolean add(String path) {
+        if (indexOf(path) >= 0) {
+            return false;
+        }
+
+        append(store.addFile(path));
+        return true;
+    }
+
+    /**
+     * Adds a path from a folder that is already in the store
+     * @param folder the folder id
+     * @param leaf the file name
+     * @return returns true if the path was not in the set yet
+     */
+    public boolean add(int folder, String leaf) {
+        if (indexOf(folder, leaf) >= 0) {
+            return false;
+        }
+
+        append(store.addFile(folder, leaf));
+        return true;
+    }
+
+    /**
+     * Adds a file that is already in the store
+     * @param file the file id
+     * @return returns true if the path of the file was not in the set yet
+     */
+    public boolean addFile(int file) {
+        if (indexOf(store.getFolder(file), store.getLeaf(file)) >= 0) {
+            return false;
+        }
+
+        append(file);
+        return true;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = 0;
+            private boolean removable = false;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                removable = true;
+                return store.getPath(files[next++]);
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--next);
+                removable = false;
+            }
+        };
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = (o instanceof String) ? indexOf((String) o) : -1;
+
+        if (index >= 0) {
+            removeAt(index);
+        }
+
+        return index >= 0;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        slots = null;
+    }
+
+    private int indexOf(String path) {
+        int split = PathStore.getLeafStart(path);
+        int folder = store.findFolder(path.substring(0, split));
+        return (folder < 0) ? -1 : indexOf(folder, path.substring(split));
+    }
+
+    private int indexOf(int folder, String leaf) {
+        // the last path first, repeated paths come one after another
+        if (size > 0 && store.matches(files[size - 1], folder, leaf)) {
+            return size - 1;
+        }
+        if (size <= SCAN_LIMIT) {
+            for (int i = size - 2; i >= 0; i--) {
+                if (store.matches(files[i], folder, leaf)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        if (slots == null) {
+            rehash();
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash(folder, leaf) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (store.matches(files[slots[slot] - 1], folder, leaf)) {
+                return slots[slot] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    private void append(int file) {
+        if (size == files.length) {
+            files = Arrays.copyOf(files, size * 2);
+        }
+
+        files[size++] = file;
+        if (slots != null) {
+            // keep the table at most half full
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            else {
+                insert(size - 1);
+            }
+        }
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(files, index + 1, files, index, size - index - 1);
+        size--;
+        // the positions after the removed path have moved, so the table is built again when it is needed
+        slots = null;
+    }
+
+    private void rehash() {
+        slots = new int[Integer.highestOneBit(Math.max(size, SCAN_LIMIT) * 4 - 1) << 1];
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+    }
+
+    private void insert(int index) {
+        int mask = slots.length - 1;
+        int slot = hash(store.getFolder(files[index]), store.getLeaf(files[index])) & mask;
+
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private static int hash(int folder, String leaf) {
+        int hash = folder * 0x9E3779B9 + leaf.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,237 @@
+package eAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Purpose: Stores file paths as a folder id plus a leaf name, so the folders that
+ * thousands of pages share are only kept once. Folders form a trie of path segments,
+ * where every segment keeps the separator that follows it, so paths come back exactly as
+ * they were added no matter which separators they use. Volume names are kept once as well.
+ * This class is not thread safe.
+ */
+public class PathStore {
+
+    /**
+     * The id of the folder for paths without any separators
+     */
+    public static final int ROOT_FOLDER = 0;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // folder trie
+    private final List<String> folderPaths = new ArrayList<>();
+    private final List<Integer> folderParents = new ArrayList<>();
+    private final List<Map<String, Integer>> folderChildren = new ArrayList<>();
+    private final Map<String, Integer> folderIds = new HashMap<>(); // folder path >> folder id
+    private final Map<String, Integer> folderAliases = new HashMap<>(); // raw folder >> folder id
+    // volume table
+    private final List<String> volumes = new ArrayList<>();
+    private final Map<String, Integer> volumeIds = new HashMap<>();
+    // file table
+    private int[] fileFolders = new int[INITIAL_CAPACITY];
+    private String[] fileLeaves = new String[INITIAL_CAPACITY];
+    private int fileCount = 0;
+
+    public PathStore() {
+        folderPaths.add("");
+        folderParents.add(-1);
+        folderChildren.add(null);
+        folderIds.put("", ROOT_FOLDER);
+    }
+
+    /**
+     * Adds a folder and any of its parents that don't exist yet
+     * @param folderPath the folder path including the trailing separator, or blank for the root
+     * @return returns the folder id
+     */
+    public int addFolder(String folderPath) {
+        Integer id = folderIds.get(folderPath);
+        if (id != null) {
+            return id;
+        }
+
+        // walk down the trie one segment at a time
+        int folder = ROOT_FOLDER;
+        int start = 0;
+        for (int i = 0; i < folderPath.length(); i++) {
+            if (isSeparator(folderPath.charAt(i))) {
+                folder = addChild(folder, folderPath, start, i + 1);
+                start = i + 1;
+            }
+        }
+        // a folder path without a trailing separator ends in a segment of its own
+        if (start < folderPath.length()) {
+            folder = addChild(folder, folderPath, start, folderPath.length());
+        }
+
+        folderIds.put(folderPaths.get(folder), folder);
+        return folder;
+    }
+
+    /**
+     * Adds a folder from a raw value that still has to be turned into a folder path.
+     * The conversion only runs the first time a raw value is seen.
+     * @param rawFolder the folder as it was read
+     * @param toFolderPath converts the raw value into a folder path with a trailing separator
+     * @return returns the folder id
+     */
+    public int addFolder(String rawFolder, UnaryOperator<String> toFolderPath) {
+        Integer id = folderAliases.get(rawFolder);
+
+        if (id == null) {
+            id = addFolder(toFolderPath.apply(rawFolder));
+            folderAliases.put(rawFolder, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Finds a folder without adding it
+     * @param folderPath the folder path including the trailing separator
+     * @return returns the folder id or -1 if the folder was never added
+     */
+    public int findFolder(String folderPath) {
+        Integer id = folderIds.get(folderPath);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * Adds a file to a folder
+     * @param folder the folder id
+     * @param leaf the file name
+     * @return returns the file id
+     */
+    public int addFile(int folder, String leaf) {
+        if (fileCount == fileFolders.length) {
+            int capacity = fileCount + (fileCount >> 1);
+            fileFolders = Arrays.copyOf(fileFolders, capacity);
+            fileLeaves = Arrays.copyOf(fileLeaves, capacity);
+        }
+
+        fileFolders[fileCount] = folder;
+        fileLeaves[fileCount] = leaf;
+        return fileCount++;
+    }
+
+    /**
+     * Adds a file by its full path
+     * @param path the path of the file
+     * @return returns the file id
+     */
+    public int addFile(String path) {
+        int split = getLeafStart(path);
+        return addFile(addFolder(path.substring(0, split)), path.substring(split));
+    }
+
+    /**
+     * Adds a volume name if it doesn't exist yet
+     * @param volume the volume name
+     * @return returns the volume id
+     */
+    public int addVolume(String volume) {
+        Integer id = volumeIds.get(volume);
+
+        if (id == null) {
+            id = volumes.size();
+            volumes.add(volume);
+            volumeIds.put(volume, id);
+        }
+
+        return id;
+    }
+
+    public String getVolume(int volume) {
+        return volumes.get(volume);
+    }
+
+    public int getFileCount() {
+        return this.fileCount;
+    }
+
+    public int getFolder(int file) {
+        return fileFolders[file];
+    }
+
+    public String getLeaf(int file) {
+        return fileLeaves[file];
+    }
+
+    /**
+     * Gets the full path of a file
+     * @param file the file id
+     * @return returns the folder path followed by the leaf name
+     */
+    public String getPath(int file) {
+        String folderPath = folderPaths.get(fileFolders[file]);
+        return (folderPath.isEmpty()) ? fileLeaves[file] : folderPath.concat(fileLeaves[file]);
+    }
+
+    public String getFolderPath(int folder) {
+        return folderPaths.get(folder);
+    }
+
+    /**
+     * Gets the folder that contains a folder
+     * @param folder the folder id
+     * @return returns the parent folder id or -1 for the root
+     */
+    public int getParentFolder(int folder) {
+        return folderParents.get(folder);
+    }
+
+    /**
+     * Checks if a file has a path
+     * @param file the file id
+     * @param folder the folder id of the path
+     * @param leaf the leaf name of the path
+     * @return returns true if the paths match
+     */
+    boolean matches(int file, int folder, String leaf) {
+        return fileFolders[file] == folder && fileLeaves[file].equals(leaf);
+    }
+
+    /**
+     * Finds where the leaf name of a path starts
+     * @param path the path
+     * @return returns the index after the last separator
+     */
+    static int getLeafStart(String path) {
+        for (int i = path.length() - 1; i >= 0; i--) {
+            if (isSeparator(path.charAt(i))) {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    private int addChild(int parent, String folderPath, int start, int end) {
+        Map<String, Integer> children = folderChildren.get(parent);
+        String segment = folderPath.substring(start, end);
+        Integer child = (children != null) ? children.get(segment) : null;
+
+        if (child == null) {
+            if (children == null) {
+                children = new HashMap<>();
+                folderChildren.set(parent, children);
+            }
+            child = folderPaths.size();
+            folderPaths.add(folderPaths.get(parent).concat(segment));
+            folderParents.add(parent);
+            folderChildren.add(null);
+            children.put(segment, child);
+        }
+
+        return child;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '\\' || c == '/';
+    }
+}
@@ -0,0 +1,124 @@
+package eAdapter;
+
+import java.util.BitSet;
+
+/**
+ * Purpose: A column that keeps its values in a primitive array instead of as Strings.
+ * Bit sets track which rows have a value and which of those values are blank.
+ */
+public abstract class PrimitiveColumn extends Column {
+
+    protected static final int INITIAL_CAPACITY = 16;
+
+    private final BitSet present = new BitSet();
+    private final BitSet blank = new BitSet();
+
+    @Override
+    public abstract ColumnType getType();
+
+    /**
+     * Gets the value of a row as a long, dates are given in epoch days
+     * @param row the row index, which has to have a value
+     * @return returns the value
+     */
+    public abstract long getLong(int row);
+
+    /**
+     * Parses and stores a value that is not blank
+     * @param row the row index
+     * @param value the value
+     * @return returns false if the value can't be stored without changing it
+     */
+    protected abstract boolean store(int row, String value);
+
+    /**
+     * Formats a stored value back to the String it was parsed from
+     * @param row the row index
+     * @return returns the value
+     */
+    protected abstract String format(int row);
+
+    @Override
+    public String get(int row) {
+        if (!present.get(row)) {
+            return null;
+        }
+
+        return (blank.get(row)) ? "" : format(row);
+    }
+
+    @Override
+    public boolean set(int row, String value) {
+        if (value == null) {
+            present.clear(row);
+            blank.clear(row);
+        }
+        else if (value.isEmpty()) {
+            present.set(row);
+            blank.set(row);
+        }
+        else if (store(row, value)) {
+            present.set(row);
+            blank.clear(row);
+        }
+        else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if a row has a value that is not blank
+     * @param row the row index
+     * @return returns true if the row has a typed value
+     */
+    public boolean hasValue(int row) {
+        return present.get(row) && !blank.get(row);
+    }
+
+    /**
+     * Finds the rows with a value inside of a range, without parsing any values
+     * @param min the smallest matching value, dates are given in epoch days
+     * @param max the largest matching value, dates are given in epoch days
+     * @param rowCount the number of rows in the store
+     * @return returns the matching row indexes
+     */
+    public BitSet filterRange(long min, long max, int rowCount) {
+        BitSet matches = new BitSet(rowCount);
+
+        for (int row = present.nextSetBit(0); row >= 0 && row < rowCount; row = present.nextSetBit(row + 1)) {
+            if (!blank.get(row)) {
+                long value = getLong(row);
+                if (value >= min && value <= max) {
+                    matches.set(row);
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Checks if a value is a whole number written the way Long.toString would write it
+     * @param value the value to check
+     * @return returns true if the value has no sign other than a minus, no leading zeros and no white space
+     */
+    protected static boolean isCanonicalNumber(String value) {
+        int start = (value.startsWith("-")) ? 1 : 0;
+        int length = value.length();
+
+        if (length == start || (value.charAt(start) == '0' && (length > start + 1 || start == 1))) {
+            return false;
+        }
+
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
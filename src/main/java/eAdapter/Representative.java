@@ -12,6 +12,7 @@ public class Representative {
     private Type type;
     private String name;
     private Set<String> files = new LinkedHashSet<>();
+    private ImagePages pages;
 
     public Type getType() {
         return type;
@@ -36,4 +37,16 @@ public class Representative {
     public void setFiles(Set<String> files) {
         this.files = files;
     }
+
+    /**
+     * Gets the pages of an image representative that was built from an image load file
+     * @return returns the pages or null if the representative has none
+     */
+    public ImagePages getPages() {
+        return pages;
+    }
+
+    public void setPages(ImagePages pages) {
+        this.pages = pages;
+    }
 }
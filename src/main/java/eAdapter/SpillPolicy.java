@@ -0,0 +1,54 @@
+package eAdapter;
+
+import java.nio.file.Path;
+
+/**
+ * Purpose: Settings for building more documents than fit on the heap. Once the estimated
+ * footprint of the built documents crosses the heap budget, the oldest documents are written
+ * to a spill file and read back when their metadata or representatives are asked for.
+ */
+public class SpillPolicy {
+
+    /**
+     * The default number of spilled documents that are kept decoded after they are read
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private long heapBudget = 0;
+    private Path spillDirectory = null;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    public long getHeapBudget() {
+        return this.heapBudget;
+    }
+
+    public Path getSpillDirectory() {
+        return this.spillDirectory;
+    }
+
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * @param heapBudget the number of bytes the built documents may take up before they are spilled,
+     *        zero or less keeps every document on the heap
+     */
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * @param spillDirectory the directory for the spill file or null to use the system default
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @param cacheSize the number of spilled documents that are kept decoded after they are read
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+}
@@ -0,0 +1,62 @@
+package eAdapter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Purpose: Stands in for a document that was written to the spill file of a {@link SpillingDocumentList}.
+ * The key and family links stay in memory, the metadata and representatives are read back on demand
+ * and come back read only. Changes made through the setters are written to the spill file.
+ */
+class SpilledDocument extends Document {
+
+    private final SpillingDocumentList list;
+    private final int ordinal;
+    private long position;
+
+    /**
+     * Creates a stand in for a spilled document
+     * @param list the list that owns the spill file
+     * @param ordinal the position of the document in the list
+     * @param position the position of its record in the spill file
+     */
+    SpilledDocument(SpillingDocumentList list, int ordinal, long position) {
+        super((Map<String, String>) null);
+        super.setRepresentatives(null);
+        this.list = list;
+        this.ordinal = ordinal;
+        this.position = position;
+    }
+
+    @Override
+    public Map<String, String> getMetadata() {
+        return list.load(ordinal, position).getMetadata();
+    }
+
+    @Override
+    public void setMetadata(Map<String, String> metadata) {
+        Document doc = new Document(metadata);
+        doc.setRepresentatives(getRepresentatives());
+        position = list.rewrite(ordinal, doc);
+    }
+
+    @Override
+    public Set<Representative> getRepresentatives() {
+        return list.load(ordinal, position).getRepresentatives();
+    }
+
+    @Override
+    public void setRepresentatives(Set<Representative> representatives) {
+        Document doc = new Document(getMetadata());
+        doc.setRepresentatives(representatives);
+        position = list.rewrite(ordinal, doc);
+    }
+
+    @Override
+    public void addField(String fieldName, String value) {
+        Map<String, String> metadata = new LinkedHashMap<>(getMetadata());
+        metadata.put(fieldName, value);
+        setMetadata(metadata);
+    }
+}
@@ -0,0 +1,466 @@
+package eAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import csvparser.ByteCharSequence;
+import csvparser.CSVRecord;
+import csvparser.RecordMap;
+
+/**
+ * Purpose: A list of documents that stays under a heap budget. Documents are kept in the order
+ * they were added and, once their estimated footprint crosses the budget, the oldest ones are
+ * written to a spill file. A spilled document is replaced by a small stand in that keeps its key
+ * and family links in memory and reads its metadata and representatives back when they are asked for.
+ * The list has to be closed to delete the spill file.
+ */
+public class SpillingDocumentList extends AbstractList<Document> implements RandomAccess, Closeable {
+
+    private static final int DOCUMENT_OVERHEAD = 96;
+    private static final int ENTRY_OVERHEAD = 48;
+    private static final int STRING_OVERHEAD = 40;
+    private static final int REPRESENTATIVE_OVERHEAD = 64;
+    private static final int PAGE_OVERHEAD = 9;
+    private static final int RECORD_OVERHEAD = 64; // a record, its map and its field bounds array
+    private static final int BOUNDS_SIZE = 4; // the start and end of a field as chars
+    private static final int LENGTH_SIZE = 4;
+    private static final int NULL_LENGTH = -1;
+
+    private final long heapBudget;
+    private final Path spillDirectory;
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<Integer, Document> cache; // ordinal >> decoded spilled document
+    private int[] footprints = new int[16];
+    private long footprint = 0;
+    private int nextSpill = 0; // every document before this ordinal is spilled
+    private FileChannel channel = null;
+    private long fileSize = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a list that follows a spill policy
+     * @param policy the spill policy
+     */
+    public SpillingDocumentList(SpillPolicy policy) {
+        int cacheSize = Math.max(policy.getCacheSize(), 0);
+        this.heapBudget = policy.getHeapBudget();
+        this.spillDirectory = policy.getSpillDirectory();
+        this.cache = new LinkedHashMap<Integer, Document>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Document> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public Document get(int index) {
+        return documents.get(index);
+    }
+
+    @Override
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Adds a document to the end of the list, which may spill the oldest documents
+     * @param doc the document, it should be complete apart from children that are added later
+     * @return returns true
+     */
+    @Override
+    public boolean add(Document doc) {
+        checkOpen();
+        int ordinal = documents.size();
+        documents.add(doc);
+        track(ordinal, doc);
+        spillOverBudget();
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces a document, a document that replaces a spilled one is spilled right away
+     * @param index the position of the document
+     * @param doc the document that takes its place
+     * @return returns the document that was replaced
+     */
+    @Override
+    public Document set(int index, Document doc) {
+        checkOpen();
+        Document previous = documents.set(index, doc);
+        cache.remove(index);
+
+        if (index < nextSpill) {
+            spill(index);
+        }
+        else {
+            footprint -= footprints[index];
+            track(index, doc);
+            spillOverBudget();
+        }
+
+        return previous;
+    }
+
+    /**
+     * Gets the number of documents that have been written to the spill file
+     * @return returns the number of spilled documents
+     */
+    public int getSpilledCount() {
+        int count = 0;
+        for (Document doc : documents) {
+            if (doc instanceof SpilledDocument) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the estimated heap footprint of the documents that have not been spilled
+     * @return returns the estimate in bytes
+     */
+    public long getFootprint() {
+        return footprint;
+    }
+
+    /**
+     * Deletes the spill file, the spilled documents can't be read after this
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cache.clear();
+
+        if (channel != null) {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap taken up by a document, field names are left out since documents from one file share them.
+     * A document that still reads its metadata from a record is sized by the record, so no field is decoded.
+     * @param doc the document
+     * @return returns the estimate in bytes
+     */
+    public static int estimateFootprint(Document doc) {
+        long size = DOCUMENT_OVERHEAD + getFootprint(doc.getKey());
+        Map<String, String> metadata = doc.getMetadata();
+        CSVRecord record = (metadata instanceof RecordMap) ? ((RecordMap) metadata).getRecord() : null;
+
+        if (record != null) {
+            // a byte view keeps one byte per character
+            CharSequence buffer = record.getBuffer();
+            int charSize = (buffer instanceof ByteCharSequence) ? 1 : 2;
+            size += RECORD_OVERHEAD + STRING_OVERHEAD + (long) charSize * buffer.length() + (long) BOUNDS_SIZE * metadata.size();
+        }
+        else {
+            for (String value : metadata.values()) {
+                size += ENTRY_OVERHEAD + getFootprint(value);
+            }
+        }
+        for (Representative rep : doc.getRepresentatives()) {
+            size += REPRESENTATIVE_OVERHEAD;
+            for (String file : rep.getFiles()) {
+                size += ENTRY_OVERHEAD + getFootprint(file);
+            }
+            if (rep.getPages() != null) {
+                size += (long) rep.getPages().getPageCount() * PAGE_OVERHEAD;
+            }
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a spilled document back from the spill file
+     * @param ordinal the position of the document
+     * @param position the position of its record in the spill file
+     * @return returns a plain document with read only metadata and representatives
+     */
+    Document load(int ordinal, long position) {
+        checkOpen();
+        Document doc = cache.get(ordinal);
+
+        if (doc == null) {
+            doc = decode(read(position));
+            cache.put(ordinal, doc);
+        }
+
+        return doc;
+    }
+
+    /**
+     * Writes a new version of a spilled document, the old record is left in the spill file
+     * @param ordinal the position of the document
+     * @param doc a plain document with the new metadata and representatives
+     * @return returns the position of the new record
+     */
+    long rewrite(int ordinal, Document doc) {
+        checkOpen();
+        cache.remove(ordinal);
+        return write(encode(doc));
+    }
+
+    private void track(int ordinal, Document doc) {
+        if (ordinal >= footprints.length) {
+            footprints = Arrays.copyOf(footprints, Math.max(ordinal + 1, footprints.length * 2));
+        }
+        // a stand in that is moved around, like by a sort, is already on disk
+        footprints[ordinal] = (doc instanceof SpilledDocument) ? 0 : estimateFootprint(doc);
+        footprint += footprints[ordinal];
+    }
+
+    private void spillOverBudget() {
+        // the documents are spilled oldest first, their families are most likely settled
+        while (heapBudget > 0 && footprint > heapBudget && nextSpill < documents.size()) {
+            spill(nextSpill++);
+        }
+    }
+
+    private void spill(int ordinal) {
+        Document doc = documents.get(ordinal);
+        if (doc instanceof SpilledDocument) {
+            return;
+        }
+
+        SpilledDocument proxy = new SpilledDocument(this, ordinal, write(encode(doc)));
+        proxy.setKey(doc.getKey());
+        proxy.setParent(doc.getParent());
+        proxy.setChildren(doc.getChildren()); // children added later still reach the proxy
+        // point the family at the proxy so the document itself can be collected
+        Document parent = doc.getParent();
+        if (parent != null) {
+            List<Document> siblings = parent.getChildren();
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == doc) {
+                    siblings.set(i, proxy);
+                }
+            }
+        }
+        for (Document child : doc.getChildren()) {
+            if (child.getParent() == doc) {
+                child.setParent(proxy);
+            }
+        }
+        documents.set(ordinal, proxy);
+        footprint -= footprints[ordinal];
+        footprints[ordinal] = 0;
+    }
+
+    private byte[] encode(Document doc) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(0); // the record length is filled in below
+            // write the metadata
+            Map<String, String> metadata = doc.getMetadata();
+            output.writeInt(metadata.size());
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue());
+            }
+            // write the representatives
+            Set<Representative> reps = doc.getRepresentatives();
+            output.writeInt((reps != null) ? reps.size() : 0);
+            if (reps != null) {
+                for (Representative rep : reps) {
+                    writeRepresentative(output, rep);
+                }
+            }
+            output.flush();
+            byte[] record = bytes.toByteArray();
+            ByteBuffer.wrap(record).putInt(record.length - LENGTH_SIZE);
+            return record;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Document decode(byte[] record) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+            // read the metadata
+            int fieldCount = input.readInt();
+            Map<String, String> metadata = new LinkedHashMap<>();
+            for (int i = 0; i < fieldCount; i++) {
+                String fieldName = readString(input);
+                metadata.put(fieldName, readString(input));
+            }
+            // read the representatives
+            int repCount = input.readInt();
+            Set<Representative> reps = new LinkedHashSet<>();
+            for (int i = 0; i < repCount; i++) {
+                reps.add(readRepresentative(input));
+            }
+            Document doc = new Document(Collections.unmodifiableMap(metadata));
+            doc.setRepresentatives(Collections.unmodifiableSet(reps));
+            return doc;
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeRepresentative(DataOutputStream output, Representative rep) throws IOException {
+        writeString(output, (rep.getType() != null) ? rep.getType().name() : null);
+        writeString(output, rep.getName());
+        Set<String> files = rep.getFiles();
+        output.writeInt((files != null) ? files.size() : NULL_LENGTH);
+        if (files != null) {
+            for (String file : files) {
+                writeString(output, file);
+            }
+        }
+        // the pages are written by path, so a loaded document gets folders of its own
+        ImagePages pages = rep.getPages();
+        output.writeInt((pages != null) ? pages.getPageCount() : NULL_LENGTH);
+        if (pages != null) {
+            writeString(output, pages.getVolumeName());
+            output.writeChar(pages.getBoundary());
+            for (int page = 0; page < pages.getPageCount(); page++) {
+                writeString(output, pages.getPath(page));
+                output.writeInt(pages.getOffset(page));
+                output.writeByte(pages.getImageType(page));
+            }
+        }
+    }
+
+    private Representative readRepresentative(DataInputStream input) throws IOException {
+        Representative rep = new Representative();
+        String type = readString(input);
+        rep.setType((type != null) ? Representative.Type.valueOf(type) : null);
+        rep.setName(readString(input));
+        int fileCount = input.readInt();
+        Set<String> files = null;
+        if (fileCount != NULL_LENGTH) {
+            files = new LinkedHashSet<>();
+            for (int i = 0; i < fileCount; i++) {
+                files.add(readString(input));
+            }
+            files = Collections.unmodifiableSet(files);
+        }
+        rep.setFiles(files);
+        int pageCount = input.readInt();
+        if (pageCount != NULL_LENGTH) {
+            PathStore paths = new PathStore();
+            ImagePages pages = new ImagePages(paths);
+            String volume = readString(input);
+            if (volume != null) {
+                pages.setVolume(paths.addVolume(volume));
+            }
+            pages.setBoundary(input.readChar());
+            for (int page = 0; page < pageCount; page++) {
+                int file = paths.addFile(readString(input));
+                int offset = input.readInt();
+                pages.addPage(file, offset, input.readByte());
+            }
+            rep.setPages(pages);
+        }
+        return rep;
+    }
+
+    private void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_LENGTH);
+        }
+        else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long write(byte[] record) {
+        long position = fileSize;
+
+        try {
+            if (channel == null) {
+                Path file = (spillDirectory != null)
+                        ? Files.createTempFile(spillDirectory, "eAdapter", ".spill")
+                        : Files.createTempFile("eAdapter", ".spill");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                fileSize += channel.write(buffer, fileSize);
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return position;
+    }
+
+    private byte[] read(long position) {
+        ByteBuffer length = ByteBuffer.allocate(LENGTH_SIZE);
+        readFully(position, length);
+        length.flip();
+        ByteBuffer record = ByteBuffer.allocate(length.getInt());
+        readFully(position + LENGTH_SIZE, record);
+        return record.array();
+    }
+
+    private void readFully(long position, ByteBuffer target) {
+        try {
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new RuntimeException("Unexpected end of the spill file.");
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new RuntimeException("The spilled documents have been closed.");
+        }
+    }
+
+    private static long getFootprint(String value) {
+        return (value != null) ? STRING_OVERHEAD + 2L * value.length() : 0;
+    }
+}
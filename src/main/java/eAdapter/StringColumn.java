@@ -0,0 +1,30 @@
+package eAdapter;
+
+import java.util.Arrays;
+
+/**
+ * Purpose: A column that stores its values as plain Strings in a growable array.
+ */
+public class StringColumn extends Column {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] values = new String[INITIAL_CAPACITY];
+
+    @Override
+    public String get(int row) {
+        return (row < values.length) ? values[row] : null;
+    }
+
+    @Override
+    public boolean set(int row, String value) {
+        if (row >= values.length) {
+            if (value == null) {
+                return true;
+            }
+            values = Arrays.copyOf(values, Math.max(row + 1, values.length + (values.length >> 1)));
+        }
+        values[row] = value;
+        return true;
+    }
+}
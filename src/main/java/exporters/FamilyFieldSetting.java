@@ -0,0 +1,81 @@
+package exporters;
+
+/**
+ * Purpose: Settings for the family fields of a text delimited export. A field name that is
+ * null is left out of the export.
+ */
+public class FamilyFieldSetting {
+    private String parentField = "ParentID";
+    private String begAttachField = "BegAttach";
+    private String endAttachField = "EndAttach";
+    private String childrenField = "ChildIDs";
+    private String childDelimiter = ";";
+    private boolean familiesContiguous = false;
+
+    public String getParentField() {
+        return this.parentField;
+    }
+
+    public String getBegAttachField() {
+        return this.begAttachField;
+    }
+
+    public String getEndAttachField() {
+        return this.endAttachField;
+    }
+
+    public String getChildrenField() {
+        return this.childrenField;
+    }
+
+    public String getChildDelimiter() {
+        return this.childDelimiter;
+    }
+
+    public boolean isFamiliesContiguous() {
+        return this.familiesContiguous;
+    }
+
+    /**
+     * @param parentField the field that holds the key of the parent
+     */
+    public void setParentField(String parentField) {
+        this.parentField = parentField;
+    }
+
+    /**
+     * @param begAttachField the field that holds the key of the first document of the family
+     */
+    public void setBegAttachField(String begAttachField) {
+        this.begAttachField = begAttachField;
+    }
+
+    /**
+     * @param endAttachField the field that holds the key of the last document of the family
+     */
+    public void setEndAttachField(String endAttachField) {
+        this.endAttachField = endAttachField;
+    }
+
+    /**
+     * @param childrenField the field that holds the keys of the children
+     */
+    public void setChildrenField(String childrenField) {
+        this.childrenField = childrenField;
+    }
+
+    /**
+     * @param childDelimiter the delimiter between the keys of the children
+     */
+    public void setChildDelimiter(String childDelimiter) {
+        this.childDelimiter = childDelimiter;
+    }
+
+    /**
+     * @param familiesContiguous indicates if each family is exported as one block,
+     *        a parent first and then each child followed by its own descendants
+     */
+    public void setFamiliesContiguous(boolean familiesContiguous) {
+        this.familiesContiguous = familiesContiguous;
+    }
+}
@@ -0,0 +1,144 @@
+package exporters;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eAdapter.Document;
+
+/**
+ * Purpose: Works out the family fields of a list of documents from their parents and children.
+ * Every family is walked once from its top parent, depth first and in the order the children are
+ * listed, which gives the family order of the documents and the first and last document of each
+ * family. A document whose parent is not in the list is the top parent of its own family.
+ */
+public class FamilyFields {
+    private static final int NONE = -1;
+
+    private final List<Document> documents;
+    private final Map<Document, Integer> positions;
+    private final int[] order; // positions in family order
+    private final int[] parents;
+    private final int[] firsts; // the top parent of the family of each document
+    private final int[] lasts; // the last document of the family of each document
+
+    /**
+     * Walks the families of a list of documents
+     * @param documents the documents
+     */
+    public FamilyFields(List<Document> documents) {
+        int size = documents.size();
+        this.documents = documents;
+        // map each document to its position
+        this.positions = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.put(documents.get(i), i);
+        }
+        this.parents = new int[size];
+        for (int i = 0; i < size; i++) {
+            Integer parent = positions.get(documents.get(i).getParent());
+            parents[i] = (parent != null) ? parent : NONE;
+        }
+        // walk each family from its top parent
+        this.order = new int[size];
+        this.firsts = new int[size];
+        this.lasts = new int[size];
+        boolean[] visited = new boolean[size];
+        int[] stack = new int[16];
+        int count = 0;
+        for (int root = 0; root < size; root++) {
+            if (parents[root] != NONE) {
+                continue;
+            }
+            int start = count;
+            int depth = 0;
+            stack[depth++] = root;
+            while (depth > 0) {
+                int position = stack[--depth];
+                visited[position] = true;
+                order[count++] = position;
+                // push the children backwards so the first child is walked first
+                List<Document> children = documents.get(position).getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    Integer child = positions.get(children.get(i));
+                    if (child != null && parents[child] == position && !visited[child]) {
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth * 2);
+                        }
+                        stack[depth++] = child;
+                    }
+                }
+            }
+            // a document without a parent or children has no family range
+            boolean family = count - start > 1;
+            for (int i = start; i < count; i++) {
+                firsts[order[i]] = (family) ? root : NONE;
+                lasts[order[i]] = (family) ? order[count - 1] : NONE;
+            }
+        }
+        // documents that can't be reached from a top parent are part of a cycle
+        if (count < size) {
+            throw new RuntimeException("Broken families, a document is its own ancestor.");
+        }
+    }
+
+    /**
+     * Gets the positions of the documents with each family in one block
+     * @return returns the positions, a top parent is followed by its descendants
+     */
+    public int[] getFamilyOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Gets the key of the parent of a document
+     * @param position the position of the document
+     * @return returns the key or null if the document has no parent in the list
+     */
+    public String getParentKey(int position) {
+        return getKey(parents[position]);
+    }
+
+    /**
+     * Gets the key of the first document of the family of a document
+     * @param position the position of the document
+     * @return returns the key of the top parent or null if the document has no family
+     */
+    public String getBegAttach(int position) {
+        return getKey(firsts[position]);
+    }
+
+    /**
+     * Gets the key of the last document of the family of a document in family order
+     * @param position the position of the document
+     * @return returns the key or null if the document has no family
+     */
+    public String getEndAttach(int position) {
+        return getKey(lasts[position]);
+    }
+
+    /**
+     * Gets the keys of the children of a document
+     * @param position the position of the document
+     * @param delimiter the delimiter between the keys
+     * @return returns the keys in the order the children are listed, or null if there are none
+     */
+    public String getChildKeys(int position, String delimiter) {
+        StringBuilder keys = null;
+
+        for (Document child : documents.get(position).getChildren()) {
+            Integer childPosition = positions.get(child);
+            if (childPosition != null && parents[childPosition] == position) {
+                keys = (keys == null) ? new StringBuilder() : keys.append(delimiter);
+                keys.append(child.getKey());
+            }
+        }
+
+        return (keys != null) ? keys.toString() : null;
+    }
+
+    private String getKey(int position) {
+        return (position != NONE) ? documents.get(position).getKey() : null;
+    }
+}
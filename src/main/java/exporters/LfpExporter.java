@@ -11,6 +11,7 @@ import java.util.List;
 import org.apache.commons.io.FilenameUtils;
 
 import eAdapter.Document;
+import eAdapter.ImagePages;
 import eAdapter.Representative;
 
 public class LfpExporter {
@@ -19,9 +20,6 @@ public class LfpExporter {
     private static final String CHILD_BREAK = "C";
     private static final String PAGE_BREAK = "";
     private static final String PAGE_COUNT_FIELD = "Page Count";
-    private static final String TIF_EXT = "TIF";
-    private static final String JPG_EXT = "JPG";
-    private static final String PDF_EXT = "PDF";
 
     public void export(List<Document> documents, Path filePath, String imagesName, String nativeName, String volumeName) {
 
@@ -69,55 +67,29 @@ public class LfpExporter {
         }
         // check if an image representative was found
         if (imageRep != null) {
-            int counter = 0;
-            int iterations = getOffsetIterations(document, imageRep);
-            int startIndex = (iterations == 1) ? 0 : 1;
-
-            for (int i = startIndex; i < iterations; i++) {
-                for (String file : imageRep.getFiles()) {
-                    Path path = Paths.get(file);
-                    String basePath = FilenameUtils.getPath(file);
-                    String ext = FilenameUtils.getExtension(file).toUpperCase();
-                    String imageType = "";
-                    // select image type
-                    if (ext.equals(TIF_EXT)) {
-                        imageType = "2";
-                    }
-                    else if (ext.equals(JPG_EXT)) {
-                        imageType = "4";
-                    }
-                    else if (ext.equals(PDF_EXT)) {
-                        imageType = "7";
-                    }
-                    else {
-                        throw new RuntimeException("Inalid file extension.");
+            ImagePages imagePages = imageRep.getPages();
+            // pages built from an image load file already know their offsets and image types
+            if (imagePages != null) {
+                for (int i = 0; i < imagePages.getPageCount(); i++) {
+                    pageRecords.add(getImageRecord(document, imagePages.getPath(i), imagePages.getOffset(i), imagePages.getImageType(i), i == 0, volumeName));
+                    // check for a native rep
+                    if (i == 0 && nativeRep != null) {
+                        addNativeRecords(pageRecords, document, nativeRep, volumeName);
                     }
-                    // Token,ImageKey,BoundaryFlag,Offset,@Volume;Path;FileName;ImageType
-                    String record = String.format(
-                            "IM,%1$s,%2$s,%3$s,@%4$s;%5$s;%6$s;%7$s",
-                            document.getKey(),
-                            (counter == 0) ? ((document.getParent() == null) ? DOC_BREAK : CHILD_BREAK) : PAGE_BREAK,
-                            Integer.toString(i),
-                            volumeName,
-                            basePath.substring(0, basePath.length() - 1),
-                            path.getFileName(),
-                            imageType);
+                }
+            }
+            else {
+                int counter = 0;
+                int iterations = getOffsetIterations(document, imageRep);
+                int startIndex = (iterations == 1) ? 0 : 1;
 
-                    counter++;
-                    pageRecords.add(record);
-                    // check for a native rep
-                    if (counter == 1 && nativeRep != null) {
-                        // Token,DocID,@Volume;Path;FileName,1
-                        for (String nativeFile : nativeRep.getFiles()) {
-                            basePath = FilenameUtils.getPath(nativeFile);
-                            path = Paths.get(nativeFile);
-                            String nativeRecord = String.format(
-                                    "OF,%1$s,@%2$s;%3$s;%4$s,1",
-                                    document.getKey(),
-                                    volumeName,
-                                    basePath.substring(0, basePath.length() - 1),
-                                    path.getFileName());
-                            pageRecords.add(nativeRecord);
+                for (int i = startIndex; i < iterations; i++) {
+                    for (String file : imageRep.getFiles()) {
+                        pageRecords.add(getImageRecord(document, file, i, ImagePages.getImageType(file), counter == 0, volumeName));
+                        counter++;
+                        // check for a native rep
+                        if (counter == 1 && nativeRep != null) {
+                            addNativeRecords(pageRecords, document, nativeRep, volumeName);
                         }
                     }
                 }
@@ -126,15 +98,48 @@ public class LfpExporter {
         return pageRecords;
     }
 
+    private String getImageRecord(Document document, String file, int offset, int imageType, boolean firstPage, String volumeName) {
+        Path path = Paths.get(file);
+        String basePath = FilenameUtils.getPath(file);
+        // select image type
+        if (imageType == ImagePages.UNKNOWN_TYPE) {
+            throw new RuntimeException("Invalid file extension.");
+        }
+        // Token,ImageKey,BoundaryFlag,Offset,@Volume;Path;FileName;ImageType
+        return String.format(
+                "IM,%1$s,%2$s,%3$s,@%4$s;%5$s;%6$s;%7$s",
+                document.getKey(),
+                (firstPage) ? ((document.getParent() == null) ? DOC_BREAK : CHILD_BREAK) : PAGE_BREAK,
+                Integer.toString(offset),
+                volumeName,
+                basePath.substring(0, basePath.length() - 1),
+                path.getFileName(),
+                Integer.toString(imageType));
+    }
+
+    private void addNativeRecords(List<String> pageRecords, Document document, Representative nativeRep, String volumeName) {
+        // Token,DocID,@Volume;Path;FileName,1
+        for (String nativeFile : nativeRep.getFiles()) {
+            String basePath = FilenameUtils.getPath(nativeFile);
+            Path path = Paths.get(nativeFile);
+            String nativeRecord = String.format(
+                    "OF,%1$s,@%2$s;%3$s;%4$s,1",
+                    document.getKey(),
+                    volumeName,
+                    basePath.substring(0, basePath.length() - 1),
+                    path.getFileName());
+            pageRecords.add(nativeRecord);
+        }
+    }
+
     private int getOffsetIterations(Document doc, Representative rep) {
         int iterations = 1;
         // check if the page count is greater than representative file count
         // if it is then we have a multipage image which requires a sequential 
         // offset otherwise the offset is zero
-        if (doc.getMetadata().containsKey(PAGE_COUNT_FIELD)) {
-            String pageCountValue = doc.getMetadata().get(PAGE_COUNT_FIELD);
-            int pageCount = Integer.parseInt(pageCountValue);
-
+        // a typed page count column is read without parsing, and a blank count is skipped
+        Integer pageCount = doc.getInteger(PAGE_COUNT_FIELD);
+        if (pageCount != null) {
             if (pageCount > 1 && rep.getFiles().size() == 1) {
                 iterations = pageCount + 1;
             }
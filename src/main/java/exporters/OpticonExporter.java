@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import eAdapter.Document;
+import eAdapter.ImagePages;
 import eAdapter.Representative;
 import parsers.Delimiters;
 
@@ -77,27 +78,37 @@ public class OpticonExporter {
         if (imageRep == null) {
             // TODO: is it ok if there is no rep found?
         }
+        // pages built from an image load file keep every page, even the ones of a multi-page image
+        else if (imageRep.getPages() != null) {
+            ImagePages imagePages = imageRep.getPages();
+            for (int i = 0; i < imagePages.getPageCount(); i++) {
+                pageRecords.add(getPageRecord(document, delimiters, volumeName, imagePages.getPath(i), i, imagePages.getPageCount()));
+            }
+        }
         else {
             int counter = 0;
             for (String file : imageRep.getFiles()) {
-                // ImageKey,VolumeName,FullPath,DocBreak,BoxBreak,FolderBreak,PageCount
-                String record = String.format(
-                        "%1$s%8$s%2$s%8$s%3$s%8$s%4$s%8$s%5$s%8$s%6$s%8$s%7$s%9$s",
-                        document.getKey(),
-                        volumeName,
-                        file,
-                        (counter == 0) ? TRUE_VALUE : FALSE_VALUE,
-                        FALSE_VALUE,
-                        FALSE_VALUE,
-                        (counter == 0) ? imageRep.getFiles().size() : FALSE_VALUE,
-                        delimiters.getFieldSeparator(),
-                        delimiters.getNewRecord());
+                pageRecords.add(getPageRecord(document, delimiters, volumeName, file, counter, imageRep.getFiles().size()));
                 counter++;
-                pageRecords.add(record);
             }
         }
 
         return pageRecords;
     }
 
+    private String getPageRecord(Document document, Delimiters delimiters, String volumeName, String file, int page, int pageCount) {
+        // ImageKey,VolumeName,FullPath,DocBreak,BoxBreak,FolderBreak,PageCount
+        return String.format(
+                "%1$s%8$s%2$s%8$s%3$s%8$s%4$s%8$s%5$s%8$s%6$s%8$s%7$s%9$s",
+                document.getKey(),
+                volumeName,
+                file,
+                (page == 0) ? TRUE_VALUE : FALSE_VALUE,
+                FALSE_VALUE,
+                FALSE_VALUE,
+                (page == 0) ? pageCount : FALSE_VALUE,
+                delimiters.getFieldSeparator(),
+                delimiters.getNewRecord());
+    }
+
 }
@@ -26,9 +26,26 @@ public class TextDelimitedExporter {
      * @param exportFields the fields to include in the order they should be exported
      */
     public void export(List<Document> documents, Path filePath, Delimiters delimiters, List<String> exportFields) {
-        // TODO: add support to export relationships and representatives
+        export(documents, filePath, delimiters, exportFields, null);
+    }
+
+    /**
+     * Export a list of documents to a text delimited file along with their family fields
+     * @param documents the documents to be exported
+     * @param filePath the path to save the file
+     * @param delimiters the delimiters to use in the export
+     * @param exportFields the fields to include in the order they should be exported,
+     *        family fields that are not listed here are exported after them
+     * @param familySetting the family field settings or null to only export metadata
+     */
+    public void export(List<Document> documents, Path filePath, Delimiters delimiters, List<String> exportFields, FamilyFieldSetting familySetting) {
+        // TODO: add support to export representatives
 
         BufferedWriter writer = null;
+        // the families are walked once up front
+        FamilyFields families = (familySetting != null) ? new FamilyFields(documents) : null;
+        List<String> fields = getExportFields(exportFields, familySetting);
+        int[] order = (families != null && familySetting.isFamiliesContiguous()) ? families.getFamilyOrder() : null;
 
         try {
             // init writer
@@ -42,15 +59,16 @@ public class TextDelimitedExporter {
             // get header
             String header = new StringBuilder()
                     .append(delimiters.getTextQualifier())
-                    .append(String.join(fieldDelimiter, exportFields))
+                    .append(String.join(fieldDelimiter, fields))
                     .append(delimiters.getTextQualifier())
                     .toString();
             // write header
             writer.write(header);
             writer.write(delimiters.getNewRecord());
             // write documents
-            for (Document doc : documents) {
-                String line = getLine(doc, exportFields, delimiters);
+            for (int i = 0; i < documents.size(); i++) {
+                int position = (order != null) ? order[i] : i;
+                String line = getLine(documents.get(position), position, fields, delimiters, families, familySetting);
                 writer.write(line);
             }
         }
@@ -68,7 +86,44 @@ public class TextDelimitedExporter {
         }
     }
 
-    private String getLine(Document doc, List<String> exportFields, Delimiters delimiters) {
+    private List<String> getExportFields(List<String> exportFields, FamilyFieldSetting familySetting) {
+        List<String> fields = new ArrayList<>(exportFields);
+
+        if (familySetting != null) {
+            String[] familyFields = {
+                    familySetting.getParentField(), familySetting.getBegAttachField(),
+                    familySetting.getEndAttachField(), familySetting.getChildrenField() };
+            for (String field : familyFields) {
+                if (field != null && !fields.contains(field)) {
+                    fields.add(field);
+                }
+            }
+        }
+
+        return fields;
+    }
+
+    private String getFieldValue(Document doc, int position, String field, FamilyFields families, FamilyFieldSetting familySetting) {
+        if (families != null) {
+            // family fields come from the relationships, not from the metadata
+            if (field.equals(familySetting.getParentField())) {
+                return families.getParentKey(position);
+            }
+            else if (field.equals(familySetting.getBegAttachField())) {
+                return families.getBegAttach(position);
+            }
+            else if (field.equals(familySetting.getEndAttachField())) {
+                return families.getEndAttach(position);
+            }
+            else if (field.equals(familySetting.getChildrenField())) {
+                return families.getChildKeys(position, familySetting.getChildDelimiter());
+            }
+        }
+
+        return doc.getMetadata().get(field);
+    }
+
+    private String getLine(Document doc, int position, List<String> exportFields, Delimiters delimiters, FamilyFields families, FamilyFieldSetting familySetting) {
         // setup for building the line
         List<String> lineElements = new ArrayList<>();
         String fieldSeparator = String.valueOf(delimiters.getFieldSeparator());
@@ -78,7 +133,7 @@ public class TextDelimitedExporter {
         String newRecord = String.valueOf(delimiters.getNewRecord());
         // assemble the line elements
         for (String field : exportFields) {
-            String fieldValue = doc.getMetadata().get(field);
+            String fieldValue = getFieldValue(doc, position, field, families, familySetting);
             // check for null
             if (fieldValue == null) {
                 // return an empty field
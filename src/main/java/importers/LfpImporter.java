@@ -3,13 +3,19 @@ package importers;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import builders.LfpBuilder;
 import builders.StructuredRepresentativeSetting;
 import eAdapter.Document;
+import eAdapter.DocumentCollection;
 
 /**
  * 
@@ -25,12 +31,18 @@ public class LfpImporter {
     /**
      * Imports a LFP file using the default representative names with no text representative
      * @param filePath the path to the LFP file
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath) {
+    public DocumentCollection importDocuments(Path filePath) {
         try {
+            // with a spill policy the lines are read one at a time so the file is never held on the heap
+            if (builder.getSpillPolicy() != null) {
+                try (Stream<String> lines = Files.lines(filePath)) {
+                    return new DocumentCollection(builder.buildDocuments(lines.iterator()));
+                }
+            }
             List<String> lines = Files.readAllLines(filePath);
-            return builder.buildDocuments(lines);
+            return new DocumentCollection(builder.buildDocuments(lines));
         }
         catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -41,12 +53,17 @@ public class LfpImporter {
      * Imports a LPF file using the default representative names
      * @param filePath the path to the LFP file
      * @param textSetting the text representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, StructuredRepresentativeSetting textSetting) {
+    public DocumentCollection importDocuments(Path filePath, StructuredRepresentativeSetting textSetting) {
         try {
+            if (builder.getSpillPolicy() != null) {
+                try (Stream<String> lines = Files.lines(filePath)) {
+                    return new DocumentCollection(builder.buildDocuments(lines.iterator(), textSetting));
+                }
+            }
             List<String> lines = Files.readAllLines(filePath);
-            return builder.buildDocuments(lines, textSetting);
+            return new DocumentCollection(builder.buildDocuments(lines, textSetting));
         }
         catch (IOException ex) {
             throw new RuntimeException(ex);
@@ -60,15 +77,62 @@ public class LfpImporter {
      * @param nativeName the name of the native document representative
      * @param textName the name of the document text representative
      * @param textSetting the text representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
+    public DocumentCollection importDocuments(Path filePath, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
         try {
+            if (builder.getSpillPolicy() != null) {
+                try (Stream<String> lines = Files.lines(filePath)) {
+                    return new DocumentCollection(builder.buildDocuments(lines.iterator(), imagesName, nativeName, textName, textSetting));
+                }
+            }
             List<String> lines = Files.readAllLines(filePath);
-            return builder.buildDocuments(lines, imagesName, nativeName, textName, textSetting);
+            return new DocumentCollection(builder.buildDocuments(lines, imagesName, nativeName, textName, textSetting));
         }
         catch (IOException ex) {
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Streams the documents of a LFP file using the default representative names with no text representative.
+     * The file is read one line at a time and the stream holds it open, so it should be closed once it is consumed.
+     * @param filePath the path to the LFP file
+     * @return returns an ordered stream of documents
+     */
+    public Stream<Document> streamDocuments(Path filePath) {
+        try {
+            Stream<String> lines = Files.lines(filePath);
+            return stream(builder.streamDocuments(lines.iterator()), lines);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Streams the documents of a LFP file, a family is released once the next document that isn't
+     * part of it starts. The file is read one line at a time and the stream holds it open, so it
+     * should be closed once it is consumed.
+     * @param filePath the path to the LFP file
+     * @param imagesName the name of the images document representative
+     * @param nativeName the name of the native document representative
+     * @param textName the name of the document text representative
+     * @param textSetting the text representative settings
+     * @return returns an ordered stream of documents
+     */
+    public Stream<Document> streamDocuments(Path filePath, String imagesName, String nativeName, String textName, StructuredRepresentativeSetting textSetting) {
+        try {
+            Stream<String> lines = Files.lines(filePath);
+            return stream(builder.streamDocuments(lines.iterator(), imagesName, nativeName, textName, textSetting), lines);
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Stream<Document> stream(Iterator<Document> documents, Stream<String> lines) {
+        Spliterator<Document> spliterator = Spliterators.spliteratorUnknownSize(documents, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(lines::close);
+    }
 }
@@ -1,14 +1,25 @@
 package importers;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import builders.OpticonBuilder;
 import builders.StructuredRepresentativeSetting;
 import csvparser.CSVParser;
+import csvparser.OpticonRecordIterator;
 import eAdapter.Document;
+import eAdapter.DocumentCollection;
+import parsers.CharsetDetector;
 import parsers.Delimiters;
 
 /**
@@ -27,36 +38,36 @@ public class OpticonImporter {
     /**
      * Imports an Opticon file
      * @param filePath the file path to the opticon file
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath) {
-        Delimiters delimiters = Delimiters.COMMA_DELIMITED;
-        List<String[]> parsedData = parser.parse(filePath, delimiters);
-        return builder.buildDocuments(parsedData);
+    public DocumentCollection importDocuments(Path filePath) {
+        try (Stream<String[]> records = stream(filePath)) {
+            return new DocumentCollection(builder.buildDocuments(records::iterator));
+        }
     }
 
     /**
      * Imports an Opticon file
      * @param filePath the file path to the opticon file
      * @param imagesName the text representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, String imagesName) {
-        Delimiters delimiters = Delimiters.COMMA_DELIMITED;
-        List<String[]> parsedData = parser.parse(filePath, delimiters);
-        return builder.buildDocuments(parsedData, imagesName);
+    public DocumentCollection importDocuments(Path filePath, String imagesName) {
+        try (Stream<String[]> records = stream(filePath)) {
+            return new DocumentCollection(builder.buildDocuments(records::iterator, imagesName));
+        }
     }
 
     /**
      * Imports an Opticon file
      * @param filePath the file path to the opticon file
      * @param textSetting the text representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, StructuredRepresentativeSetting textSetting) {
-        Delimiters delimiters = Delimiters.COMMA_DELIMITED;
-        List<String[]> parsedData = parser.parse(filePath, delimiters);
-        return builder.buildDocuments(parsedData, textSetting);
+    public DocumentCollection importDocuments(Path filePath, StructuredRepresentativeSetting textSetting) {
+        try (Stream<String[]> records = stream(filePath)) {
+            return new DocumentCollection(builder.buildDocuments(records::iterator, textSetting));
+        }
     }
 
     /**
@@ -65,12 +76,58 @@ public class OpticonImporter {
      * @param imagesName the name of the images representative
      * @param textName the name of the text representative
      * @param textSetting the text representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
-        Delimiters delimiters = Delimiters.COMMA_DELIMITED;
-        List<String[]> parsedData = parser.parse(filePath, delimiters);
-        return builder.buildDocuments(parsedData, imagesName, textName, textSetting);
+    public DocumentCollection importDocuments(Path filePath, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
+        try (Stream<String[]> records = stream(filePath)) {
+            return new DocumentCollection(builder.buildDocuments(records::iterator, imagesName, textName, textSetting));
+        }
+    }
+
+    /**
+     * Streams the documents of an Opticon file, each document is released once the next doc break
+     * is read. The stream holds the file open, so it should be closed once it is consumed.
+     * @param filePath the file path to the opticon file
+     * @return returns an ordered stream of documents
+     */
+    public Stream<Document> streamDocuments(Path filePath) {
+        Stream<String[]> records = stream(filePath);
+        return stream(builder.streamDocuments(records.iterator()), records);
+    }
+
+    /**
+     * Streams the documents of an Opticon file, each document is released once the next doc break
+     * is read. The stream holds the file open, so it should be closed once it is consumed.
+     * @param filePath the file path to the opticon file
+     * @param imagesName the name of the images representative
+     * @param textName the name of the text representative
+     * @param textSetting the text representative settings
+     * @return returns an ordered stream of documents
+     */
+    public Stream<Document> streamDocuments(Path filePath, String imagesName, String textName, StructuredRepresentativeSetting textSetting) {
+        Stream<String[]> records = stream(filePath);
+        return stream(builder.streamDocuments(records.iterator(), imagesName, textName, textSetting), records);
+    }
+
+    private Stream<Document> stream(Iterator<Document> documents, Stream<String[]> records) {
+        Spliterator<Document> spliterator = Spliterators.spliteratorUnknownSize(documents, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(records::close);
+    }
+
+    private Stream<String[]> stream(Path filePath) {
+        Charset charset = CharsetDetector.detect(filePath);
+        // fall back on the general parser when the commas can't be matched as bytes
+        if (!OpticonRecordIterator.supports(charset)) {
+            return parser.stream(filePath, Delimiters.COMMA_DELIMITED, charset);
+        }
+        try {
+            OpticonRecordIterator iterator = new OpticonRecordIterator(FileChannel.open(filePath, StandardOpenOption.READ), charset);
+            Spliterator<String[]> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 }
@@ -1,14 +1,21 @@
 package importers;
 
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import builders.TextDelimitedBuilder;
 import builders.UnstructuredRepresentativeSetting;
 import csvparser.CSVParser;
+import csvparser.CSVRecord;
 import eAdapter.Document;
+import eAdapter.DocumentCollection;
 import parsers.Delimiters;
 
 /**
@@ -34,13 +41,65 @@ public class TextDelimitedImporter {
      * @param childColumnName the column name of the field that contains a delimited list of child documents
      * @param childColumnDelimiter the delimited used to parse the child ids
      * @param repSettings a list of representative settings
-     * @return returns a list of documents
+     * @return returns the documents, which can be searched by metadata
      */
-    public List<Document> importDocuments(Path filePath, Delimiters delimiters, boolean hasHeader,
+    public DocumentCollection importDocuments(Path filePath, Delimiters delimiters, boolean hasHeader,
             String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
             List<UnstructuredRepresentativeSetting> repSettings) {
-        List<String[]> parsedData = parser.parse(filePath, delimiters);
-        return builder.buildDocuments(parsedData, hasHeader, keyColumnName, parentColumnName, childColumnName, childColumnDelimiter, repSettings);
+        try (Stream<String[]> records = parser.stream(filePath, delimiters)) {
+            return new DocumentCollection(builder.buildDocuments(records::iterator, hasHeader, keyColumnName, parentColumnName, childColumnName, childColumnDelimiter, repSettings));
+        }
+    }
+
+    /**
+     * Imports documents that keep their parsed records and only decode a field when it is read.
+     * This suits read mostly work, importing is mostly a scan of the key and family fields.
+     * @param filePath path to the text delimited file
+     * @param delimiters delimiters that should be used for parsing the text delimited file
+     * @param hasHeader indicates if the text delimited file has a header
+     * @param keyColumnName the column name of the key field
+     * @param parentColumnName the column name of the parent id field
+     * @param childColumnName the column name of the field that contains a delimited list of child documents
+     * @param childColumnDelimiter the delimited used to parse the child ids
+     * @param repSettings a list of representative settings
+     * @return returns the documents, which can be searched by metadata
+     */
+    public DocumentCollection importLazyDocuments(Path filePath, Delimiters delimiters, boolean hasHeader,
+            String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
+            List<UnstructuredRepresentativeSetting> repSettings) {
+        try (Stream<CSVRecord> records = parser.records(filePath, delimiters)) {
+            return new DocumentCollection(builder.buildLazyDocuments(records::iterator, hasHeader, keyColumnName, parentColumnName, childColumnName, childColumnDelimiter, repSettings));
+        }
+    }
+
+    /**
+     * Streams documents from a text delimited file, each document is released as soon as its family
+     * is complete, so a file can be converted without holding all of it in memory. The documents of a
+     * family have to be next to each other in the file. The stream holds the file open, so it should be
+     * closed once it is consumed.
+     * @param filePath path to the text delimited file
+     * @param delimiters delimiters that should be used for parsing the text delimited file
+     * @param hasHeader indicates if the text delimited file has a header
+     * @param keyColumnName the column name of the key field
+     * @param parentColumnName the column name of the parent id field
+     * @param childColumnName the column name of the field that contains a delimited list of child documents
+     * @param childColumnDelimiter the delimited used to parse the child ids
+     * @param repSettings a list of representative settings
+     * @return returns an ordered stream of documents
+     */
+    public Stream<Document> streamDocuments(Path filePath, Delimiters delimiters, boolean hasHeader,
+            String keyColumnName, String parentColumnName, String childColumnName, String childColumnDelimiter,
+            List<UnstructuredRepresentativeSetting> repSettings) {
+        Stream<String[]> records = parser.stream(filePath, delimiters);
+        try {
+            Iterator<Document> documents = builder.streamDocuments(records::iterator, hasHeader, keyColumnName, parentColumnName, childColumnName, childColumnDelimiter, repSettings);
+            Spliterator<Document> spliterator = Spliterators.spliteratorUnknownSize(documents, Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(records::close);
+        }
+        catch (RuntimeException e) {
+            records.close();
+            throw e;
+        }
     }
 
 }
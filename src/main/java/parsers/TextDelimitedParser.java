@@ -229,8 +229,10 @@ public class TextDelimitedParser {
         }
         else {
             // scan through the line looking for each field break based on text qualifiers and field separator
+            // one builder is reused for every field on the line
+            StringBuilder valueBuilder = new StringBuilder();
             for (int pos = 0; pos < line.length(); pos++) {
-                StringBuilder valueBuilder = new StringBuilder(line.length());
+                valueBuilder.setLength(0);
 
                 if (line.charAt(pos) == delimiters.getFieldSeparator()) {
                     // empty field, do nothing here
@@ -310,7 +312,7 @@ public class TextDelimitedParser {
             valueBuilder.append(line.charAt(pos));
         }
 
-        if (valueBuilder.toString().contains(String.valueOf(delimiters.getTextQualifier()))) {
+        if (valueBuilder.indexOf(String.valueOf(delimiters.getTextQualifier())) >= 0) {
             // scans for orphans or qualifiers in unqualified data and re-parses if needed
             String escapeSequence = Character.toString(delimiters.getEscapeCharacter()) + Character.toString(delimiters.getTextQualifier());
             int qualifierCount = StringUtils.countMatches(valueBuilder.toString(), delimiters.getTextQualifier());
@@ -324,7 +326,8 @@ public class TextDelimitedParser {
                 // value only contains escaped qualifiers
                 // replace the escape sequence with the text qualifier
                 String replacedValue = valueBuilder.toString().replace(escapeSequence, Character.toString(delimiters.getTextQualifier()));
-                valueBuilder = new StringBuilder(replacedValue);
+                valueBuilder.setLength(0);
+                valueBuilder.append(replacedValue);
             }
         }
         return pos;
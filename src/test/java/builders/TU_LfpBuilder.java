@@ -0,0 +1,167 @@
+package builders;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eAdapter.Document;
+import eAdapter.Representative;
+import eAdapter.SpillPolicy;
+import eAdapter.SpillingDocumentList;
+
+public class TU_LfpBuilder {
+
+    private LfpBuilder builder;
+
+    @Before
+    public void testSetup() {
+        builder = new LfpBuilder();
+    }
+
+    private Representative getNative(Document doc) {
+        for (Representative rep : doc.getRepresentatives()) {
+            if (rep.getType().equals(Representative.Type.NATIVE)) {
+                return rep;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void tokenizerTest() {
+        LfpTokenizer tokenizer = new LfpTokenizer();
+        String[] lines = new String[] { "IM,D001,D,0,@VOL001;IMAGES\\001;D001.tif;2", "OF,D001,@VOL001;NATIVES;D001.msg,1",
+                "IM,D001,,0,@VOL001;IMAGES;D001.tif;;", ",D001", "IM", "", ",;" };
+
+        // the fields are the same as splitting on a regular expression
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            assertArrayEquals(line.split(",|;"), tokenizer.toArray());
+        }
+        tokenizer.tokenize("IM,D001, ,0");
+        assertTrue(tokenizer.matches(0, "IM"));
+        assertFalse(tokenizer.matches(1, "D00"));
+        assertTrue(tokenizer.isBlank(2));
+        assertTrue(tokenizer.isBlank(7));
+        assertEquals("", tokenizer.get(7));
+    }
+
+    private List<String> buildLines() {
+        // enough documents for several batches, four of every five documents are children
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 10000; i++) {
+            String key = String.format("D%05d", i);
+            String flag = (i % 5 == 1) ? "D" : "C";
+            String nativeLine = String.format("OF,%s,@VOL001;NATIVES;%s.msg,1", key, key);
+            // some natives come in front of their images and some after
+            if (i % 7 == 0 && i % 2 == 0) {
+                lines.add(nativeLine);
+            }
+            lines.add(String.format("IM,%s,%s,0,@VOL001;IMAGES\\001;%s.tif;2", key, flag, key));
+            lines.add(String.format("IM,%s,,0,@VOL001;IMAGES\\001;%s_002.tif;2", key, key));
+            if (i % 7 == 0 && i % 2 != 0) {
+                lines.add(nativeLine);
+            }
+        }
+        lines.add("OF,N00001,@VOL001;NATIVES;N00001.msg,1");
+        return lines;
+    }
+
+    private String getParentKey(Document doc) {
+        return (doc.getParent() != null) ? doc.getParent().getKey() : null;
+    }
+
+    @Test
+    public void parallelTest() {
+        List<String> lines = buildLines();
+        List<Document> sequential = builder.buildDocuments(lines);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            builder.setPool(pool);
+            List<Document> parallel = builder.buildDocuments(lines);
+
+            // the documents come back in the same order with the same families
+            assertEquals(10001, parallel.size());
+            assertEquals(sequential.size(), parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                Document doc = parallel.get(i);
+                assertEquals(sequential.get(i).getKey(), doc.getKey());
+                assertEquals(sequential.get(i).getMetadata(), doc.getMetadata());
+                assertEquals(sequential.get(i).getRepresentatives().size(), doc.getRepresentatives().size());
+                assertEquals(getParentKey(sequential.get(i)), getParentKey(doc));
+            }
+
+            // the child flag is read from the first page of the child, even at the edge of a batch
+            assertNull(parallel.get(4095).getParent());
+            assertEquals(parallel.get(4095), parallel.get(4096).getParent());
+            assertEquals(4, parallel.get(4095).getChildren().size());
+            assertEquals("2", parallel.get(4096).getMetadata().get("Page Count"));
+
+            // natives go to the document with the same key
+            assertTrue(getNative(parallel.get(13)).getFiles().iterator().next().endsWith("D00014.msg"));
+            assertTrue(getNative(parallel.get(20)).getFiles().iterator().next().endsWith("D00021.msg"));
+            assertNull(getNative(parallel.get(14)));
+            assertEquals("N00001", parallel.get(10000).getKey());
+            assertEquals("", parallel.get(10000).getMetadata().get("Page Count"));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void streamTest() {
+        List<String> lines = buildLines();
+        List<Document> built = builder.buildDocuments(lines);
+        int[] read = new int[1];
+
+        // a family is handed back once the next parent starts
+        Iterator<Document> streamed = builder.streamDocuments(lines.stream().peek(line -> read[0]++).iterator());
+        Document first = streamed.next();
+        assertEquals(11, read[0]);
+        assertEquals(4, first.getChildren().size());
+        List<Document> docs = new ArrayList<>();
+        docs.add(first);
+        streamed.forEachRemaining(docs::add);
+        assertEquals(built.size(), docs.size());
+        for (int i = 0; i < built.size(); i++) {
+            assertEquals(built.get(i).getKey(), docs.get(i).getKey());
+            assertEquals(built.get(i).getMetadata(), docs.get(i).getMetadata());
+            assertEquals(built.get(i).getRepresentatives().size(), docs.get(i).getRepresentatives().size());
+            assertEquals(getParentKey(built.get(i)), getParentKey(docs.get(i)));
+        }
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        List<String> lines = buildLines();
+        List<Document> built = builder.buildDocuments(lines);
+        SpillPolicy policy = new SpillPolicy();
+        policy.setHeapBudget(64 * 1024);
+        builder.setSpillPolicy(policy);
+        List<Document> spilled = builder.buildDocuments(lines.iterator());
+
+        try (SpillingDocumentList spillFile = (SpillingDocumentList) spilled) {
+            // the families survive being spilled
+            assertTrue(spillFile.getSpilledCount() > 0);
+            assertTrue(spillFile.getFootprint() <= policy.getHeapBudget());
+            assertEquals(built.size(), spilled.size());
+            for (int i = 0; i < built.size(); i++) {
+                assertEquals(built.get(i).getKey(), spilled.get(i).getKey());
+                assertEquals(built.get(i).getMetadata(), spilled.get(i).getMetadata());
+                assertEquals(getParentKey(built.get(i)), getParentKey(spilled.get(i)));
+            }
+            assertEquals(spilled.get(0), spilled.get(1).getParent());
+            assertEquals(4, spilled.get(0).getChildren().size());
+        }
+    }
+
+}
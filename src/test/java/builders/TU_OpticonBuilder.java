@@ -0,0 +1,95 @@
+package builders;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eAdapter.Document;
+
+public class TU_OpticonBuilder {
+
+    private OpticonBuilder builder;
+
+    @Before
+    public void testSetup() {
+        builder = new OpticonBuilder();
+    }
+
+    @Test
+    public void parallelTest() {
+        // enough documents for several batches with one to three pages each
+        List<String[]> lines = new ArrayList<>();
+        for (int i = 1; i <= 10000; i++) {
+            for (int page = 0; page <= i % 3; page++) {
+                String key = String.format("D%05d_%d", i, page);
+                String docBreak = (page == 0) ? "Y" : "";
+                lines.add(new String[] { key, "VOL001", "IMAGES\\001\\" + key + ".tif", docBreak, "", "", "" });
+            }
+        }
+        List<Document> sequential = builder.buildDocuments(lines);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            builder.setPool(pool);
+            List<Document> parallel = builder.buildDocuments(lines);
+
+            // the documents come back in the same order with the same pages
+            assertEquals(10000, parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.get(i).getKey(), parallel.get(i).getKey());
+                assertEquals(sequential.get(i).getMetadata(), parallel.get(i).getMetadata());
+            }
+            assertEquals("D04097_0", parallel.get(4096).getKey());
+            assertEquals("3", parallel.get(4096).getMetadata().get("Page Count"));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void largeDocumentTest() {
+        // one document with a single-page image per page, every page is checked against the ones before it
+        List<String[]> lines = new ArrayList<>();
+        for (int page = 0; page < 200000; page++) {
+            String key = String.format("D%06d", page);
+            lines.add(new String[] { key, "VOL001", "IMAGES\\" + (page / 1000) + "\\" + key + ".tif", (page == 0) ? "Y" : "", "", "", "" });
+        }
+        Document doc = builder.buildDocument(lines);
+
+        assertEquals("D000000", doc.getKey());
+        assertEquals("200000", doc.getMetadata().get("Page Count"));
+        assertEquals(200000, doc.getRepresentatives().iterator().next().getFiles().size());
+    }
+
+    @Test
+    public void streamTest() {
+        List<String[]> lines = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            for (int page = 0; page <= i % 3; page++) {
+                lines.add(new String[] { String.format("D%03d_%d", i, page), "VOL001", "IMAGES\\D.tif", (page == 0) ? "Y" : "", "", "", "" });
+            }
+        }
+        List<Document> built = builder.buildDocuments(lines);
+        int[] read = new int[1];
+
+        // a document is handed back once the next doc break is read
+        Iterator<Document> streamed = builder.streamDocuments(lines.stream().peek(line -> read[0]++).iterator());
+        assertEquals("D001_0", streamed.next().getKey());
+        assertEquals(3, read[0]);
+        int count = 1;
+        while (streamed.hasNext()) {
+            Document doc = streamed.next();
+            assertEquals(built.get(count).getMetadata(), doc.getMetadata());
+            count++;
+        }
+        assertEquals(built.size(), count);
+    }
+
+}
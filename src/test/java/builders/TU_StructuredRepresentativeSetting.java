@@ -0,0 +1,50 @@
+package builders;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TU_StructuredRepresentativeSetting {
+
+    private StructuredRepresentativeSetting setting;
+
+    @Before
+    public void testSetup() {
+        setting = new StructuredRepresentativeSetting();
+        setting.setTextLevel(StructuredRepresentativeSetting.TextLevel.Page);
+        setting.setTextLocation(StructuredRepresentativeSetting.TextLocation.AlternateLocation);
+        setting.setTextPathFindReplace(new ImmutablePair<>(Pattern.compile("IMAGES"), "TEXT"));
+    }
+
+    @Test
+    public void textPathTest() {
+        List<String> imagePaths = Arrays.asList("VOL001/IMAGES/001/D001.tif", "VOL001/IMAGES/001/D002.jpg",
+                "VOL001/IMAGES/002/D003.tif", "VOL001/IMAGES/001/D004.tif", "D005.tif", "/IMAGES//D006.tif");
+        // a cache of one folder is dropped every time the folder changes
+        setting.setCacheSize(1);
+
+        // the paths are the same as joining the replaced folder and the text file name
+        List<String> textPaths = setting.getTextPathsFromImagePaths(imagePaths);
+        assertEquals(imagePaths.size(), textPaths.size());
+        for (int i = 0; i < imagePaths.size(); i++) {
+            String imagePath = imagePaths.get(i);
+            String folder = imagePath.substring(0, imagePath.lastIndexOf('/') + 1).replaceAll("IMAGES", "TEXT");
+            String name = imagePath.substring(imagePath.lastIndexOf('/') + 1).replaceAll("\\.[a-z]+$", ".txt");
+            String expected = Paths.get(folder, name).toString();
+            assertEquals(expected, textPaths.get(i));
+            assertEquals(expected, setting.getTextPathFromImagePath(imagePath));
+        }
+
+        // changing the replacement drops the remembered folders
+        setting.setTextPathFindReplace(new ImmutablePair<>(Pattern.compile("IMAGES"), "OCR"));
+        assertEquals(Paths.get("VOL001/OCR/001", "D001.txt").toString(), setting.getTextPathFromImagePath(imagePaths.get(0)));
+    }
+
+}
@@ -2,14 +2,30 @@ package builders;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import csvparser.CSVParser;
+import csvparser.CSVRecord;
+import csvparser.RecordMap;
 import eAdapter.Document;
+import eAdapter.LargeValuePolicy;
 import eAdapter.Representative;
+import eAdapter.SpillPolicy;
+import eAdapter.SpillingDocumentList;
+import parsers.Delimiters;
 
 public class TU_TextDelimitedBuilder {
         
@@ -77,4 +93,257 @@ public class TU_TextDelimitedBuilder {
         assertEquals(parsedData.get(4)[3], textFile);
     }
 
+    @Test
+    public void lazyDocumentsTest() {
+        Path path = Paths.get("src", "test", "java", "builders", "sample.dat");
+        CSVParser parser = new CSVParser();
+        List<Document> eager = builder.buildDocuments(parser.parse(path, Delimiters.CONCORDANCE), true, "BegDoc", null, null, null, null);
+        List<Document> lazy;
+        try (Stream<CSVRecord> records = parser.records(path, Delimiters.CONCORDANCE)) {
+            lazy = builder.buildLazyDocuments(records::iterator, true, "BegDoc", null, null, null, null);
+        }
+
+        // the lazy documents decode to the same metadata
+        assertEquals(eager.size(), lazy.size());
+        for (int i = 0; i < eager.size(); i++) {
+            assertEquals(eager.get(i).getKey(), lazy.get(i).getKey());
+            assertEquals(eager.get(i).getMetadata(), lazy.get(i).getMetadata());
+        }
+
+        // a write copies the values and leaves the other documents alone
+        Document doc = lazy.get(0);
+        doc.addField("Custodian", "Smith");
+        assertEquals("Smith", doc.getMetadata().get("Custodian"));
+        assertEquals(eager.get(0).getMetadata().get("MD5 Hash"), doc.getMetadata().get("MD5 Hash"));
+        assertEquals(eager.get(1).getMetadata().get("Custodian"), lazy.get(1).getMetadata().get("Custodian"));
+    }
+
+    @Test
+    public void lazyFootprintTest() {
+        // a record that counts the values it decodes
+        int[] decoded = new int[1];
+        CSVRecord record = new CSVRecord("\"D001\",\"Smith\",\"a long message body\"", Delimiters.COMMA_QUOTE) {
+            @Override
+            public String getValue(int index) {
+                decoded[0]++;
+                return super.getValue(index);
+            }
+        };
+        Map<String, Integer> headerIndex = RecordMap.indexHeader(new String[] { "DocID", "Custodian", "Body" });
+        Document lazy = new Document(new RecordMap(record, headerIndex));
+        lazy.setKey("D001");
+
+        // a lazy document is sized by its record without decoding a field
+        int footprint = SpillingDocumentList.estimateFootprint(lazy);
+        assertEquals(0, decoded[0]);
+        assertTrue(footprint > record.getBuffer().length());
+        Document eager = new Document();
+        eager.setKey("D001");
+        eager.setMetadata(new LinkedHashMap<>(lazy.getMetadata()));
+        assertTrue(footprint <= SpillingDocumentList.estimateFootprint(eager));
+    }
+
+    @Test
+    public void spillTest() throws IOException {
+        Path path = Paths.get("src", "test", "java", "builders", "sample.dat");
+        CSVParser parser = new CSVParser();
+        List<String[]> lines = parser.parse(path, Delimiters.CONCORDANCE);
+        List<Document> eager = builder.buildDocuments(lines, true, "BegDoc", null, null, null, null);
+        SpillPolicy policy = new SpillPolicy();
+        policy.setHeapBudget(64 * 1024);
+        policy.setCacheSize(4);
+        builder.setSpillPolicy(policy);
+        List<Document> spilled = builder.buildDocuments(lines, true, "BegDoc", null, null, null, null);
+
+        try (SpillingDocumentList spillFile = (SpillingDocumentList) spilled) {
+            // the spilled documents read back the same metadata
+            assertTrue(spillFile.getSpilledCount() > 0);
+            assertTrue(spillFile.getFootprint() <= policy.getHeapBudget());
+            assertEquals(eager.size(), spilled.size());
+            for (int i = 0; i < eager.size(); i++) {
+                assertEquals(eager.get(i).getKey(), spilled.get(i).getKey());
+                assertEquals(eager.get(i).getMetadata(), spilled.get(i).getMetadata());
+            }
+
+            // a write to a spilled document is kept
+            Document doc = spilled.get(0);
+            doc.addField("Custodian", "Smith");
+            assertEquals("Smith", doc.getMetadata().get("Custodian"));
+            assertEquals(eager.get(0).getMetadata().get("BegDoc"), doc.getMetadata().get("BegDoc"));
+        }
+    }
+
+    @Test
+    public void spilledFamilyTest() throws IOException {
+        List<String[]> parsedData = new ArrayList<>();
+        parsedData.add(new String[] { "DocID", "ParentID", "Native Link" });
+        parsedData.add(new String[] { "D001", "D001", "" });
+        parsedData.add(new String[] { "D002", "D001", "V001\\NATIVE\\0001\\D002.msg" });
+        parsedData.add(new String[] { "D003", "D001", "" });
+        parsedData.add(new String[] { "D004", "", "" });
+        List<UnstructuredRepresentativeSetting> reps = new ArrayList<>();
+        UnstructuredRepresentativeSetting nativeRep = new UnstructuredRepresentativeSetting();
+        nativeRep.setColumn("Native Link");
+        nativeRep.setType(Representative.Type.NATIVE);
+        reps.add(nativeRep);
+        // every document crosses the budget, so each one is spilled as soon as it is added
+        SpillPolicy policy = new SpillPolicy();
+        policy.setHeapBudget(1);
+        builder.setSpillPolicy(policy);
+        List<Document> docs = builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, ";", reps);
+
+        try (SpillingDocumentList spillFile = (SpillingDocumentList) docs) {
+            assertEquals(4, spillFile.getSpilledCount());
+            assertEquals(docs.get(0), docs.get(1).getParent());
+            assertEquals(docs.get(0), docs.get(2).getParent());
+            assertEquals(2, docs.get(0).getChildren().size());
+            assertTrue(docs.get(0).getChildren().contains(docs.get(2)));
+            assertNull(docs.get(3).getParent());
+            Representative rep = docs.get(1).getRepresentatives().iterator().next();
+            assertEquals(Representative.Type.NATIVE, rep.getType());
+            assertEquals(parsedData.get(2)[2], rep.getFiles().iterator().next());
+        }
+    }
+
+    @Test
+    public void familyIndexTest() {
+        // children may come before their parent and the keys are split on plain text
+        List<String[]> parsedData = new ArrayList<>();
+        parsedData.add(new String[] { "DocID", "ParentID", "Children" });
+        parsedData.add(new String[] { "D002", "D001", "" });
+        parsedData.add(new String[] { "D001", "", "D002|D003" });
+        parsedData.add(new String[] { "D003", "D001", "" });
+        parsedData.add(new String[] { "D004", "", "" });
+        List<Document> docs = builder.buildDocuments(parsedData, true, "DocID", "ParentID", "Children", "|", null);
+        assertEquals(docs.get(1), docs.get(0).getParent());
+        assertEquals(docs.get(1), docs.get(2).getParent());
+        assertEquals(Arrays.asList(docs.get(0), docs.get(2)), docs.get(1).getChildren());
+        assertNull(docs.get(3).getParent());
+
+        // a child column is enough on its own
+        docs = builder.buildDocuments(parsedData, true, "DocID", null, "Children", "|", null);
+        assertEquals(docs.get(1), docs.get(0).getParent());
+        assertEquals(2, docs.get(1).getChildren().size());
+
+        // relationships that are not reciprocal are broken families
+        parsedData.set(3, new String[] { "D003", "D004", "" });
+        try {
+            builder.buildDocuments(parsedData, true, "DocID", "ParentID", "Children", "|", null);
+            fail("The parent does not list the child.");
+        }
+        catch (RuntimeException e) {
+            assertEquals("Broken families, the parent disowns a child document.", e.getMessage());
+        }
+
+        // so are missing parents and documents that are their own ancestors
+        parsedData.set(3, new String[] { "D003", "D005", "" });
+        try {
+            builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+            fail("The parent is missing.");
+        }
+        catch (RuntimeException e) {
+            assertEquals("Broken families, the parent is missing.", e.getMessage());
+        }
+        parsedData.set(2, new String[] { "D001", "D003", "" });
+        parsedData.set(3, new String[] { "D003", "D002", "" });
+        try {
+            builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+            fail("The family is a cycle.");
+        }
+        catch (RuntimeException e) {
+            assertEquals("Broken families, a document is its own ancestor.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void streamTest() {
+        // every fourth document is a parent of the three after it, the last child names its parent and is listed by it
+        List<String[]> parsedData = new ArrayList<>();
+        parsedData.add(new String[] { "DocID", "ParentID", "ChildIDs" });
+        for (int i = 0; i < 1000; i++) {
+            String parent = (i % 4 == 0) ? "" : String.format("D%04d", i - i % 4);
+            String children = (i % 4 == 0) ? String.format("D%04d;D%04d;D%04d", i + 1, i + 2, i + 3) : "";
+            parsedData.add(new String[] { String.format("D%04d", i), parent, children });
+        }
+        List<Document> built = builder.buildDocuments(parsedData, true, "DocID", "ParentID", "ChildIDs", ";", null);
+        int[] read = new int[1];
+        Iterable<String[]> counted = () -> parsedData.stream().peek(line -> read[0]++).iterator();
+
+        // a family is handed back once the next one starts
+        Iterator<Document> streamed = builder.streamDocuments(counted, true, "DocID", "ParentID", "ChildIDs", ";", null);
+        Document first = streamed.next();
+        assertEquals(6, read[0]);
+        assertEquals(3, first.getChildren().size());
+        List<Document> docs = new ArrayList<>();
+        docs.add(first);
+        streamed.forEachRemaining(docs::add);
+        assertEquals(built.size(), docs.size());
+        for (int i = 0; i < built.size(); i++) {
+            assertEquals(built.get(i).getKey(), docs.get(i).getKey());
+            Document parent = docs.get(i).getParent();
+            assertEquals((built.get(i).getParent() != null) ? built.get(i).getParent().getKey() : null, (parent != null) ? parent.getKey() : null);
+        }
+
+        // a family that never closes fails once the buffer is full
+        parsedData.set(3, new String[] { "D0002", "D9999", "" });
+        builder.setFamilyBufferSize(10);
+        try {
+            builder.streamDocuments(parsedData, true, "DocID", "ParentID", null, null, null).forEachRemaining(doc -> { });
+            fail("The parent is never read.");
+        }
+        catch (RuntimeException e) {
+            assertEquals("The family of D0002 is not complete after 10 documents.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void parallelTest() {
+        // enough rows for several batches, every third document is a child of the one before it
+        List<String[]> parsedData = new ArrayList<>();
+        parsedData.add(new String[] { "DocID", "ParentID", "Page Count" });
+        for (int i = 1; i <= 10000; i++) {
+            String parent = (i % 3 == 0) ? String.format("D%05d", i - 1) : "";
+            parsedData.add(new String[] { String.format("D%05d", i), parent, Integer.toString(i % 7) });
+        }
+        List<Document> sequential = builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            builder.setPool(pool);
+            List<Document> parallel = builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+
+            // the documents come back in the same order with the same families
+            assertEquals(sequential.size(), parallel.size());
+            for (int i = 0; i < sequential.size(); i++) {
+                assertEquals(sequential.get(i).getKey(), parallel.get(i).getKey());
+                assertEquals(sequential.get(i).getMetadata(), parallel.get(i).getMetadata());
+                assertEquals(sequential.get(i).getChildren().size(), parallel.get(i).getChildren().size());
+            }
+            assertEquals(parallel.get(1), parallel.get(2).getParent());
+
+            // a bad row fails the same way
+            parsedData.set(9000, new String[] { "D09000" });
+            try {
+                builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+                fail("The row is too short.");
+            }
+            catch (RuntimeException e) {
+                assertEquals("The value size does not match the header size.", e.getMessage());
+            }
+
+            // every batch would open a large value store that nobody closes
+            builder.setLargeValuePolicy(new LargeValuePolicy());
+            try {
+                builder.buildDocuments(parsedData, true, "DocID", "ParentID", null, null, null);
+                fail("A pool can't build with a large value policy.");
+            }
+            catch (RuntimeException e) {
+                assertEquals("A large value policy can not be used with a pool, every batch would open a large value store of its own.", e.getMessage());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
 }
@@ -0,0 +1,299 @@
+package csvparser;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import parsers.Delimiters;
+
+public class TU_CSVParser {
+
+    private static final Path SAMPLE_DAT = Paths.get("src", "test", "java", "builders", "sample.dat");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CSVParser parser;
+
+    @Before
+    public void testSetup() {
+        parser = new CSVParser();
+    }
+
+    @Test
+    public void emptyFieldsTest() {
+        String[] fields = parser.parseLine("A,V,P,Y,,,3", Delimiters.COMMA_DELIMITED);
+        assertArrayEquals(new String[] { "A", "V", "P", "Y", "", "", "3" }, fields);
+        fields = parser.parseLine(",one,", Delimiters.COMMA_DELIMITED);
+        assertArrayEquals(new String[] { "", "one", "" }, fields);
+    }
+
+    @Test
+    public void qualifiedFieldsTest() {
+        String[] fields = parser.parseLine("\"one\",\"say \"\"two\"\"\",\"three, four\"", Delimiters.COMMA_QUOTE);
+        assertArrayEquals(new String[] { "one", "say \"two\"", "three, four" }, fields);
+    }
+
+    @Test
+    public void recordViewTest() throws IOException {
+        CSVRecord record = new CSVRecord("\"D001\",plain,\"say \"\"hi\"\"\",", Delimiters.COMMA_QUOTE);
+        assertEquals(4, record.size());
+        assertEquals("plain", record.getField(1).toString());
+        assertTrue(record.valueEquals(0, "D001"));
+        assertTrue(record.valueEquals(2, "say \"hi\""));
+        assertEquals("", record.getValue(3));
+        assertArrayEquals(parser.parseLine("\"D001\",plain,\"say \"\"hi\"\"\",", Delimiters.COMMA_QUOTE), record.toArray());
+
+        Path path = write("DocID,Notes\nD001,caf\u00e9\nD002,two\n");
+        try (Stream<CSVRecord> records = parser.records(path, Delimiters.COMMA_DELIMITED)) {
+            List<CSVRecord> lines = records.collect(Collectors.toList());
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(2).getBuffer() instanceof ByteCharSequence);
+            assertEquals("caf\u00e9", lines.get(1).getValue(1));
+            assertEquals("two", lines.get(2).getValue(1));
+        }
+    }
+
+    @Test
+    public void streamTest() throws IOException {
+        Path path = write("\"DocID\",\"Body\"\r\n\"D001\",\"line one\r\nline two\"\r\n\r\n\"D002\",\"\"\r\n");
+
+        try (Stream<String[]> records = parser.stream(path, Delimiters.COMMA_QUOTE)) {
+            List<String[]> lines = records.collect(Collectors.toList());
+            assertEquals(3, lines.size());
+            assertArrayEquals(new String[] { "D001", "line one\r\nline two" }, lines.get(1));
+            assertArrayEquals(new String[] { "D002", "" }, lines.get(2));
+        }
+    }
+
+    @Test
+    public void concordanceTest() {
+        List<String[]> lines = parser.parse(SAMPLE_DAT, Delimiters.CONCORDANCE);
+        assertEquals(283, lines.size());
+        assertEquals("BegDoc", lines.get(0)[0]);
+        assertEquals("RS00001", lines.get(1)[0]);
+
+        for (String[] line : lines) {
+            assertEquals(77, line.length);
+        }
+    }
+
+    @Test
+    public void recordParserTest() {
+        Delimiters custom = Delimiters.of(';', '\'', '\n', '\\');
+        Delimiters[] profiles = new Delimiters[] { Delimiters.COMMA_QUOTE, Delimiters.COMMA_DELIMITED, Delimiters.TAB_DELIMITED, Delimiters.PIPE_CARET, Delimiters.CONCORDANCE, custom };
+        Random random = new Random(11);
+
+        // every profile splits the same as a record view, including escaped and unclosed text qualifiers
+        for (Delimiters delimiters : profiles) {
+            RecordParser recordParser = RecordParsers.of(delimiters);
+            assertSame(recordParser.getClass(), RecordParsers.of(Delimiters.of(delimiters.getFieldSeparator(), delimiters.getTextQualifier(), '\n', delimiters.getEscapeCharacter())).getClass());
+            // a missing text qualifier is not part of the data
+            String alphabet = ("ab" + delimiters.getFieldSeparator() + delimiters.getTextQualifier() + delimiters.getEscapeCharacter() + "\u00ae").replace("\0", "");
+            for (int i = 0; i < 2000; i++) {
+                StringBuilder line = new StringBuilder();
+                for (int length = random.nextInt(12); length > 0; length--) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                assertArrayEquals(line.toString(), new CSVRecord(line, delimiters).toArray(), recordParser.parseLine(line));
+            }
+        }
+        assertNotSame(RecordParsers.of(custom).getClass(), RecordParsers.of(Delimiters.COMMA_QUOTE).getClass());
+    }
+
+    @Test
+    public void mappedTokenizerTest() throws IOException {
+        String content = "\"DocID\",\"Body\",\"Size\"\r\n  \"D001\",\"caf\u00e9 \"\"one\"\"\r\nline two\",12\r\n\r\nD002,,\r\n\"D003\",\"a,b\",\"\"";
+        Path path = write(content, StandardCharsets.UTF_8);
+        List<String[]> expected = read(new CSVRecordIterator(new StringReader(content), Delimiters.COMMA_QUOTE).map(CSVRecord::toArray));
+
+        // a tiny window forces records to be mapped again across window edges
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<String[]> actual = read(new MappedRecordIterator(channel, StandardCharsets.UTF_8, Delimiters.COMMA_QUOTE, 0, Long.MAX_VALUE, 5));
+            assertEquals(4, actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        }
+        assertArrayEquals(new String[] { "D001", "caf\u00e9 \"one\"\r\nline two", "12" }, parser.parse(path, Delimiters.COMMA_QUOTE).get(1));
+    }
+
+    @Test
+    public void wordScanTest() throws IOException {
+        // long unqualified fields, sparse qualified ones and every field length around a long
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            int fields = 1 + random.nextInt(6);
+            for (int field = 0; field < fields; field++) {
+                String value = "abcdefghijklmnopqrstuvwxyz0123456789".substring(0, random.nextInt(30));
+                if (random.nextInt(5) == 0) {
+                    value = "\"" + value.replace("e", "\"\"").replace("k", "\n") + "\"";
+                }
+                content.append((field > 0) ? "," : "").append(value);
+            }
+            content.append((i % 3 == 0) ? "\r\n" : "\n");
+        }
+        Path path = write(content.toString(), StandardCharsets.UTF_8);
+        List<String[]> expected = read(new CSVRecordIterator(new StringReader(content.toString()), Delimiters.COMMA_QUOTE).map(CSVRecord::toArray));
+
+        // small windows put the ends of the window everywhere inside of the longs that are read
+        for (int windowSize : new int[] { 7, 8, 13, 64, 1024 }) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                List<String[]> actual = read(new MappedRecordIterator(channel, StandardCharsets.UTF_8, Delimiters.COMMA_QUOTE, 0, Long.MAX_VALUE, windowSize));
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), actual.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void utf16Test() throws IOException {
+        // the sample is UTF-16LE with a byte order mark, so it is read as code units from the mapped file
+        List<String[]> expected = read(new CSVRecordIterator(new InputStreamReader(Files.newInputStream(SAMPLE_DAT), StandardCharsets.UTF_16), Delimiters.CONCORDANCE).map(CSVRecord::toArray));
+        List<String[]> actual = parser.parse(SAMPLE_DAT, Delimiters.CONCORDANCE);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+        try (Stream<CSVRecord> records = parser.records(SAMPLE_DAT, Delimiters.CONCORDANCE)) {
+            assertEquals("RS00001", records.skip(1).findFirst().get().getValue(0));
+        }
+
+        // the flattened new lines are turned back into new lines as the values are copied
+        parser.setRestoreFlattenedNewLines(true);
+        List<String[]> restored = parser.parse(SAMPLE_DAT, Delimiters.CONCORDANCE);
+        for (int i = 0; i < expected.size(); i++) {
+            for (int field = 0; field < expected.get(i).length; field++) {
+                assertEquals(expected.get(i)[field].replace('\u00ae', '\n'), restored.get(i)[field]);
+            }
+        }
+
+        // random records in both byte orders, with small windows that end everywhere inside of the longs that are read
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            int fields = 1 + random.nextInt(6);
+            for (int field = 0; field < fields; field++) {
+                String value = "abc\u00aedef\ud83d\ude00ghij\u0101klmnop".substring(0, random.nextInt(20));
+                // half of a surrogate pair can't be encoded
+                value = (value.endsWith("\ud83d")) ? value + "\ude00" : value;
+                if (random.nextInt(3) > 0) {
+                    value = "\u00fe" + value.replace("e", "\u00fe\u00fe").replace("i", "\n") + "\u00fe";
+                }
+                content.append((field > 0) ? "\u0014" : "").append(value);
+            }
+            content.append((i % 3 == 0) ? "\r\n" : "\n");
+        }
+        expected = read(new CSVRecordIterator(new StringReader(content.toString()), Delimiters.CONCORDANCE).map(CSVRecord::toArray));
+        for (Charset charset : new Charset[] { StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE }) {
+            Path path = write("\ufeff" + content, charset);
+            for (int windowSize : new int[] { 8, 16, 24, 64, 1024 }) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    actual = read(new MappedUtf16RecordIterator(channel, charset, Delimiters.CONCORDANCE, false, windowSize));
+                    assertEquals(expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertArrayEquals(expected.get(i), actual.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void opticonTest() throws IOException {
+        String content = "D001,VOL001,IMAGES\\D001.tif,Y,,,2\r\nD002,VOL001,IMAGES\\caf\u00e9.tif,,,,\r\n\r\n  D003,VOL001,,Y,B,F,1,extra\r\n";
+        Path path = write(content, StandardCharsets.UTF_8);
+        List<String[]> expected = parser.parse(path, Delimiters.COMMA_DELIMITED);
+
+        // the opticon records split the same as the general parser
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<String[]> actual = read(new OpticonRecordIterator(channel, StandardCharsets.UTF_8));
+            assertEquals(3, actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+            assertArrayEquals(new String[] { "D002", "VOL001", "IMAGES\\caf\u00e9.tif", "", "", "", "" }, actual.get(1));
+        }
+    }
+
+    @Test
+    public void singleByteCharsetTest() throws IOException {
+        String content = "\u00feDocID\u00fe\u0014\u00feNotes\u00fe\n\u00feD001\u00fe\u0014\u00feone\u00aetwo\u00fe\n";
+        Path path = write(content, StandardCharsets.ISO_8859_1);
+        assertTrue(MappedRecordIterator.supports(StandardCharsets.ISO_8859_1, Delimiters.CONCORDANCE));
+        assertFalse(MappedRecordIterator.supports(StandardCharsets.UTF_8, Delimiters.CONCORDANCE));
+        List<String[]> lines = parser.parse(path, Delimiters.CONCORDANCE, StandardCharsets.ISO_8859_1);
+        assertArrayEquals(new String[] { "D001", "one\u00aetwo" }, lines.get(1));
+    }
+
+    @Test
+    public void parallelTest() throws IOException {
+        StringBuilder content = new StringBuilder("\"DocID\",\"Body\"\n");
+        for (int i = 0; i < 500; i++) {
+            // every other record has new lines inside of a qualified field, so plenty of ranges start inside of one
+            String body = (i % 2 == 0) ? "\"line\none\n\nline, \"\"two\"\"\n\"" : "plain";
+            content.append("\"D").append(i).append("\",").append(body).append("\n");
+        }
+        Path path = write(content.toString());
+        List<String[]> expected = parser.parse(path, Delimiters.COMMA_QUOTE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            // tiny ranges put the split points everywhere, including inside of fields
+            for (int chunkSize = 1; chunkSize < 64; chunkSize += 7) {
+                List<String[]> actual = new ParallelCSVParser(pool, chunkSize).parse(path, Delimiters.COMMA_QUOTE, StandardCharsets.UTF_8);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), actual.get(i));
+                }
+            }
+            assertEquals(501, parser.parseParallel(path, Delimiters.COMMA_QUOTE, pool).size());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<String[]> read(RecordIterator<String[]> iterator) {
+        List<String[]> lines = new ArrayList<>();
+
+        try (RecordIterator<String[]> records = iterator) {
+            records.forEachRemaining(lines::add);
+        }
+
+        return lines;
+    }
+
+    private Path write(String content) throws IOException {
+        return write(content, StandardCharsets.UTF_8);
+    }
+
+    private Path write(String content, Charset charset) throws IOException {
+        Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(charset));
+        return path;
+    }
+}
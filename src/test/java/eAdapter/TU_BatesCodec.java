@@ -0,0 +1,124 @@
+package eAdapter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TU_BatesCodec {
+
+    private Document buildDocument(String key, String begDoc, String endDoc) {
+        Document doc = new Document();
+        doc.setKey(key);
+        doc.addField("BegDoc", begDoc);
+        doc.addField("EndDoc", endDoc);
+        return doc;
+    }
+
+    @Test
+    public void codecTest() {
+        BatesCodec codec = new BatesCodec();
+        List<String> keys = Arrays.asList("RS00001", "RS9", "RS10", "AB000123", "RS", "X1234567890123456");
+
+        // keys are written back exactly as they were read
+        for (String key : keys) {
+            assertEquals(key, codec.decode(codec.encode(key)));
+        }
+        assertEquals(codec.encode("RS00001"), codec.encode("RS00001"));
+        assertEquals(123, BatesCodec.getNumber(codec.encode("AB000123")));
+        assertEquals("AB", codec.getPrefix(BatesCodec.getPrefixId(codec.encode("AB000123"))));
+
+        // numbers compare by value and prefixes by text
+        assertTrue(codec.compare(codec.encode("RS9"), codec.encode("RS10")) < 0);
+        assertTrue(codec.compare(codec.encode("RS00099"), codec.encode("RS100")) < 0);
+        assertTrue(codec.compare(codec.encode("AB99999"), codec.encode("RS00001")) < 0);
+        assertEquals(0, codec.compare(codec.encode("RS10"), codec.encode("RS010")));
+        assertEquals(0, codec.compare(codec.encode("RS10"), codec.encode("RS10")));
+    }
+
+    @Test
+    public void tryEncodeTest() {
+        BatesCodec codec = new BatesCodec();
+        long code = codec.encode("RS00100");
+
+        // a known key has the same code and an unknown prefix isn't interned
+        assertEquals(code, codec.tryEncode("RS00100"));
+        assertEquals(BatesCodec.UNKNOWN, codec.tryEncode("ZZ00001"));
+        assertEquals(1, BatesCodec.getPrefixId(codec.encode("AB00001")));
+
+        // the same prefix with another digit count compares by number
+        assertEquals(0, codec.compare(code, codec.tryEncode("RS100")));
+        assertTrue(codec.compare(code, codec.tryEncode("RS101")) < 0);
+        assertTrue(codec.compare(codec.tryEncode("RS"), code) < 0);
+    }
+
+    @Test
+    public void sortAndRangeTest() {
+        BatesCodec codec = new BatesCodec();
+        List<Document> docs = new ArrayList<>();
+        docs.add(buildDocument("RS10", "RS00010", "RS00019"));
+        docs.add(buildDocument("RS1000", "RS01000", "RS05500"));
+        docs.add(buildDocument("RS9", "RS00001", "RS00009"));
+        docs.add(buildDocument("AB1", "AB00001", "AB00200"));
+        docs.add(buildDocument("RS20", "RS00020", ""));
+        docs.add(buildDocument("RS6000", "RS06000", "RS06001"));
+
+        // documents sort by the number after the prefix
+        codec.parallelSort(docs, null);
+        List<String> sorted = new ArrayList<>();
+        docs.forEach(doc -> sorted.add(doc.getKey()));
+        assertEquals(Arrays.asList("AB1", "RS9", "RS10", "RS20", "RS1000", "RS6000"), sorted);
+
+        // ranges that overlap the search range are found
+        BatesRangeIndex index = new BatesRangeIndex(docs, "BegDoc", "EndDoc", codec);
+        assertEquals(6, index.size());
+        List<Document> found = index.find(docs, "RS00015", "RS05000");
+        assertEquals(Arrays.asList(docs.get(2), docs.get(3), docs.get(4)), found);
+        assertEquals(1, index.filter("RS00020", "RS00020").cardinality());
+        assertEquals(1, index.filter("AB00150", "AB00150").cardinality());
+        assertTrue(index.filter("RS05501", "RS05999").isEmpty());
+        assertEquals(2, index.filter("RS5000", "RS6000").cardinality());
+    }
+
+    @Test
+    public void rangeSearchTest() {
+        BatesCodec codec = new BatesCodec();
+        List<Document> docs = new ArrayList<>();
+        Random random = new Random(17);
+        // one range covers every other one
+        docs.add(buildDocument("RS1", "RS00001", "RS99999"));
+        for (int i = 0; i < 2000; i++) {
+            int begin = 1 + random.nextInt(99000);
+            int end = begin + random.nextInt(500);
+            docs.add(buildDocument("RS" + begin, String.format("RS%05d", begin), String.format("RS%05d", end)));
+        }
+        BatesRangeIndex index = new BatesRangeIndex(docs, "BegDoc", "EndDoc", codec);
+
+        // the index finds the same ranges as a scan
+        for (int i = 0; i < 200; i++) {
+            int from = 1 + random.nextInt(99999);
+            int to = from + random.nextInt(1000);
+            BitSet expected = new BitSet();
+            for (int j = 0; j < docs.size(); j++) {
+                int begin = Integer.parseInt(docs.get(j).getMetadata().get("BegDoc").substring(2));
+                int end = Integer.parseInt(docs.get(j).getMetadata().get("EndDoc").substring(2));
+                if (begin <= to && end >= from) {
+                    expected.set(j);
+                }
+            }
+            assertEquals(expected, index.filter(String.format("RS%05d", from), String.format("RS%05d", to)));
+        }
+
+        // a prefix that was never indexed finds nothing and isn't interned
+        assertTrue(index.filter("ZZ00001", "ZZ99999").isEmpty());
+        assertTrue(index.find(docs, "RS00001", "ZZ00001").isEmpty());
+        assertEquals(BatesCodec.UNKNOWN, codec.tryEncode("ZZ00001"));
+        assertTrue(new BatesRangeIndex(new ArrayList<>(), null, codec).filter("RS1", "RS2").isEmpty());
+    }
+
+}
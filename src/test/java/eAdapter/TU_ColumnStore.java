@@ -0,0 +1,200 @@
+package eAdapter;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TU_ColumnStore {
+
+    @Test
+    public void rowViewTest() {
+        ColumnStore store = new ColumnStore(new String[] { "DocID", "Hash" });
+        Document first = new Document(store);
+        Document second = new Document(store);
+        first.addField("DocID", "D001");
+        first.addField("Hash", "");
+        second.addField("DocID", "D002");
+        second.addField("Custodian", "Smith");
+
+        // fields are shared but each row only has the values set on it
+        assertEquals(3, store.getFieldNames().size());
+        assertEquals("D001", first.getMetadata().get("DocID"));
+        assertEquals("", first.getMetadata().get("Hash"));
+        assertNull(first.getMetadata().get("Custodian"));
+        assertFalse(second.getMetadata().containsKey("Hash"));
+        assertEquals(2, second.getMetadata().size());
+
+        // the views iterate in header order and write through
+        List<String> keys = new ArrayList<>(first.getMetadata().keySet());
+        assertEquals("DocID", keys.get(0));
+        assertEquals("Hash", keys.get(1));
+        first.getMetadata().put("Hash", "ABC");
+        assertEquals("ABC", store.get(0, "Hash"));
+        first.getMetadata().remove("Hash");
+        assertEquals(1, first.getMetadata().size());
+
+        // a row view compares equal to a plain map
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("DocID", "D002");
+        expected.put("Custodian", "Smith");
+        assertEquals(expected, second.getMetadata());
+
+        // replacing the metadata detaches the document from the store
+        second.setMetadata(expected);
+        assertNull(second.getColumnStore());
+        assertSame(expected, second.getMetadata());
+    }
+
+    @Test
+    public void rowViewContractTest() {
+        ColumnStore store = new ColumnStore(new String[] { "DocID", "Hash" });
+        Map<String, String> row = new Document(store).getMetadata();
+        Map<String, String> plain = new Document().getMetadata();
+        for (Map<String, String> metadata : Arrays.asList(row, plain)) {
+            metadata.put("Custodian", "Smith");
+            metadata.put("Hash", "ABC");
+            metadata.put("DocID", "D001");
+        }
+
+        // a row view iterates in header order, a plain map in the order the fields were put
+        assertEquals(Arrays.asList("DocID", "Hash", "Custodian"), new ArrayList<>(row.keySet()));
+        assertEquals(Arrays.asList("Custodian", "Hash", "DocID"), new ArrayList<>(plain.keySet()));
+        assertEquals(plain, row);
+
+        // a null value removes the field from a row view but is kept by a plain map
+        assertEquals("ABC", row.put("Hash", null));
+        assertEquals("ABC", plain.put("Hash", null));
+        assertFalse(row.containsKey("Hash"));
+        assertTrue(plain.containsKey("Hash"));
+        assertEquals(2, row.size());
+        assertEquals(3, plain.size());
+
+        // a null value for a new field doesn't add a column
+        assertNull(row.put("Title", null));
+        assertEquals(-1, store.getColumnIndex("Title"));
+    }
+
+    @Test
+    public void dictionaryTest() {
+        ColumnStore store = new ColumnStore(new String[] { "Custodian", "DocID" }, 2);
+        String[] custodians = { "Smith", "Jones", "Smith", null, "Jones" };
+
+        for (int i = 0; i < custodians.length; i++) {
+            Document doc = new Document(store);
+            doc.addField("DocID", "D00" + i);
+            doc.addField("Custodian", custodians[i]);
+        }
+
+        // the custodians fit in the dictionary but the keys don't
+        assertTrue(store.getColumn("Custodian") instanceof DictionaryColumn);
+        assertTrue(store.getColumn("DocID") instanceof StringColumn);
+        assertEquals("D004", store.get(4, "DocID"));
+        assertEquals("D000", store.get(0, "DocID"));
+
+        BitSet smith = store.filterEquals("Custodian", "Smith");
+        assertEquals(2, smith.cardinality());
+        assertTrue(smith.get(0) && smith.get(2));
+        assertTrue(store.filterEquals("Custodian", "Brown").isEmpty());
+
+        Map<String, BitSet> groups = store.groupBy("Custodian");
+        assertEquals(2, groups.size());
+        assertEquals("Smith", groups.keySet().iterator().next());
+        assertEquals(2, groups.get("Jones").cardinality());
+        assertEquals(5, store.groupBy("DocID").size());
+    }
+
+    @Test
+    public void typedColumnTest() {
+        ColumnStore store = new ColumnStore(new String[] { "Page Count", "File Size", "Date Sent", "Control Number" }, 1024, 3);
+        store.setColumnType("Page Count", ColumnType.INTEGER);
+        String[][] rows = {
+            { "1", "29184", "09/06/2001", "0001" },
+            { "", "5000000000", "02/28/2004", "0002" },
+            { "12", "18944", "", "0003" },
+            { "3", "100", "12/31/1999", "0004" }
+        };
+
+        List<Document> docs = new ArrayList<>();
+        for (String[] row : rows) {
+            Document doc = new Document(store);
+            doc.addField("Page Count", row[0]);
+            doc.addField("File Size", row[1]);
+            doc.addField("Date Sent", row[2]);
+            doc.addField("Control Number", row[3]);
+            docs.add(doc);
+        }
+
+        // numbers and dates are typed, zero padded numbers would not round trip so they stay text
+        assertEquals(ColumnType.INTEGER, store.getColumnType("Page Count"));
+        assertEquals(ColumnType.LONG, store.getColumnType("File Size"));
+        assertEquals(ColumnType.DATE, store.getColumnType("Date Sent"));
+        assertEquals(ColumnType.STRING, store.getColumnType("Control Number"));
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < rows[i].length; j++) {
+                assertEquals(rows[i][j], docs.get(i).getMetadata().get(store.getFieldNames().get(j)));
+            }
+        }
+
+        assertEquals(Integer.valueOf(12), docs.get(2).getInteger("Page Count"));
+        assertNull(docs.get(1).getInteger("Page Count"));
+        assertEquals(Long.valueOf(5000000000L), docs.get(1).getLong("File Size"));
+        assertEquals(LocalDate.of(2004, 2, 28), docs.get(1).getDate("Date Sent"));
+        assertEquals(Integer.valueOf(1), docs.get(0).getInteger("Control Number"));
+
+        BitSet recent = store.filterRange("Date Sent", LocalDate.of(2000, 1, 1).toEpochDay(), Long.MAX_VALUE);
+        assertEquals(2, recent.cardinality());
+        assertTrue(recent.get(0) && recent.get(1));
+
+        // an int that overflows widens to a long, and text moves the column back to strings
+        docs.get(3).addField("Page Count", "3000000000");
+        assertEquals(ColumnType.LONG, store.getColumnType("Page Count"));
+        docs.get(3).addField("Date Sent", "unknown");
+        assertEquals(ColumnType.STRING, store.getColumnType("Date Sent"));
+        assertEquals("09/06/2001", docs.get(0).getMetadata().get("Date Sent"));
+        assertEquals("unknown", docs.get(3).getMetadata().get("Date Sent"));
+    }
+
+    @Test
+    public void largeValueTest() {
+        for (LargeValuePolicy.Storage storage : LargeValuePolicy.Storage.values()) {
+            LargeValuePolicy policy = new LargeValuePolicy();
+            policy.setThreshold(100);
+            policy.setStorage(storage);
+            policy.setCompressed(storage == LargeValuePolicy.Storage.OFF_HEAP);
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                body.append("Line ").append(i).append(" of the message body \u00e9\n");
+            }
+
+            try (ColumnStore store = new ColumnStore(new String[] { "DocID", "Message Body" })) {
+                store.setLargeValuePolicy(policy);
+                List<Document> docs = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    Document doc = new Document(store);
+                    doc.addField("DocID", "D00" + i);
+                    doc.addField("Message Body", (i == 1) ? "short" : body.toString() + i);
+                    docs.add(doc);
+                }
+
+                assertTrue(store.getColumn("Message Body") instanceof LargeValueColumn);
+                assertEquals(body.toString() + 0, docs.get(0).getMetadata().get("Message Body"));
+                assertEquals("short", docs.get(1).getMetadata().get("Message Body"));
+                assertEquals(body.toString() + 2, docs.get(2).getMetadata().get("Message Body"));
+                assertTrue(docs.get(2).getMetadata().containsKey("Message Body"));
+
+                // replacing a large value with a small one clears the handle
+                docs.get(0).addField("Message Body", "replied");
+                assertEquals("replied", docs.get(0).getMetadata().get("Message Body"));
+                assertEquals(2, docs.get(0).getMetadata().size());
+            }
+        }
+    }
+}
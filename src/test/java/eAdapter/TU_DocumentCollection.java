@@ -0,0 +1,86 @@
+package eAdapter;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TU_DocumentCollection {
+
+    private Document buildDocument(String key, String custodian, String dateSent, String size) {
+        Document doc = new Document();
+        doc.setKey(key);
+        doc.addField("DocID", key);
+        doc.addField("Custodian", custodian);
+        doc.addField("Date Sent", dateSent);
+        doc.addField("File Size", size);
+        return doc;
+    }
+
+    @Test
+    public void queryTest() {
+        DocumentCollection docs = new DocumentCollection();
+        docs.add(buildDocument("RS001", "Smith", "12/31/2015", "900"));
+        docs.add(buildDocument("RS002", "Jones", "01/15/2016", "10000"));
+        docs.add(buildDocument("RS003", "Smith", "", "25"));
+        docs.add(buildDocument("RS004", "Smith", "03/02/2016", "4000"));
+
+        // equality
+        assertEquals(3, docs.query().equalTo("Custodian", "Smith").count());
+        assertEquals(0, docs.query().equalTo("Custodian", "Brown").count());
+        assertEquals(Arrays.asList(docs.get(1)), docs.query().in("Custodian", Arrays.asList("Jones", "Brown")).list());
+
+        // dates and numbers compare by value, blanks never match a range
+        List<Document> sent2016 = docs.query().between("Date Sent", "01/01/2016", "12/31/2016").list();
+        assertEquals(Arrays.asList(docs.get(1), docs.get(3)), sent2016);
+        assertEquals(Arrays.asList(docs.get(0), docs.get(2)), docs.query().between("File Size", null, "999").list());
+        assertEquals(Arrays.asList(docs.get(3)), docs.query().equalTo("Custodian", "Smith").between("Date Sent", "01/01/2016", null).list());
+
+        // an inverted range matches nothing, whatever the type of the index
+        assertTrue(docs.filterRange("DocID", "RS004", "RS002").isEmpty());
+        assertTrue(docs.filterRange("File Size", "4000", "25").isEmpty());
+        assertEquals(0, docs.query().between("Date Sent", "12/31/2016", "01/01/2016").count());
+        assertEquals(0, docs.query().equalTo("Custodian", "Smith").between("File Size", "999", "900").count());
+        assertEquals(Arrays.asList(docs.get(2)), docs.query().between("File Size", "25", "25").list());
+
+        // a blank bound leaves its side of the range open for every type, a bound of the wrong type is rejected
+        assertEquals(docs.filterRange("Date Sent", null, "01/31/2016"), docs.filterRange("Date Sent", "", "01/31/2016"));
+        assertEquals(Arrays.asList(docs.get(1), docs.get(3)), docs.query().between("Date Sent", "01/01/2016", " ").list());
+        assertEquals(docs.filterRange("File Size", null, "999"), docs.filterRange("File Size", "", "999"));
+        assertEquals(4, docs.query().between("File Size", " ", "").count());
+        for (String[] bounds : new String[][] { { "Date Sent", "2016-01-01" }, { "Date Sent", "13/45/2016" }, { "File Size", "ten" }, { "File Size", "1.5" } }) {
+            try {
+                docs.filterRange(bounds[0], bounds[1], null);
+                fail("The bound " + bounds[1] + " is not valid.");
+            }
+            catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().startsWith("The bound " + bounds[1]));
+            }
+            try {
+                docs.query().between(bounds[0], null, bounds[1]);
+                fail("The bound " + bounds[1] + " is not valid.");
+            }
+            catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(bounds[0]));
+            }
+        }
+
+        // the indexes follow documents that are added or replaced
+        docs.add(buildDocument("RS005", "Smith", "06/30/2016", "1"));
+        docs.set(1, buildDocument("RS002", "Brown", "01/15/2015", "10000"));
+        assertEquals(4, docs.query().equalTo("Custodian", "Smith").count());
+        assertEquals(1, docs.query().equalTo("Custodian", "Brown").count());
+        BitSet sent = docs.filterRange("Date Sent", "01/01/2016", "12/31/2016");
+        assertEquals(Arrays.asList(docs.get(3), docs.get(4)), docs.select(sent));
+
+        // a value of another type turns the range index into a text index
+        docs.add(buildDocument("RS006", "Smith", "unknown", "12"));
+        assertEquals(Arrays.asList(docs.get(5)), docs.query().between("Date Sent", "u", "v").list());
+        assertEquals(Arrays.asList(docs.get(2), docs.get(4), docs.get(5)), docs.query().between("File Size", "1", "25").list());
+        assertTrue(docs.filterRange("File Size", "4", "2").isEmpty());
+    }
+
+}
@@ -0,0 +1,104 @@
+package eAdapter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TU_PathStore {
+
+    @Test
+    public void pathSetTest() {
+        PathStore store = new PathStore();
+        List<String> paths = Arrays.asList(
+                "RS001\\IMAGES\\0001\\RS00001.tif",
+                "RS001\\IMAGES\\0001\\RS00002.tif",
+                "RS001\\IMAGES\\0002\\RS00003.tif",
+                "RS001/TEXT/0001/RS00001.txt",
+                "RS00004.pdf");
+        PathSet files = new PathSet(store);
+        paths.forEach(files::add);
+
+        // paths come back exactly as they went in and in order
+        assertEquals(paths, new ArrayList<>(files));
+        assertFalse(files.add("RS001\\IMAGES\\0001\\RS00002.tif"));
+        assertTrue(files.contains("RS001\\IMAGES\\0002\\RS00003.tif"));
+        assertFalse(files.contains("RS001\\IMAGES\\0003\\RS00003.tif"));
+
+        // folders are shared through the trie
+        int folder = store.getFolder(files.getFile(0));
+        assertEquals(folder, store.getFolder(files.getFile(1)));
+        assertEquals("RS001\\IMAGES\\0001\\", store.getFolderPath(folder));
+        int images = store.getParentFolder(folder);
+        assertEquals(images, store.getParentFolder(store.getFolder(files.getFile(2))));
+        assertEquals("RS001\\IMAGES\\", store.getFolderPath(images));
+        assertEquals(PathStore.ROOT_FOLDER, store.getFolder(files.getFile(4)));
+
+        // adding by folder id matches adding by path
+        assertFalse(files.add(folder, "RS00001.tif"));
+        assertTrue(files.add(folder, "RS00005.tif"));
+        assertEquals("RS001\\IMAGES\\0001\\RS00005.tif", new ArrayList<>(files).get(5));
+
+        Iterator<String> iterator = files.iterator();
+        iterator.next();
+        iterator.remove();
+        assertTrue(files.remove("RS00004.pdf"));
+        assertEquals(4, files.size());
+        assertEquals(paths.get(1), files.iterator().next());
+    }
+
+    @Test
+    public void largePathSetTest() {
+        PathStore store = new PathStore();
+        PathSet files = new PathSet(store);
+        int folder = store.addFolder("IMAGES\\0001\\");
+
+        // large sets are hashed, the same leaf in another folder is another path
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(files.add(folder, String.format("RS%06d.tif", i)));
+            assertFalse(files.add(folder, String.format("RS%06d.tif", i / 2)));
+        }
+        assertEquals(50000, files.size());
+        assertTrue(files.add("IMAGES\\0002\\RS000001.tif"));
+        assertTrue(files.contains("IMAGES\\0001\\RS049999.tif"));
+        assertFalse(files.contains("IMAGES\\0001\\RS050000.tif"));
+
+        // positions move when a path is removed, so the lookups have to follow them
+        assertTrue(files.remove("IMAGES\\0001\\RS000010.tif"));
+        assertFalse(files.contains("IMAGES\\0001\\RS000010.tif"));
+        assertFalse(files.add(folder, "RS000011.tif"));
+        assertTrue(files.add(folder, "RS000010.tif"));
+        assertEquals(50001, files.size());
+        assertEquals("IMAGES\\0001\\RS000010.tif", store.getPath(files.getFile(50000)));
+        files.clear();
+        assertTrue(files.add(folder, "RS000010.tif"));
+    }
+
+    @Test
+    public void imagePagesTest() {
+        PathStore store = new PathStore();
+        ImagePages pages = new ImagePages(store);
+        pages.setVolume(store.addVolume("VOL001"));
+        int single = store.addFile("IMAGES\\0001\\RS00001.tif");
+        int multi = store.addFile("IMAGES\\0001\\RS00002.pdf");
+        pages.addPage(single, ImagePages.getImageType("RS00001.tif"));
+        pages.addPage(multi, ImagePages.getImageType("RS00002.pdf"));
+        pages.addPage(multi, ImagePages.getImageType("RS00002.pdf"));
+        pages.addPage(multi, ImagePages.getImageType("RS00002.pdf"));
+
+        // repeated files become the pages of one multi-page image
+        assertEquals(4, pages.getPageCount());
+        assertEquals(0, pages.getOffset(0));
+        assertEquals(1, pages.getOffset(1));
+        assertEquals(3, pages.getOffset(3));
+        assertEquals(ImagePages.TIF_TYPE, pages.getImageType(0));
+        assertEquals(ImagePages.PDF_TYPE, pages.getImageType(2));
+        assertEquals("IMAGES\\0001\\RS00002.pdf", pages.getPath(3));
+        assertEquals("VOL001", pages.getVolumeName());
+        assertEquals(ImagePages.UNKNOWN_TYPE, ImagePages.getImageType("RS00003.msg"));
+    }
+}
@@ -0,0 +1,83 @@
+package exporters;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eAdapter.Document;
+import parsers.Delimiters;
+
+public class TU_FamilyFields {
+
+    private Document buildDocument(String key, Document parent) {
+        Document doc = new Document();
+        doc.setKey(key);
+        doc.addField("DocID", key);
+        if (parent != null) {
+            doc.setParent(parent);
+            parent.getChildren().add(doc);
+        }
+        return doc;
+    }
+
+    private List<Document> buildDocuments() {
+        // an email with an attachment that has an attachment of its own, listed out of family order
+        Document email = buildDocument("D001", null);
+        Document zip = buildDocument("D002", email);
+        Document loose = buildDocument("D003", null);
+        Document pdf = buildDocument("D004", zip);
+        Document image = buildDocument("D005", email);
+        return Arrays.asList(pdf, email, loose, image, zip);
+    }
+
+    @Test
+    public void familyFieldsTest() {
+        List<Document> docs = buildDocuments();
+        FamilyFields families = new FamilyFields(docs);
+
+        // each family is one block with every child followed by its own descendants
+        int[] order = families.getFamilyOrder();
+        List<String> keys = new ArrayList<>();
+        for (int position : order) {
+            keys.add(docs.get(position).getKey());
+        }
+        assertEquals(Arrays.asList("D001", "D002", "D004", "D005", "D003"), keys);
+
+        // the family range runs from the top parent to the last descendant
+        assertEquals("D002", families.getParentKey(0));
+        assertEquals("D001", families.getBegAttach(0));
+        assertEquals("D005", families.getEndAttach(0));
+        assertEquals("D002;D005", families.getChildKeys(1, ";"));
+        assertNull(families.getParentKey(2));
+        assertNull(families.getBegAttach(2));
+        assertNull(families.getChildKeys(2, ";"));
+    }
+
+    @Test
+    public void exportTest() throws IOException {
+        Path file = Files.createTempFile("eAdapter", ".dat");
+        FamilyFieldSetting setting = new FamilyFieldSetting();
+        setting.setChildrenField(null);
+        setting.setFamiliesContiguous(true);
+
+        try {
+            new TextDelimitedExporter().export(buildDocuments(), file, Delimiters.COMMA_QUOTE, Arrays.asList("DocID"), setting);
+            List<String> lines = Files.readAllLines(file);
+            assertEquals("\"DocID\",\"ParentID\",\"BegAttach\",\"EndAttach\"", lines.get(0));
+            assertEquals("\"D001\",\"\",\"D001\",\"D005\"", lines.get(1));
+            assertEquals("\"D004\",\"D002\",\"D001\",\"D005\"", lines.get(3));
+            assertEquals("\"D003\",\"\",\"\",\"\"", lines.get(5));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+}